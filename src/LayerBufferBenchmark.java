@@ -0,0 +1,185 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import widgets.DrawingPanel;
+import widgets.RenderMode;
+
+/**
+ * Comparaison A/B de la durée des images d'un {@link DrawingPanel} en mode
+ * {@link RenderMode#LAYERED} pendant la création d'une figure, avec des
+ * images mémorisées ordinaires puis en mémoire vidéo (cf.
+ * {@link DrawingPanel#setAcceleratedLayers(boolean)}). Le panel est affiché
+ * dans une fenêtre et dessiné à l'écran si l'environnement le permet, dans
+ * une image sinon (l'accélération n'est alors pas disponible et les deux
+ * configurations utilisent des images ordinaires).
+ * Usage : java LayerBufferBenchmark [nbFigures [nbImages]]
+ * @author davidroussel
+ */
+public class LayerBufferBenchmark
+{
+	/**
+	 * Largeur du panel
+	 */
+	private static final int WIDTH = 1280;
+
+	/**
+	 * Hauteur du panel
+	 */
+	private static final int HEIGHT = 960;
+
+	/**
+	 * Nombre d'images de mise en route non prises en compte
+	 */
+	private static final int WARMUP = 20;
+
+	/**
+	 * Programme principal
+	 * @param args [nombre de figures [nombre d'images]]
+	 * @throws InterruptedException si l'attente du thread de l'interface
+	 * graphique est interrompue
+	 * @throws InvocationTargetException si le dessin du panel échoue
+	 */
+	public static void main(String[] args)
+		throws InterruptedException, InvocationTargetException
+	{
+		int count = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		int frames = (args.length > 1 ? Integer.parseInt(args[1]) : 200);
+
+		Drawing drawing = createDrawing(count);
+		DrawingPanel panel = new DrawingPanel(drawing, new JLabel(), null);
+		boolean onScreen = !GraphicsEnvironment.isHeadless();
+		if (onScreen)
+		{
+			SwingUtilities.invokeAndWait(() -> {
+				JFrame frame = new JFrame("LayerBufferBenchmark");
+				frame.add(panel);
+				frame.pack();
+				frame.setVisible(true);
+			});
+		}
+		else
+		{
+			panel.setSize(WIDTH, HEIGHT);
+		}
+		panel.setRenderMode(RenderMode.LAYERED);
+
+		System.out.println(count + " figures, " + frames + " images, dessin " +
+		                   (onScreen ? "à l'écran" : "dans une image"));
+		for (boolean accelerated : new boolean[] {false, true})
+		{
+			panel.setAcceleratedLayers(accelerated);
+			panel.setDrawing(drawing);
+			long[] times = measure(panel, drawing, frames, onScreen);
+			Arrays.sort(times);
+			double mean = Arrays.stream(times).average().orElse(0.0);
+			System.out.printf("%-16s moyenne %7.2f ms  p95 %7.2f ms  " +
+			                  "images accélérées : %s%n",
+			                  (accelerated ? "VolatileImage" : "BufferedImage"),
+			                  mean / 1e6,
+			                  times[(int) (0.95 * (times.length - 1))] / 1e6,
+			                  (panel.isLayerAccelerated() ? "oui" : "non"));
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Création d'un dessin de figures aléatoires
+	 * @param count le nombre de figures
+	 * @return le dessin créé
+	 */
+	private static Drawing createDrawing(int count)
+	{
+		Drawing drawing = new Drawing();
+		Random random = new Random(13);
+		FigureType[] types = {FigureType.CIRCLE, FigureType.ELLIPSE,
+		                      FigureType.RECTANGLE,
+		                      FigureType.ROUNDED_RECTANGLE};
+		for (int i = 0; i < count; i++)
+		{
+			drawing.setType(types[i % types.length]);
+			drawing.setFillPaint(new Color(random.nextInt(0x1000000)));
+			drawing.setEdgePaint(new Color(random.nextInt(0x1000000)));
+			Point2D p = new Point2D.Double(random.nextInt(WIDTH),
+			                               random.nextInt(HEIGHT));
+			Figure f = drawing.initiateFigure(p);
+			f.setLastPoint(new Point2D.Double(p.getX() + 5 + random.nextInt(60),
+			                                  p.getY() + 5 + random.nextInt(60)));
+			drawing.update(f);
+		}
+
+		return drawing;
+	}
+
+	/**
+	 * Durées des images dessinées pendant la création d'une figure dont le
+	 * dernier point parcourt le panel. La figure est retirée du dessin à la
+	 * fin de la mesure.
+	 * @param panel le panel à dessiner
+	 * @param drawing le dessin affiché par le panel
+	 * @param frames le nombre d'images mesurées
+	 * @param onScreen true pour dessiner le panel à l'écran, false pour le
+	 * dessiner dans une image
+	 * @return les durées (en ns) des images mesurées
+	 * @throws InterruptedException si l'attente du thread de l'interface
+	 * graphique est interrompue
+	 * @throws InvocationTargetException si le dessin du panel échoue
+	 */
+	private static long[] measure(DrawingPanel panel, Drawing drawing,
+	                              int frames, boolean onScreen)
+		throws InterruptedException, InvocationTargetException
+	{
+		BufferedImage image =
+			new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		long[] times = new long[frames];
+		drawing.setType(FigureType.ELLIPSE);
+		Figure f = drawing.initiateFigure(new Point2D.Double(WIDTH / 4,
+		                                                     HEIGHT / 4));
+		drawing.setActiveFigure(f);
+		for (int i = -WARMUP; i < frames; i++)
+		{
+			int step = i + WARMUP;
+			f.setLastPoint(new Point2D.Double(
+				(WIDTH / 4) + ((step * 7) % (WIDTH / 2)),
+				(HEIGHT / 4) + ((step * 5) % (HEIGHT / 2))));
+			drawing.update(f);
+			long[] time = new long[1];
+			Runnable frame = () -> {
+				long start = System.nanoTime();
+				if (onScreen)
+				{
+					panel.paintImmediately(0, 0, panel.getWidth(),
+					                       panel.getHeight());
+					Toolkit.getDefaultToolkit().sync();
+				}
+				else
+				{
+					Graphics2D g2D = image.createGraphics();
+					panel.paint(g2D);
+					g2D.dispose();
+				}
+				time[0] = System.nanoTime() - start;
+			};
+			SwingUtilities.invokeAndWait(frame);
+			if (i >= 0)
+				times[i] = time[0];
+		}
+		drawing.setActiveFigure(null);
+		drawing.removeLastFigure();
+
+		return times;
+	}
+}
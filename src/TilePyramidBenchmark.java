@@ -0,0 +1,187 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import javax.swing.JLabel;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import widgets.DrawingPanel;
+import widgets.RenderMode;
+
+/**
+ * Mesure du temps d'affichage d'une vue d'ensemble (zoom minimum) d'un très
+ * grand dessin synthétique par un {@link DrawingPanel} en mode
+ * {@link RenderMode#DIRECT} puis en mode {@link RenderMode#TILE_PYRAMID} :
+ * première image (construction des tuiles du niveau), images suivantes
+ * (copie des tuiles) et image suivant l'ajout d'une figure (seules les
+ * tuiles touchant la figure sont refaites). L'écart moyen (par composante)
+ * entre le rendu de la pyramide et le rendu direct est aussi affiché.
+ * Usage : java -Xmx4g TilePyramidBenchmark [nbFigures [taille du panel]]
+ * @author davidroussel
+ */
+public class TilePyramidBenchmark
+{
+	/**
+	 * Facteur de zoom de la vue d'ensemble
+	 */
+	private static final double ZOOM = 1.0 / 16.0;
+
+	/**
+	 * Nombre de rendus mesurés pour chaque configuration (le meilleur temps
+	 * est retenu)
+	 */
+	private static final int RUNS = 5;
+
+	/**
+	 * Programme principal
+	 * @param args [nombre de figures [taille du panel]]
+	 */
+	public static void main(String[] args)
+	{
+		int count = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+		int size = (args.length > 1 ? Integer.parseInt(args[1]) : 1024);
+		int extent = (int) (size / ZOOM);
+
+		Drawing drawing = createDrawing(count, extent);
+		DrawingPanel panel = new DrawingPanel(drawing, new JLabel(), null);
+		panel.setSize(size, size);
+		panel.setTileBudget(Long.MAX_VALUE);
+
+		System.out.println(count + " figures, dessin " + extent + "x" +
+		                   extent + ", vue " + size + "x" + size +
+		                   " au zoom " + ZOOM);
+
+		panel.setRenderMode(RenderMode.DIRECT);
+		showAll(panel);
+		BufferedImage reference = newImage(size);
+		long direct = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++)
+			direct = Math.min(direct, paint(panel, reference));
+		System.out.printf("%-24s %10.1f ms%n", RenderMode.DIRECT,
+		                  direct / 1e6);
+
+		panel.setRenderMode(RenderMode.TILE_PYRAMID);
+		showAll(panel);
+		BufferedImage image = newImage(size);
+		long first = paint(panel, image);
+		System.out.printf("%-24s %10.1f ms  écart moyen %.2f%n",
+		                  RenderMode.TILE_PYRAMID + " (1ère)", first / 1e6,
+		                  difference(reference, image));
+
+		long next = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++)
+			next = Math.min(next, paint(panel, image));
+		System.out.printf("%-24s %10.1f ms  x%.0f%n",
+		                  RenderMode.TILE_PYRAMID + " (suivantes)", next / 1e6,
+		                  (double) direct / next);
+
+		drawing.setType(FigureType.CIRCLE);
+		Figure f = drawing.initiateFigure(new Point2D.Double(extent / 2,
+		                                                     extent / 2));
+		f.setLastPoint(new Point2D.Double((extent / 2) + 200, (extent / 2) + 200));
+		drawing.update(f);
+		long edited = paint(panel, image);
+		System.out.printf("%-24s %10.1f ms%n",
+		                  RenderMode.TILE_PYRAMID + " (ajout)", edited / 1e6);
+		System.exit(0);
+	}
+
+	/**
+	 * Création d'un dessin de figures aléatoires
+	 * @param count le nombre de figures
+	 * @param extent la largeur et la hauteur du dessin
+	 * @return le dessin créé
+	 */
+	private static Drawing createDrawing(int count, int extent)
+	{
+		Drawing drawing = new Drawing();
+		Random random = new Random(13);
+		FigureType[] types = {FigureType.CIRCLE, FigureType.ELLIPSE,
+		                      FigureType.RECTANGLE,
+		                      FigureType.ROUNDED_RECTANGLE};
+		for (int i = 0; i < count; i++)
+		{
+			drawing.setType(types[i % types.length]);
+			drawing.setFillPaint(new Color(random.nextInt(0x1000000)));
+			drawing.setEdgePaint(new Color(random.nextInt(0x1000000)));
+			Point2D p = new Point2D.Double(random.nextInt(extent),
+			                               random.nextInt(extent));
+			Figure f = drawing.initiateFigure(p);
+			f.setLastPoint(new Point2D.Double(p.getX() + 5 + random.nextInt(60),
+			                                  p.getY() + 5 + random.nextInt(60)));
+			drawing.update(f);
+		}
+
+		return drawing;
+	}
+
+	/**
+	 * Vue d'ensemble du dessin : zoom minimum avec l'origine du dessin dans
+	 * le coin supérieur gauche du panel
+	 * @param panel le panel
+	 */
+	private static void showAll(DrawingPanel panel)
+	{
+		panel.resetView();
+		panel.setZoom(ZOOM);
+		Rectangle2D area = panel.getVisibleDrawingArea();
+		panel.panBy((int) Math.round(area.getX() * ZOOM),
+		            (int) Math.round(area.getY() * ZOOM));
+	}
+
+	/**
+	 * Temps de rendu complet du panel
+	 * @param panel le panel à dessiner
+	 * @param image l'image dans laquelle dessiner le panel
+	 * @return le temps de rendu (en ns)
+	 */
+	private static long paint(DrawingPanel panel, BufferedImage image)
+	{
+		Graphics2D g2D = image.createGraphics();
+		long start = System.nanoTime();
+		panel.paint(g2D);
+		long time = System.nanoTime() - start;
+		g2D.dispose();
+
+		return time;
+	}
+
+	/**
+	 * Création d'une image dans laquelle dessiner le panel
+	 * @param size la largeur et la hauteur de l'image
+	 * @return une nouvelle image
+	 */
+	private static BufferedImage newImage(int size)
+	{
+		return new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Écart moyen entre deux images
+	 * @param a la première image
+	 * @param b la seconde image
+	 * @return la moyenne des écarts absolus des composantes rouge, verte et
+	 * bleue (entre 0 et 255)
+	 */
+	private static double difference(BufferedImage a, BufferedImage b)
+	{
+		long sum = 0;
+		for (int y = 0; y < a.getHeight(); y++)
+		{
+			for (int x = 0; x < a.getWidth(); x++)
+			{
+				int p = a.getRGB(x, y);
+				int q = b.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8)
+					sum += Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff));
+			}
+		}
+
+		return sum / (3.0 * a.getWidth() * a.getHeight());
+	}
+}
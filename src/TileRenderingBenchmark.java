@@ -0,0 +1,166 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import javax.swing.JLabel;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.enums.FigureType;
+import widgets.DrawingPanel;
+import widgets.RenderMode;
+
+/**
+ * Mesure du temps de rendu complet d'un grand dessin synthétique par un
+ * {@link DrawingPanel} en mode {@link RenderMode#PARALLEL_TILED} avec 1, 2,
+ * 4 et 8 threads, comparé au rendu direct des figures. Chaque rendu est
+ * vérifié identique (au pixel près) au rendu direct.
+ * Usage : java TileRenderingBenchmark [nbFigures [largeur hauteur]]
+ * @author davidroussel
+ */
+public class TileRenderingBenchmark
+{
+	/**
+	 * Nombres de threads de rendu mesurés
+	 */
+	private static final int[] THREADS = {1, 2, 4, 8};
+
+	/**
+	 * Nombre de rendus mesurés pour chaque configuration (le meilleur temps
+	 * est retenu)
+	 */
+	private static final int RUNS = 5;
+
+	/**
+	 * Programme principal
+	 * @param args [nombre de figures [largeur hauteur]]
+	 */
+	public static void main(String[] args)
+	{
+		int count = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		int width = (args.length > 2 ? Integer.parseInt(args[1]) : 2048);
+		int height = (args.length > 2 ? Integer.parseInt(args[2]) : 2048);
+
+		Drawing drawing = createDrawing(count, width, height);
+		DrawingPanel panel = new DrawingPanel(drawing, new JLabel(), null);
+		panel.setSize(width, height);
+
+		System.out.println(count + " figures, " + width + "x" + height +
+		                   " pixels, " +
+		                   Runtime.getRuntime().availableProcessors() +
+		                   " processeur(s) disponible(s)");
+
+		panel.setRenderMode(RenderMode.DIRECT);
+		BufferedImage reference = newImage(width, height);
+		long direct = measure(panel, drawing, reference);
+		System.out.printf("%-16s %10.1f ms%n", RenderMode.DIRECT,
+		                  direct / 1e6);
+
+		panel.setRenderMode(RenderMode.PARALLEL_TILED);
+		panel.setTileBudget(Long.MAX_VALUE);
+		long single = 0;
+		for (int threads : THREADS)
+		{
+			panel.setRenderThreads(threads);
+			BufferedImage image = newImage(width, height);
+			long time = measure(panel, drawing, image);
+			if (threads == 1)
+				single = time;
+			System.out.printf("%-16s %10.1f ms  x%.2f  %s%n",
+			                  threads + " thread(s)", time / 1e6,
+			                  (double) single / time,
+			                  (same(reference, image) ? "identique" :
+			                  	"DIFFERENT"));
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Création d'un dessin de figures aléatoires
+	 * @param count le nombre de figures
+	 * @param width la largeur du dessin
+	 * @param height la hauteur du dessin
+	 * @return le dessin créé
+	 */
+	private static Drawing createDrawing(int count, int width, int height)
+	{
+		Drawing drawing = new Drawing();
+		Random random = new Random(13);
+		FigureType[] types = {FigureType.CIRCLE, FigureType.ELLIPSE,
+		                      FigureType.RECTANGLE,
+		                      FigureType.ROUNDED_RECTANGLE};
+		for (int i = 0; i < count; i++)
+		{
+			drawing.setType(types[i % types.length]);
+			drawing.setFillPaint(new Color(random.nextInt(0x1000000)));
+			drawing.setEdgePaint(new Color(random.nextInt(0x1000000)));
+			Point2D p = new Point2D.Double(random.nextInt(width),
+			                               random.nextInt(height));
+			Figure f = drawing.initiateFigure(p);
+			f.setLastPoint(new Point2D.Double(p.getX() + 5 + random.nextInt(60),
+			                                  p.getY() + 5 + random.nextInt(60)));
+			drawing.update(f);
+		}
+
+		return drawing;
+	}
+
+	/**
+	 * Meilleur temps de rendu complet du panel après invalidation de ses
+	 * caches
+	 * @param panel le panel à dessiner
+	 * @param drawing le dessin affiché par le panel
+	 * @param image l'image dans laquelle dessiner le panel
+	 * @return le meilleur temps de rendu (en ns)
+	 */
+	private static long measure(DrawingPanel panel, Drawing drawing,
+	                            BufferedImage image)
+	{
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++)
+		{
+			// Réinitialisation des caches de rendu
+			panel.setDrawing(drawing);
+			Graphics2D g2D = image.createGraphics();
+			long start = System.nanoTime();
+			panel.paint(g2D);
+			best = Math.min(best, System.nanoTime() - start);
+			g2D.dispose();
+		}
+
+		return best;
+	}
+
+	/**
+	 * Création d'une image dans laquelle dessiner le panel
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @return une nouvelle image
+	 */
+	private static BufferedImage newImage(int width, int height)
+	{
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Comparaison de deux images pixel à pixel
+	 * @param a la première image
+	 * @param b la seconde image
+	 * @return true si les deux images sont identiques
+	 */
+	private static boolean same(BufferedImage a, BufferedImage b)
+	{
+		for (int y = 0; y < a.getHeight(); y++)
+		{
+			for (int x = 0; x < a.getWidth(); x++)
+			{
+				if (a.getRGB(x, y) != b.getRGB(x, y))
+					return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,354 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Dessin par lots de figures fournies dans l'ordre d'empilement. Les
+ * figures sont regroupées en séries consécutives dont aucune paire ne
+ * touche un même pixel : au sein d'une série l'ordre de dessin n'a donc
+ * aucune incidence sur le résultat. Les figures d'une série partageant le
+ * même style (remplissage, contour, trait et règle de remplissage) et
+ * proches les unes des autres sont alors fusionnées en un seul
+ * {@link Path2D} rempli puis tracé en une seule fois, ce qui réduit le
+ * nombre de changements d'état et d'appels au pipeline Java2D lorsque de
+ * nombreuses petites figures partagent les mêmes styles (cf.
+ * {@link utils.PaintFactory} et {@link utils.StrokeFactory}). Les grandes
+ * figures et les rectangles (pour lesquels Java2D dispose d'un chemin de
+ * rendu dédié) sont toujours dessinés individuellement.
+ * Le résultat est identique (au pixel près) au dessin individuel des
+ * figures par {@link Figure#draw(Graphics2D)}.
+ *
+ * @author davidroussel
+ */
+public class BatchRenderer
+{
+	/**
+	 * Nombre maximum de figures dans une série
+	 */
+	public static final int MAX_RUN = 1024;
+
+	/**
+	 * Taille (en pixels) des cellules de la grille dans lesquelles les
+	 * figures d'un même lot doivent se trouver : le coût de rendu d'un
+	 * chemin dépend de l'étendue de son rectangle englobant, il ne faut donc
+	 * fusionner que des figures proches. Les figures plus grandes qu'une
+	 * cellule sont dessinées individuellement.
+	 */
+	public static final int CELL_SIZE = 64;
+
+	/**
+	 * Nombre de figures dessinées depuis la création
+	 */
+	private long drawnFigures;
+
+	/**
+	 * Nombre de lots (figures individuelles ou chemins fusionnés) dessinés
+	 * depuis la création
+	 */
+	private long drawnBatches;
+
+	/**
+	 * Constructeur d'un renderer par lots
+	 */
+	public BatchRenderer()
+	{
+		drawnFigures = 0;
+		drawnBatches = 0;
+	}
+
+	/**
+	 * Nombre de figures dessinées
+	 * @return le nombre de figures dessinées depuis la création
+	 */
+	public long getDrawnFigures()
+	{
+		return drawnFigures;
+	}
+
+	/**
+	 * Nombre de lots dessinés : chaque lot correspond à un seul remplissage
+	 * et/ou un seul tracé de contour
+	 * @return le nombre de lots dessinés depuis la création
+	 */
+	public long getDrawnBatches()
+	{
+		return drawnBatches;
+	}
+
+	/**
+	 * Dessin d'une liste de figures
+	 * @param g2D le contexte graphique
+	 * @param figures les figures à dessiner dans l'ordre d'empilement
+	 */
+	public void draw(Graphics2D g2D, Iterable<Figure> figures)
+	{
+		// Marge d'un demi pixel (en coordonnées du dessin) de part et
+		// d'autre des figures : deux figures dont les rectangles élargis
+		// sont disjoints ne peuvent pas toucher le même pixel
+		double margin = 0.5 / Math.sqrt(Math.abs(
+			g2D.getTransform().getDeterminant()));
+		if (Double.isInfinite(margin) || Double.isNaN(margin))
+		{
+			for (Figure f : figures)
+				f.draw(g2D);
+			return;
+		}
+
+		double cell = CELL_SIZE * margin * 2.0;
+		List<Figure> run = new ArrayList<Figure>();
+		Map<Long, List<Rectangle2D>> occupied =
+			new HashMap<Long, List<Rectangle2D>>();
+		for (Figure f : figures)
+		{
+			Rectangle2D b = f.strokedBounds();
+			Rectangle2D grown = new Rectangle2D.Double(b.getX() - margin,
+			                                           b.getY() - margin,
+			                                           b.getWidth() + (2 * margin),
+			                                           b.getHeight() + (2 * margin));
+			if ((f.getTransform() != null) ||
+			    (f.getShape() instanceof Rectangle2D) ||
+			    (grown.getWidth() > cell) || (grown.getHeight() > cell))
+			{
+				// Figure déplaçant le contexte graphique, rectangle ou grande
+				// figure : dessin isolé
+				flush(g2D, run, cell);
+				occupied.clear();
+				draw(g2D, f);
+				continue;
+			}
+
+			if ((run.size() >= MAX_RUN) || intersects(occupied, grown, cell))
+			{
+				flush(g2D, run, cell);
+				occupied.clear();
+			}
+			run.add(f);
+			occupy(occupied, grown, cell);
+		}
+		flush(g2D, run, cell);
+	}
+
+	/**
+	 * Teste si un rectangle intersecte l'un des rectangles occupés par la
+	 * série en cours
+	 * @param occupied les rectangles de la série indexés par les cellules
+	 * qu'ils touchent
+	 * @param r le rectangle testé (plus petit qu'une cellule)
+	 * @param cell la taille des cellules
+	 * @return true si r intersecte l'un des rectangles
+	 */
+	private static boolean intersects(Map<Long, List<Rectangle2D>> occupied,
+	                                  Rectangle2D r, double cell)
+	{
+		long c0 = (long) Math.floor(r.getMinX() / cell);
+		long c1 = (long) Math.floor(r.getMaxX() / cell);
+		long r0 = (long) Math.floor(r.getMinY() / cell);
+		long r1 = (long) Math.floor(r.getMaxY() / cell);
+		for (long row = r0; row <= r1; row++)
+		{
+			for (long c = c0; c <= c1; c++)
+			{
+				List<Rectangle2D> bounds = occupied.get(key(c, row));
+				if (bounds != null)
+				{
+					for (Rectangle2D b : bounds)
+					{
+						if (b.intersects(r))
+							return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Ajout d'un rectangle aux rectangles occupés par la série en cours
+	 * @param occupied les rectangles de la série indexés par les cellules
+	 * qu'ils touchent
+	 * @param r le rectangle à ajouter (plus petit qu'une cellule)
+	 * @param cell la taille des cellules
+	 */
+	private static void occupy(Map<Long, List<Rectangle2D>> occupied,
+	                           Rectangle2D r, double cell)
+	{
+		long c0 = (long) Math.floor(r.getMinX() / cell);
+		long c1 = (long) Math.floor(r.getMaxX() / cell);
+		long r0 = (long) Math.floor(r.getMinY() / cell);
+		long r1 = (long) Math.floor(r.getMaxY() / cell);
+		for (long row = r0; row <= r1; row++)
+		{
+			for (long c = c0; c <= c1; c++)
+				occupied.computeIfAbsent(key(c, row),
+				                         k -> new ArrayList<Rectangle2D>()).add(r);
+		}
+	}
+
+	/**
+	 * Clé d'une cellule de la grille
+	 * @param c la colonne de la cellule
+	 * @param row la ligne de la cellule
+	 * @return la clé associée à la cellule
+	 */
+	private static long key(long c, long row)
+	{
+		return (c << 32) ^ (row & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Dessin d'une série de figures disjointes regroupées par style, puis
+	 * vidage de la série
+	 * @param g2D le contexte graphique
+	 * @param run la série de figures
+	 * @param cell la taille des cellules de regroupement (en coordonnées du
+	 * dessin)
+	 */
+	private void flush(Graphics2D g2D, List<Figure> run, double cell)
+	{
+		if (run.size() == 1)
+		{
+			draw(g2D, run.get(0));
+		}
+		else if (run.size() > 1)
+		{
+			Map<Style, List<Figure>> groups =
+				new LinkedHashMap<Style, List<Figure>>();
+			for (Figure f : run)
+				groups.computeIfAbsent(new Style(f, cell),
+				                       k -> new ArrayList<Figure>()).add(f);
+
+			for (Map.Entry<Style, List<Figure>> group : groups.entrySet())
+			{
+				List<Figure> members = group.getValue();
+				if (members.size() == 1)
+					draw(g2D, members.get(0));
+				else
+					draw(g2D, group.getKey(), members);
+			}
+		}
+		run.clear();
+	}
+
+	/**
+	 * Dessin individuel d'une figure
+	 * @param g2D le contexte graphique
+	 * @param f la figure à dessiner
+	 */
+	private void draw(Graphics2D g2D, Figure f)
+	{
+		f.draw(g2D);
+		drawnFigures++;
+		drawnBatches++;
+	}
+
+	/**
+	 * Dessin fusionné de figures disjointes partageant le même style
+	 * @param g2D le contexte graphique
+	 * @param style le style commun des figures
+	 * @param members les figures à dessiner
+	 */
+	private void draw(Graphics2D g2D, Style style, List<Figure> members)
+	{
+		Path2D.Double path = new Path2D.Double(style.windingRule);
+		for (Figure f : members)
+			path.append(f.getShape(), false);
+
+		Figure.drawShape(g2D, path, null, style.stroke, style.edge,
+		                 style.fill);
+		drawnFigures += members.size();
+		drawnBatches++;
+	}
+
+	/**
+	 * Style de dessin d'une figure : deux figures de même style peuvent être
+	 * fusionnées en un même chemin
+	 */
+	private static class Style
+	{
+		/**
+		 * La couleur de remplissage (ou null)
+		 */
+		final Paint fill;
+
+		/**
+		 * La couleur du contour (ou null)
+		 */
+		final Paint edge;
+
+		/**
+		 * Le trait du contour (ou null)
+		 */
+		final BasicStroke stroke;
+
+		/**
+		 * La règle de remplissage de la forme
+		 * @see PathIterator#getWindingRule()
+		 */
+		final int windingRule;
+
+		/**
+		 * La cellule de la grille de regroupement contenant le coin
+		 * supérieur gauche de la figure
+		 */
+		final long cell;
+
+		/**
+		 * Constructeur du style d'une figure
+		 * @param f la figure
+		 * @param cellSize la taille des cellules de regroupement
+		 */
+		Style(Figure f, double cellSize)
+		{
+			fill = f.getFillPaint();
+			edge = f.getEdgePaint();
+			stroke = f.getStroke();
+			Shape shape = f.getShape();
+			windingRule = shape.getPathIterator(
+				(AffineTransform) null).getWindingRule();
+			Rectangle2D b = f.strokedBounds();
+			cell = key((long) Math.floor(b.getX() / cellSize),
+			           (long) Math.floor(b.getY() / cellSize));
+		}
+
+		/**
+		 * Égalité de deux styles
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Style))
+				return false;
+
+			Style other = (Style) obj;
+			return Objects.equals(fill, other.fill) &&
+				Objects.equals(edge, other.edge) &&
+				Objects.equals(stroke, other.stroke) &&
+				(windingRule == other.windingRule) && (cell == other.cell);
+		}
+
+		/**
+		 * Code de hachage compatible avec {@link #equals(Object)}
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(fill, edge, stroke, windingRule, cell);
+		}
+	}
+}
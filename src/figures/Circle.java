@@ -68,6 +68,7 @@ public class Circle extends Figure
 				: newHeight);
 		ellipse.width = size;
 		ellipse.height = size;
+		shapeChanged();
 	}
 
 	/**
@@ -2,10 +2,20 @@ package figures;
 
 import java.awt.BasicStroke;
 import java.awt.Paint;
+import java.awt.Shape;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import figures.enums.FigureType;
@@ -15,11 +25,17 @@ import filters.FigureFilters;
 import filters.FillColorFilter;
 import filters.LineFilter;
 import filters.ShapeFilter;
+import utils.RTree;
 import utils.StrokeFactory;
 
 /**
  * Classe contenant l'ensemble des figures à dessiner (LE MODELE)
  *
+ * Le modèle, et en particulier son {@link #index}, n'est pas protégé contre
+ * les accès concurrents : il ne doit être consulté et modifié que depuis le
+ * thread de l'interface graphique. Les traitements effectués dans d'autres
+ * threads portent sur des copies figées des figures ({@link FigureSnapshot}).
+ *
  * @author davidroussel
  */
 public class Drawing extends Observable
@@ -28,7 +44,88 @@ public class Drawing extends Observable
 	 * Liste des figures à dessiner
 	 */
 	private Vector<Figure> figures;
-	
+
+	/**
+	 * Index spatial des rectangles englobants des {@link #figures}. L'ordre
+	 * d'insertion dans l'index correspond à l'ordre d'empilement des figures
+	 * ce qui permet de tester les candidates de la plus haute à la plus
+	 * basse dans {@link #getFigureAt(Point2D)}.
+	 * Maintenu par {@link #initiateFigure(Point2D)},
+	 * {@link #removeLastFigure()}, {@link #clear()} et
+	 * {@link #update(Figure)}.
+	 */
+	private RTree<Figure> index;
+
+	/**
+	 * Numéro de version du modèle, incrémenté à chaque modification des
+	 * figures. Permet aux vues de savoir si ce qu'elles ont mémorisé à
+	 * propos du modèle est toujours valide.
+	 * @see #getVersion()
+	 */
+	private long version;
+
+	/**
+	 * Tolérance (en pixels de la vue) autour du trait des figures en deçà de
+	 * laquelle un point est considéré comme touchant une figure dans
+	 * {@link #getFigureAt(Point2D)}
+	 * @see #getHitDistance()
+	 */
+	private double hitTolerance;
+
+	/**
+	 * Tolérance par défaut autour du trait des figures
+	 */
+	public static final double DEFAULT_HIT_TOLERANCE = 2.0;
+
+	/**
+	 * Stratégie alternative de recherche des figures sous le curseur
+	 * (ou null pour utiliser l'{@link #index})
+	 * @see #getFigureAt(Point2D)
+	 */
+	private FigurePicker picker;
+
+	/**
+	 * La figure active : celle qui est en cours de création ou de
+	 * déplacement (ou null). Ses modifications sont fréquentes et ne
+	 * concernent qu'elle : les vues peuvent mémoriser le rendu des autres
+	 * figures.
+	 */
+	private Figure activeFigure;
+
+	/**
+	 * Etat de l'aimantation des points de création des figures sur les
+	 * figures existantes
+	 * @see #snap(Point2D, Figure)
+	 */
+	private boolean snapping;
+
+	/**
+	 * Distance (en pixels de la vue) en deçà de laquelle un point est
+	 * aimanté
+	 * @see #snapDistance()
+	 */
+	private double snapRadius;
+
+	/**
+	 * Nombre de pixels de la vue par unité du dessin (le facteur de zoom de
+	 * la vue) permettant d'exprimer dans le dessin les distances
+	 * {@link #hitTolerance} et {@link #snapRadius} données en pixels
+	 * @see #setViewScale(double)
+	 */
+	private double viewScale;
+
+	/**
+	 * Distance d'aimantation par défaut
+	 */
+	public static final double DEFAULT_SNAP_RADIUS = 8.0;
+
+	/**
+	 * Proportion de l'étendue du dessin couverte par une région au delà de
+	 * laquelle {@link #getFiguresIn(Rectangle2D)} parcourt les figures
+	 * plutôt que l'{@link #index}
+	 */
+	private static final double SCAN_COVERAGE = 0.5;
+
 	/**
 	 * Le type de figure à créer
 	 */
@@ -84,6 +181,23 @@ public class Drawing extends Observable
 	 * Sinon mode création de nouvelles figures  
 	 */
 	private boolean moveMode;
+
+	/**
+	 * Mode de sélection des figures existantes par un rectangle élastique.
+	 * Lorsque ce mode est actif aucune nouvelle figure n'est créée.
+	 */
+	private boolean selectMode;
+
+	/**
+	 * Ensemble des figures sélectionnées (dans l'ordre de leur sélection)
+	 */
+	private LinkedHashSet<Figure> selection;
+
+	/**
+	 * La zone de sélection (rectangle élastique) en cours de tracé ou bien
+	 * null si aucune sélection n'est en cours
+	 */
+	private Rectangle2D selectionArea;
 	
 	/**
 	 * Filtres à appliquer au flux des figures pour sélectionner les types
@@ -116,6 +230,14 @@ public class Drawing extends Observable
 	public Drawing()
 	{
 		figures = new Vector<Figure>();
+		index = new RTree<Figure>();
+		version = 0;
+		hitTolerance = DEFAULT_HIT_TOLERANCE;
+		picker = null;
+		snapping = false;
+		activeFigure = null;
+		snapRadius = DEFAULT_SNAP_RADIUS;
+		viewScale = 1.0;
 		shapeFilters = new FigureFilters<FigureType>();
 		
 		fillColorFilter = null;
@@ -129,6 +251,10 @@ public class Drawing extends Observable
 		stroke = StrokeFactory.getStroke(edgeType, edgeWidth);
 		filtering = false;
 		selectedFigure = null;
+		moveMode = false;
+		selectMode = false;
+		selection = new LinkedHashSet<Figure>();
+		selectionArea = null;
 
 		System.out.println("Drawing model created");
 	}
@@ -141,6 +267,7 @@ public class Drawing extends Observable
 	{
 		// Aide au GC
 		figures.clear();
+		index.clear();
 	}
 
 	/**
@@ -149,13 +276,146 @@ public class Drawing extends Observable
 	 */
 	public void update()
 	{
+		version++;
 		setChanged();
 		notifyObservers();
 	}
 
+	/**
+	 * Mise à jour du ou des {@link Observer} avec une description de la
+	 * modification effectuée
+	 * @param change la modification à transmettre aux observateurs
+	 */
+	protected void update(DrawingChange change)
+	{
+		version++;
+		setChanged();
+		notifyObservers(change);
+	}
+
+	/**
+	 * Mise à jour des observateurs suite à la modification de la géométrie
+	 * d'une figure (en cours de création ou déplacée) : la figure est
+	 * réindexée avec son nouveau rectangle englobant (incluant l'épaisseur
+	 * du trait) avant de notifier les observateurs avec la réunion de
+	 * l'ancien et du nouveau rectangle englobant de la figure
+	 * ({@link DrawingChange}).
+	 * @param figure la figure dont la géométrie a changé
+	 */
+	public void update(Figure figure)
+	{
+		Rectangle2D dirty = null;
+
+		if ((figure != null) && index.contains(figure))
+		{
+			Rectangle2D previous = index.getBounds(figure);
+			Rectangle2D current = figure.getStrokedBounds2D();
+			index.update(figure, current);
+			dirty = previous.createUnion(current);
+		}
+
+		update(new DrawingChange(figure, dirty));
+	}
+
 	// ------------------------------------------------------------------------
 	// Accesseur et Mutateurs des attributs
 	// ------------------------------------------------------------------------
+	/**
+	 * Accesseur du numéro de version du modèle
+	 * @return le numéro de version courant du modèle, qui change à chaque
+	 * ajout, retrait ou modification de figure
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Accesseur de la tolérance de contact autour du trait des figures
+	 * @return la tolérance (en pixels de la vue) utilisée par
+	 * {@link #getFigureAt(Point2D)}
+	 */
+	public double getHitTolerance()
+	{
+		return hitTolerance;
+	}
+
+	/**
+	 * Mise en place d'une nouvelle tolérance de contact autour du trait des
+	 * figures
+	 * @param tolerance la nouvelle tolérance (en pixels, 0 pour ne tester
+	 * que la forme et le trait lui même)
+	 */
+	public void setHitTolerance(double tolerance)
+	{
+		hitTolerance = Math.max(0.0, tolerance);
+		update();
+	}
+
+	/**
+	 * Accesseur de l'échelle de la vue
+	 * @return le nombre de pixels de la vue par unité du dessin
+	 */
+	public double getViewScale()
+	{
+		return viewScale;
+	}
+
+	/**
+	 * Mise en place de l'échelle de la vue dans laquelle le dessin est
+	 * manipulé, afin que les tolérances de contact et d'aimantation
+	 * (exprimées en pixels) restent constantes à l'écran quel que soit le
+	 * zoom
+	 * @param scale le nombre de pixels de la vue par unité du dessin
+	 * (le facteur de zoom de la vue)
+	 */
+	public void setViewScale(double scale)
+	{
+		if (scale > 0.0)
+			viewScale = scale;
+	}
+
+	/**
+	 * Tolérance de contact exprimée dans le dessin
+	 * @return la tolérance {@link #hitTolerance} convertie en unités du
+	 * dessin à l'échelle de la vue
+	 */
+	public double getHitDistance()
+	{
+		return hitTolerance / viewScale;
+	}
+
+	/**
+	 * Distance d'aimantation exprimée dans le dessin
+	 * @return la distance {@link #snapRadius} convertie en unités du dessin
+	 * à l'échelle de la vue
+	 */
+	private double snapDistance()
+	{
+		return snapRadius / viewScale;
+	}
+
+	/**
+	 * Mise en place d'une stratégie alternative de recherche des figures
+	 * sous un point
+	 * @param picker la stratégie à utiliser en priorité dans
+	 * {@link #getFigureAt(Point2D)} ou bien null pour n'utiliser que
+	 * l'{@link #index}
+	 */
+	public void setPicker(FigurePicker picker)
+	{
+		this.picker = picker;
+	}
+
+	/**
+	 * Accesseur de la stratégie alternative de recherche des figures
+	 * @return la stratégie mise en place ou bien null
+	 */
+	public FigurePicker getPicker()
+	{
+		return picker;
+	}
+
 	/**
 	 * Accesseur du type courant de figure
 	 * @return le type courant de figures à créer
@@ -268,12 +528,96 @@ public class Drawing extends Observable
 		
 		if (newFigure != null) {
 			figures.add(newFigure);
-			update(); /* Notification des observers */ // notifying observers
+			Rectangle2D bounds = newFigure.getStrokedBounds2D();
+			index.insert(newFigure, bounds);
+			/* Notification des observers */ // notifying observers
+			update(new DrawingChange(newFigure, bounds));
 		}
 		
 		return newFigure;
 	}
 
+	/**
+	 * Accesseur de la figure active
+	 * @return la figure en cours de création ou de déplacement ou bien null
+	 */
+	public Figure getActiveFigure()
+	{
+		return activeFigure;
+	}
+
+	/**
+	 * Mise en place de la figure active (en cours de création ou de
+	 * déplacement) ou bien validation de la figure active (figure null).
+	 * Les observateurs sont notifiés avec la région occupée par l'ancienne
+	 * et la nouvelle figure active.
+	 * @param figure la nouvelle figure active ou null
+	 */
+	public void setActiveFigure(Figure figure)
+	{
+		if (figure == activeFigure)
+			return;
+
+		Rectangle2D dirty = null;
+		if ((activeFigure != null) && index.contains(activeFigure))
+			dirty = index.getBounds(activeFigure);
+		if ((figure != null) && index.contains(figure)) {
+			Rectangle2D bounds = index.getBounds(figure);
+			if (dirty == null)
+				dirty = bounds;
+			else
+				dirty.add(bounds);
+		}
+
+		activeFigure = figure;
+		if (dirty != null)
+			update(new DrawingChange(null, dirty));
+	}
+
+	/**
+	 * Teste si une figure est au dessus d'une autre dans l'ordre
+	 * d'empilement des figures
+	 * @param figure la figure à tester
+	 * @param reference la figure de référence
+	 * @return true si figure a été ajoutée au dessin après reference
+	 * @throws IllegalArgumentException si l'une des figures ne fait pas
+	 * partie du dessin
+	 */
+	public boolean isAbove(Figure figure, Figure reference)
+	{
+		return index.compareOrder(figure, reference) > 0;
+	}
+
+	/**
+	 * Teste si une figure appartient (encore) au dessin
+	 * @param figure la figure recherchée
+	 * @return true si figure fait partie des figures du dessin
+	 */
+	public boolean contains(Figure figure)
+	{
+		return index.contains(figure);
+	}
+
+	/**
+	 * Nombre de figures du dessin
+	 * @return le nombre de figures du dessin (filtrées ou non)
+	 */
+	public int size()
+	{
+		return figures.size();
+	}
+
+	/**
+	 * Rectangle englobant (traits compris) de l'ensemble des figures du
+	 * dessin, sans tenir compte des filtres
+	 * @return le rectangle englobant toutes les figures ou bien null si le
+	 * dessin est vide
+	 */
+	public Rectangle2D getBounds()
+	{
+		return index.getBounds();
+	}
+
 	/**
 	 * Obtention de la dernière figure (implicitement celle qui est en cours de
 	 * dessin)
@@ -289,28 +633,222 @@ public class Drawing extends Observable
 
 	/**
 	 * Obtention de la dernière figure contenant le point p.
+	 * Seules les figures dont le rectangle englobant contient p (obtenues
+	 * grâce à l'{@link #index}) sont testées, de la plus haute à la plus
+	 * basse. Un point situé sur le trait d'une figure ou à moins de
+	 * {@link #hitTolerance} pixels de celui-ci (cf. {@link #getHitDistance()})
+	 * touche également la figure
+	 * (cf. {@link Figure#contains(Point2D, double)}).
+	 * Lorsqu'un {@link #picker} est en place et peut répondre pour p, c'est
+	 * lui qui fournit la figure.
 	 * @param p le point sous lequel on cherche une figure
 	 * @return une référence vers la dernière figure contenant le point p ou à
 	 *         défaut null.
 	 */
 	public Figure getFigureAt(Point2D p)
 	{
-		for (int i = figures.size() - 1; i >= 0; i--) {
-			if (figures.get(i).contains(p))
-				return figures.get(i);
+		if (p == null)
+			return null;
+
+		if ((picker != null) && picker.canPick(p))
+			return picker.getFigureAt(p);
+
+		double tolerance = getHitDistance();
+		List<Figure> candidates = index.search(
+			new Rectangle2D.Double(p.getX() - tolerance,
+			                       p.getY() - tolerance,
+			                       2 * tolerance, 2 * tolerance));
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			if (candidates.get(i).contains(p, tolerance))
+				return candidates.get(i);
 		}
 		
 		return null;
 	}
 
+	/**
+	 * Obtention des figures les plus proches d'un point.
+	 * La recherche est effectuée dans l'{@link #index} et porte sur la
+	 * distance entre le point et le rectangle englobant des figures.
+	 * @param p le point de référence
+	 * @param k le nombre maximum de figures recherchées
+	 * @param maxDistance la distance maximum entre p et le rectangle
+	 * englobant d'une figure
+	 * @return la liste des figures trouvées par distance croissante
+	 */
+	public List<Figure> getNearestFigures(Point2D p, int k, double maxDistance)
+	{
+		if (p == null)
+			return new ArrayList<Figure>();
+
+		return index.nearest(p, k, maxDistance);
+	}
+
+	/**
+	 * Aimantation d'un point sur les figures existantes : lorsque
+	 * l'aimantation est active, le point est déplacé sur le sommet ou le
+	 * centre de figure le plus proche situé à moins de {@link #snapRadius}
+	 * pixels (cf. {@link #snapDistance()}),
+	 * ou à défaut sur le bord de rectangle englobant le plus proche.
+	 * Les figures sont examinées par distance croissante de leur rectangle
+	 * englobant (grâce à l'{@link #index}) jusqu'à ce que ce rectangle soit
+	 * plus éloigné que le meilleur point trouvé.
+	 * @param p le point à aimanter
+	 * @param exclude une figure à ignorer (typiquement la figure en cours
+	 * de création) ou null
+	 * @return le point aimanté ou bien p s'il n'y a rien à proximité ou que
+	 * l'aimantation est inactive
+	 */
+	public Point2D snap(Point2D p, Figure exclude)
+	{
+		if (!snapping || (p == null))
+			return p;
+
+		final Point2D[] best = new Point2D[1];
+		final double[] bestDistance = {snapDistance()};
+
+		// Sommets et centres : ils sont contenus dans le rectangle englobant
+		// de leur figure, donc aucun rectangle plus éloigné que le meilleur
+		// sommet trouvé ne peut fournir mieux
+		index.visitNearest(p, bestDistance[0], f -> {
+			if (f != exclude) {
+				Point2D vertex = f.nearestVertex(p, bestDistance[0]);
+				if (vertex != null) {
+					best[0] = vertex;
+					bestDistance[0] = vertex.distance(p);
+				}
+			}
+			return bestDistance[0];
+		});
+
+		if (best[0] != null)
+			return best[0];
+
+		// Bords des rectangles englobants : le bord d'un rectangle n'est
+		// jamais plus proche que le rectangle lui-même
+		index.visitNearest(p, bestDistance[0], f -> {
+			if (f != exclude) {
+				Point2D edge = nearestOnBounds(f.getBounds2D(), p);
+				double d = edge.distance(p);
+				if (d <= bestDistance[0]) {
+					best[0] = edge;
+					bestDistance[0] = d;
+				}
+			}
+			return bestDistance[0];
+		});
+
+		return (best[0] != null ? best[0] : p);
+	}
+
+	/**
+	 * Point du bord d'un rectangle le plus proche d'un point
+	 * @param r le rectangle
+	 * @param p le point
+	 * @return le point du bord de r le plus proche de p
+	 */
+	private static Point2D nearestOnBounds(Rectangle2D r, Point2D p)
+	{
+		double x = Math.max(r.getMinX(), Math.min(r.getMaxX(), p.getX()));
+		double y = Math.max(r.getMinY(), Math.min(r.getMaxY(), p.getY()));
+
+		if (r.contains(p)) {
+			// Projection sur le bord le plus proche
+			double left = p.getX() - r.getMinX();
+			double right = r.getMaxX() - p.getX();
+			double top = p.getY() - r.getMinY();
+			double bottom = r.getMaxY() - p.getY();
+			double min = Math.min(Math.min(left, right), Math.min(top, bottom));
+			if (min == left)
+				x = r.getMinX();
+			else if (min == right)
+				x = r.getMaxX();
+			else if (min == top)
+				y = r.getMinY();
+			else
+				y = r.getMaxY();
+		}
+
+		return new Point2D.Double(x, y);
+	}
+
+	/**
+	 * Accesseur de l'état d'aimantation
+	 * @return true si les points de création des figures sont aimantés
+	 */
+	public boolean isSnapping()
+	{
+		return snapping;
+	}
+
+	/**
+	 * Changement de l'état d'aimantation
+	 * @param snapping le nouvel état d'aimantation
+	 */
+	public void setSnapping(boolean snapping)
+	{
+		this.snapping = snapping;
+	}
+
+	/**
+	 * Accesseur de la distance d'aimantation
+	 * @return la distance (en pixels de la vue) en deçà de laquelle un point
+	 * est aimanté
+	 */
+	public double getSnapRadius()
+	{
+		return snapRadius;
+	}
+
+	/**
+	 * Mise en place d'une nouvelle distance d'aimantation
+	 * @param radius la nouvelle distance d'aimantation (en pixels)
+	 */
+	public void setSnapRadius(double radius)
+	{
+		snapRadius = Math.max(0.0, radius);
+	}
+
+	/**
+	 * Teste si une figure est recouverte (même partiellement) par le
+	 * rectangle englobant d'une figure située au dessus d'elle (élargis
+	 * tous deux de la tolérance de contact {@link #hitTolerance}).
+	 * @param figure la figure à tester
+	 * @return true si une figure plus haute dans l'ordre d'empilement
+	 * intersecte le rectangle englobant de figure, false sinon (auquel cas
+	 * figure est forcément la plus haute figure en tout point qui la touche)
+	 */
+	public boolean hasFigureAbove(Figure figure)
+	{
+		Rectangle2D bounds = index.getBounds(figure);
+		if (bounds == null)
+			return false;
+
+		double tolerance = getHitDistance();
+		bounds.setRect(bounds.getX() - (2 * tolerance),
+		               bounds.getY() - (2 * tolerance),
+		               bounds.getWidth() + (4 * tolerance),
+		               bounds.getHeight() + (4 * tolerance));
+
+		List<Figure> candidates = index.search(bounds);
+		return candidates.indexOf(figure) < (candidates.size() - 1);
+	}
+
 	/**
 	 * Retrait de la dernière figure (sera déclencé par une action undo)
 	 * @post le modèle de dessin a été mis à jour
 	 */
 	public void removeLastFigure()
 	{
-		if (figures.size() > 0)
-			figures.removeElementAt(figures.size() - 1);
+		if (figures.size() > 0) {
+			Figure removed = figures.remove(figures.size() - 1);
+			if (removed == activeFigure)
+				activeFigure = null;
+			Rectangle2D bounds = index.getBounds(removed);
+			index.remove(removed);
+			selection.remove(removed);
+			update(new DrawingChange(removed, bounds));
+		}
 	}
 
 	/**
@@ -320,6 +858,10 @@ public class Drawing extends Observable
 	public void clear()
 	{
 		figures.clear();
+		activeFigure = null;
+		index.clear();
+		selection.clear();
+		update();
 	}
 	
 	/**
@@ -339,6 +881,7 @@ public class Drawing extends Observable
 	public void setFiltering(boolean filtering)
 	{
 		this.filtering = filtering;
+		update();
 	}
 	
 	
@@ -350,6 +893,324 @@ public class Drawing extends Observable
 		this.moveMode = moveMode;
 	}
 
+	/**
+	 * Accesseur du mode de sélection
+	 * @return true si l'on est en mode sélection de figures
+	 */
+	public boolean isSelectMode()
+	{
+		return selectMode;
+	}
+
+	/**
+	 * Changement du mode de sélection
+	 * @param selectMode le nouveau mode de sélection
+	 */
+	public void setSelectMode(boolean selectMode)
+	{
+		this.selectMode = selectMode;
+	}
+
+	// ------------------------------------------------------------------------
+	// Requêtes spatiales et sélection
+	// ------------------------------------------------------------------------
+	/**
+	 * Obtention des figures intersectant une région.
+	 * Les candidates sont obtenues par l'{@link #index} puis confirmées
+	 * par {@link Shape#intersects(Rectangle2D)}.
+	 * @param region la région à examiner
+	 * @return la liste des figures dont la forme intersecte la région, dans
+	 * l'ordre d'empilement des figures
+	 */
+	public List<Figure> figuresIntersecting(Rectangle2D region)
+	{
+		List<Figure> found = new ArrayList<Figure>();
+
+		if (region != null) {
+			for (Figure f : index.search(region)) {
+				if (f.getShape().intersects(region))
+					found.add(f);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Obtention des figures dont le rectangle englobant (trait compris)
+	 * intersecte une région, sans tenir compte des filtres.
+	 * Lorsque la région est petite devant l'étendue du dessin les figures
+	 * sont obtenues par l'{@link #index}. Lorsqu'elle en couvre une grande
+	 * partie, la plupart des figures seront retenues de toute façon : un
+	 * simple parcours des figures comparant leurs rectangles englobants
+	 * mémorisés est alors plus rapide que la recherche dans l'index suivie
+	 * du tri des résultats.
+	 * @param region la région à examiner
+	 * @return la liste des figures pouvant dessiner dans cette région, dans
+	 * l'ordre d'empilement des figures
+	 */
+	public List<Figure> getFiguresIn(Rectangle2D region)
+	{
+		if (region == null)
+			return new ArrayList<Figure>(figures);
+
+		Rectangle2D extent = index.getBounds();
+		if (extent == null)
+			return new ArrayList<Figure>();
+
+		Rectangle2D covered = extent.createIntersection(region);
+		if ((covered.isEmpty()) ||
+		    ((covered.getWidth() * covered.getHeight()) <
+		     (SCAN_COVERAGE * extent.getWidth() * extent.getHeight())))
+			return index.search(region);
+
+		List<Figure> found = new ArrayList<Figure>();
+		for (Figure f : figures) {
+			if (f.strokedBounds().intersects(region))
+				found.add(f);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Obtention des figures entièrement contenues dans une région.
+	 * Les candidates sont obtenues par l'{@link #index} puis confirmées
+	 * par leur rectangle englobant.
+	 * @param region la région à examiner
+	 * @return la liste des figures dont le rectangle englobant est contenu
+	 * dans la région, dans l'ordre d'empilement des figures
+	 */
+	public List<Figure> figuresContainedIn(Rectangle2D region)
+	{
+		List<Figure> found = new ArrayList<Figure>();
+
+		if (region != null) {
+			for (Figure f : index.search(region)) {
+				if (region.contains(index.getBounds(f)))
+					found.add(f);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Obtention des figures dont la forme intersecte celle d'une figure.
+	 * Les candidates sont obtenues par l'{@link #index} à partir du
+	 * rectangle englobant de la figure puis confirmées par l'intersection
+	 * exacte de leurs aires ({@link FigureSnapshot#overlaps(FigureSnapshot)}),
+	 * mémorisées par les copies figées des figures.
+	 * Doit être appelée depuis le thread de l'interface graphique (cf.
+	 * {@link #findOverlappingAsync(Figure)} pour une recherche dans un autre
+	 * thread).
+	 * @param figure la figure dont on cherche les chevauchements
+	 * @return la liste des autres figures chevauchant figure, dans l'ordre
+	 * d'empilement des figures
+	 */
+	public List<Figure> findOverlapping(Figure figure)
+	{
+		if (figure == null)
+			return new ArrayList<Figure>();
+
+		return overlapping(figure.snapshot(), candidatesOf(figure));
+	}
+
+	/**
+	 * Recherche asynchrone des figures chevauchant une figure : la recherche
+	 * des candidates dans l'{@link #index} et les copies figées de la figure
+	 * et des candidates sont effectuées dans le thread appelant (celui de
+	 * l'interface graphique, seul autorisé à consulter l'index) puis les
+	 * intersections exactes sont calculées à partir de ces copies dans le
+	 * pool de threads commun afin de ne pas bloquer l'interface graphique. Si le dessin est modifié pendant la recherche, le résultat
+	 * porte sur l'état du dessin au moment de l'appel (cf.
+	 * {@link #getVersion()}).
+	 * @param figure la figure dont on cherche les chevauchements
+	 * @return le résultat à venir de la recherche
+	 */
+	public CompletableFuture<List<Figure>> findOverlappingAsync(Figure figure)
+	{
+		return findOverlappingAsync(figure, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Recherche asynchrone des figures chevauchant une figure dans un
+	 * exécuteur particulier
+	 * @param figure la figure dont on cherche les chevauchements
+	 * @param executor l'exécuteur dans lequel effectuer la recherche
+	 * @return le résultat à venir de la recherche
+	 * @see #findOverlappingAsync(Figure)
+	 */
+	public CompletableFuture<List<Figure>> findOverlappingAsync(Figure figure,
+	                                                           Executor executor)
+	{
+		if (figure == null)
+			return CompletableFuture.completedFuture(new ArrayList<Figure>());
+
+		FigureSnapshot query = figure.snapshot();
+		List<FigureSnapshot> candidates = candidatesOf(figure);
+		return CompletableFuture.supplyAsync(() -> overlapping(query,
+		                                                       candidates),
+		                                     executor);
+	}
+
+	/**
+	 * Copies figées des autres figures dont le rectangle englobant intersecte
+	 * celui d'une figure, dans l'ordre d'empilement des figures
+	 * @param figure la figure dont on cherche les chevauchements
+	 * @return les copies des figures candidates
+	 */
+	private List<FigureSnapshot> candidatesOf(Figure figure)
+	{
+		Rectangle2D bounds = index.getBounds(figure);
+		if (bounds == null)
+			bounds = figure.getStrokedBounds2D();
+		List<Figure> found = index.search(bounds);
+
+		List<FigureSnapshot> candidates =
+			new ArrayList<FigureSnapshot>(found.size());
+		for (Figure f : found) {
+			if (f != figure)
+				candidates.add(f.snapshot());
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Sélection des candidates dont l'aire intersecte celle d'une figure.
+	 * Ne manipule que des copies figées et peut donc être exécutée dans
+	 * n'importe quel thread.
+	 * @param query la copie de la figure dont on cherche les chevauchements
+	 * @param candidates les copies des figures candidates
+	 * @return les figures dont la copie chevauche query
+	 */
+	private static List<Figure> overlapping(FigureSnapshot query,
+	                                        List<FigureSnapshot> candidates)
+	{
+		List<Figure> found = new ArrayList<Figure>();
+		for (FigureSnapshot c : candidates) {
+			if (query.overlaps(c))
+				found.add(c.getFigure());
+		}
+
+		return found;
+	}
+
+	/**
+	 * Accès aux figures sélectionnées
+	 * @return une vue non modifiable des figures sélectionnées
+	 */
+	public Collection<Figure> getSelection()
+	{
+		return Collections.unmodifiableCollection(selection);
+	}
+
+	/**
+	 * Teste si une figure fait partie de la sélection
+	 * @param figure la figure à tester
+	 * @return true si la figure est sélectionnée
+	 */
+	public boolean isSelected(Figure figure)
+	{
+		return selection.contains(figure);
+	}
+
+	/**
+	 * Mise en place d'une nouvelle sélection
+	 * @param selected les figures à sélectionner
+	 * @param extend si true les figures sont ajoutées à la sélection
+	 * courante, sinon elles la remplacent
+	 */
+	public void select(Collection<Figure> selected, boolean extend)
+	{
+		// Seules les figures dont l'état de sélection change sont à redessiner
+		List<Figure> changed = new ArrayList<Figure>();
+		if (!extend) {
+			for (Figure f : selection) {
+				if ((selected == null) || !selected.contains(f))
+					changed.add(f);
+			}
+			selection.clear();
+		}
+
+		if (selected != null) {
+			for (Figure f : selected) {
+				if (selection.add(f) && !changed.contains(f))
+					changed.add(f);
+			}
+		}
+
+		if (!changed.isEmpty())
+			update(new DrawingChange(null, boundsOf(changed)));
+	}
+
+	/**
+	 * Effacement de la sélection
+	 */
+	public void clearSelection()
+	{
+		if (!selection.isEmpty()) {
+			Rectangle2D dirty = boundsOf(selection);
+			selection.clear();
+			update(new DrawingChange(null, dirty));
+		}
+	}
+
+	/**
+	 * Réunion des rectangles englobants indexés d'un ensemble de figures
+	 * @param collection les figures
+	 * @return la réunion des rectangles englobants (trait compris) des
+	 * figures ou bien null si aucune n'est indexée
+	 */
+	private Rectangle2D boundsOf(Collection<Figure> collection)
+	{
+		Rectangle2D union = null;
+		for (Figure f : collection) {
+			Rectangle2D bounds = index.getBounds(f);
+			if (bounds == null)
+				continue;
+			if (union == null)
+				union = bounds;
+			else
+				union.add(bounds);
+		}
+
+		return union;
+	}
+
+	/**
+	 * Accesseur de la zone de sélection en cours de tracé
+	 * @return la zone de sélection courante ou null s'il n'y en a pas
+	 */
+	public Rectangle2D getSelectionArea()
+	{
+		return selectionArea;
+	}
+
+	/**
+	 * Mise en place de la zone de sélection en cours de tracé
+	 * @param area la nouvelle zone de sélection ou null pour la retirer
+	 * @post les observateurs sont notifiés avec la réunion de l'ancienne et
+	 * de la nouvelle zone
+	 */
+	public void setSelectionArea(Rectangle2D area)
+	{
+		Rectangle2D previous = selectionArea;
+		selectionArea = area;
+
+		Rectangle2D dirty = null;
+		if ((previous != null) && (area != null))
+			dirty = previous.createUnion(area);
+		else if (previous != null)
+			dirty = previous.getBounds2D();
+		else if (area != null)
+			dirty = area.getBounds2D();
+
+		if (dirty != null)
+			update(new DrawingChange(null, dirty));
+	}
+
 	/**
 	 * Ajout d'un filtre pour filtrer les types de figures
 	 * @param filter le filtre à ajouter
@@ -364,6 +1225,9 @@ public class Drawing extends Observable
 		if (filter != null)
 			added = shapeFilters.add(filter);
 		
+		if (added)
+			update();
+
 		return added;
 		
 	}
@@ -382,6 +1246,9 @@ public class Drawing extends Observable
 		if (filter != null)
 			removed = shapeFilters.remove(filter);
 		
+		if (removed)
+			update();
+
 		return removed;
 	}
 	
@@ -394,6 +1261,7 @@ public class Drawing extends Observable
 	public void setFillColorFilter(FillColorFilter filter)
 	{
 		fillColorFilter = filter;
+		update();
 	}
 	
 	/**
@@ -405,6 +1273,7 @@ public class Drawing extends Observable
 	public void setEdgeColorFilter(EdgeColorFilter filter)
 	{
 		edgeColorFilter = filter;
+		update();
 	}
 	
 	/**
@@ -421,6 +1290,9 @@ public class Drawing extends Observable
 		if (filter != null)
 			added = lineFilters.add(filter);
 		
+		if (added)
+			update();
+
 		return added;
 	}
 
@@ -438,6 +1310,9 @@ public class Drawing extends Observable
 		if (filter != null)
 			removed = lineFilters.remove(filter);
 		
+		if (removed)
+			update();
+
 		return removed;
 	}
 
@@ -449,7 +1324,20 @@ public class Drawing extends Observable
 	 */
 	public Stream<Figure> stream()
 	{
-		Stream<Figure> figuresStream = figures.stream();
+		return stream(figures);
+	}
+
+	/**
+	 * Accès à un sous-ensemble des figures (par exemple obtenu par
+	 * {@link #getFiguresIn(Rectangle2D)}) dans un stream auquel sont
+	 * appliqués les mêmes filtres que dans {@link #stream()}
+	 * @param subset les figures à fournir dans le flux
+	 * @return le flux des figures du sous-ensemble éventuellement filtrées
+	 * par les différents filtres
+	 */
+	public Stream<Figure> stream(Collection<Figure> subset)
+	{
+		Stream<Figure> figuresStream = subset.stream();
 		
 		if (filtering) {
 			if (shapeFilters.size()  > 0)
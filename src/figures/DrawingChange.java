@@ -0,0 +1,83 @@
+package figures;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Description d'une modification du modèle de dessin transmise aux
+ * observateurs du {@link Drawing} (en tant que paramètre data de
+ * {@link java.util.Observer#update(java.util.Observable, Object)}).
+ * Permet aux vues de ne mettre à jour que la région concernée par la
+ * modification.
+ *
+ * @author davidroussel
+ */
+public class DrawingChange
+{
+	/**
+	 * La figure modifiée (ou null si la modification ne concerne pas une
+	 * figure en particulier)
+	 */
+	private final Figure figure;
+
+	/**
+	 * La région du dessin concernée par la modification ou bien null si
+	 * l'ensemble du dessin est concerné
+	 */
+	private final Rectangle2D bounds;
+
+	/**
+	 * Constructeur d'une modification
+	 * @param figure la figure modifiée (ou null)
+	 * @param bounds la région concernée par la modification (ou null si
+	 * l'ensemble du dessin est concerné)
+	 */
+	public DrawingChange(Figure figure, Rectangle2D bounds)
+	{
+		this.figure = figure;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Accesseur de la figure modifiée
+	 * @return la figure modifiée ou bien null
+	 */
+	public Figure getFigure()
+	{
+		return figure;
+	}
+
+	/**
+	 * Accesseur de la région concernée par la modification
+	 * @return la région concernée par la modification ou bien null si
+	 * l'ensemble du dessin est concerné
+	 */
+	public Rectangle2D getBounds()
+	{
+		return bounds;
+	}
+
+	/**
+	 * Teste si la modification concerne l'ensemble du dessin
+	 * @return true si aucune région particulière n'est associée à cette
+	 * modification
+	 */
+	public boolean isGlobal()
+	{
+		return bounds == null;
+	}
+
+	/**
+	 * Obtention de la région concernée par une notification quelconque
+	 * @param data les données transmises par le {@link Drawing} à ses
+	 * observateurs
+	 * @return la région concernée ou bien null si l'ensemble du dessin est
+	 * concerné
+	 */
+	public static Rectangle2D boundsOf(Object data)
+	{
+		if (data instanceof DrawingChange)
+			return ((DrawingChange) data).getBounds();
+
+		return null;
+	}
+}
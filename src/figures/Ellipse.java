@@ -59,6 +59,7 @@ public class Ellipse extends Figure
 			float newHeight = (float) (p.getY() - ellipse.y);
 			ellipse.width = newWidth;
 			ellipse.height = newHeight;
+			shapeChanged();
 		}
 	}
 
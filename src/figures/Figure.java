@@ -5,10 +5,15 @@ import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
 
 import figures.enums.FigureType;
+import utils.EdgeGrid;
 
 /**
  * Classe commune à toutes les sortes de figures
@@ -47,6 +52,66 @@ public abstract class Figure
 	 */
 	protected int instanceNumber;
 
+	/**
+	 * Numéro de version de la géométrie de la figure, incrémenté par
+	 * {@link #shapeChanged()} à chaque modification de {@link #shape}.
+	 * Permet d'invalider les données calculées à partir de la forme.
+	 * Peut être lu depuis un autre thread.
+	 */
+	private volatile long shapeVersion;
+
+	/**
+	 * Contour épaissi de la figure utilisé pour les tests de contact sur le
+	 * bord de la figure (calculé paresseusement par
+	 * {@link #getHitOutline(double)})
+	 */
+	private Shape hitOutline;
+
+	/**
+	 * Version de la géométrie pour laquelle {@link #hitOutline} a été calculé
+	 */
+	private long hitOutlineVersion;
+
+	/**
+	 * Trait pour lequel {@link #hitOutline} a été calculé
+	 */
+	private BasicStroke hitOutlineStroke;
+
+	/**
+	 * Tolérance pour laquelle {@link #hitOutline} a été calculé
+	 */
+	private double hitOutlineTolerance;
+
+	/**
+	 * Nombre minimum de côtés à partir duquel une {@link EdgeGrid} est
+	 * construite pour accélérer {@link #contains(Point2D)}
+	 */
+	private static final int MIN_GRID_EDGES = 64;
+
+	/**
+	 * Grille d'accélération des tests d'inclusion construite par
+	 * {@link #finish()} pour les figures polygonales comportant de nombreux
+	 * sommets (null si absente ou invalidée par une modification de la forme)
+	 */
+	private EdgeGrid grid;
+
+	/**
+	 * Rectangle englobant (trait compris) mémorisé par
+	 * {@link #strokedBounds()} (null s'il doit être recalculé)
+	 */
+	private Rectangle2D strokedBounds;
+
+	/**
+	 * Copie figée de l'état de dessin de la figure mémorisée par
+	 * {@link #snapshot()} (null si elle n'a pas encore été demandée)
+	 */
+	private FigureSnapshot snapshot;
+
+	/**
+	 * Version de la géométrie pour laquelle {@link #snapshot} a été créée
+	 */
+	private long snapshotVersion;
+
 	/**
 	 * Constructeur d'une figure abstraite à partir d'un style de ligne d'une
 	 * couleur de bordure et d'une couleur de remplissage. Les styles de lignes
@@ -65,6 +130,59 @@ public abstract class Figure
 		this.fill = fill;
 		shape = null;
 		transform = null;
+		shapeVersion = 0;
+		hitOutline = null;
+		hitOutlineVersion = -1;
+	}
+
+	/**
+	 * Signale une modification de la géométrie de la figure : invalide les
+	 * données mémorisées calculées à partir de {@link #shape}. Doit être
+	 * appelée par toutes les méthodes qui modifient la forme.
+	 */
+	protected void shapeChanged()
+	{
+		shapeVersion++;
+		hitOutline = null;
+		grid = null;
+		strokedBounds = null;
+	}
+
+	/**
+	 * Terminaison de la figure : appelée lorsque la figure a fini d'être
+	 * créée ou déplacée afin de précalculer les données qui ne seront plus
+	 * modifiées avant la prochaine édition. Construit notamment la grille
+	 * d'accélération des tests d'inclusion des figures polygonales
+	 * comportant de nombreux sommets.
+	 * @see #isPolygonal()
+	 */
+	public void finish()
+	{
+		if ((grid == null) && (shape != null) && isPolygonal())
+		{
+			grid = EdgeGrid.create(shape, MIN_GRID_EDGES);
+		}
+	}
+
+	/**
+	 * Indique si la forme de cette figure est un polygone susceptible de
+	 * comporter de nombreux sommets et donc de bénéficier d'une
+	 * {@link EdgeGrid}
+	 * @return false par défaut
+	 */
+	protected boolean isPolygonal()
+	{
+		return false;
+	}
+
+	/**
+	 * Accesseur du numéro de version de la géométrie
+	 * @return le numéro de version de la forme, qui change à chaque
+	 * modification de celle-ci
+	 */
+	public long getShapeVersion()
+	{
+		return shapeVersion;
 	}
 
 	/**
@@ -84,6 +202,24 @@ public abstract class Figure
 	 * @param g2D le contexte graphique
 	 */
 	public final void draw(Graphics2D g2D)
+	{
+		drawShape(g2D, shape, transform, stroke, edge, fill);
+	}
+
+	/**
+	 * Dessin d'une forme avec le style d'une figure (cf.
+	 * {@link #draw(Graphics2D)}). Partagé avec {@link FigureSnapshot} afin
+	 * qu'une figure et sa copie produisent exactement les mêmes pixels.
+	 * @param g2D le contexte graphique
+	 * @param shape la forme à dessiner
+	 * @param transform la transformation de la figure (ou null)
+	 * @param stroke le trait du contour (ou null)
+	 * @param edge la couleur du contour (ou null)
+	 * @param fill la couleur de remplissage (ou null)
+	 */
+	static void drawShape(Graphics2D g2D, Shape shape,
+	                      AffineTransform transform, BasicStroke stroke,
+	                      Paint edge, Paint fill)
 	{
 		if (fill != null)
 		{
@@ -103,6 +239,52 @@ public abstract class Figure
 		}
 	}
 
+	/**
+	 * Obtention d'une copie figée de l'état de dessin de la figure pouvant
+	 * être dessinée depuis un autre thread pendant que la figure est
+	 * modifiée. La copie est mémorisée jusqu'à la prochaine modification de
+	 * la forme : tant que la figure ne change pas, la même copie est
+	 * renvoyée.
+	 * @return la copie de l'état de dessin de la figure
+	 */
+	public FigureSnapshot snapshot()
+	{
+		FigureSnapshot current = snapshot;
+		if ((current == null) || (snapshotVersion != shapeVersion))
+		{
+			current = new FigureSnapshot(this, copyOf(shape),
+			                             (transform != null ?
+			                              new AffineTransform(transform) :
+			                              null));
+			snapshot = current;
+			snapshotVersion = shapeVersion;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Copie d'une forme conservant son type (afin que son rendu soit
+	 * identique à celui de l'original)
+	 * @param shape la forme à copier
+	 * @return une copie indépendante de la forme
+	 */
+	private static Shape copyOf(Shape shape)
+	{
+		if (shape instanceof RectangularShape)
+			return (Shape) ((RectangularShape) shape).clone();
+		if (shape instanceof Path2D)
+			return (Shape) ((Path2D) shape).clone();
+		if (shape instanceof java.awt.Polygon)
+		{
+			java.awt.Polygon poly = (java.awt.Polygon) shape;
+			return new java.awt.Polygon(poly.xpoints, poly.ypoints,
+			                            poly.npoints);
+		}
+
+		return new Path2D.Double(shape);
+	}
+
 	/**
 	 * Obtention du nom de la figure. Le nom d'une figure est composé de son
 	 * type suivi par le numéro de l'instance de ce type
@@ -124,6 +306,71 @@ public abstract class Figure
 		return shape.getBounds2D();
 	}
 
+	/**
+	 * Obtention du rectangle englobant de la figure incluant la demi
+	 * épaisseur du trait lorsque celui-ci est dessiné.
+	 * @return le rectangle englobant (de largeur et hauteur positives) de
+	 * tout ce qui est dessiné par {@link #draw(Graphics2D)}
+	 */
+	public Rectangle2D getStrokedBounds2D()
+	{
+		return (Rectangle2D) strokedBounds().clone();
+	}
+
+	/**
+	 * Rectangle englobant de la figure (trait compris) mémorisé jusqu'à la
+	 * prochaine modification de la forme. Utilisé par le {@link Drawing}
+	 * pour éliminer rapidement les figures hors d'une région.
+	 * @return le rectangle englobant mémorisé qui ne doit pas être modifié
+	 */
+	Rectangle2D strokedBounds()
+	{
+		if (strokedBounds == null)
+		{
+			strokedBounds = computeStrokedBounds();
+		}
+
+		return strokedBounds;
+	}
+
+	/**
+	 * Calcul du rectangle englobant de la figure incluant la demi épaisseur
+	 * du trait
+	 * @return le rectangle englobant (de largeur et hauteur positives) de
+	 * tout ce qui est dessiné par {@link #draw(Graphics2D)}
+	 */
+	private Rectangle2D computeStrokedBounds()
+	{
+		Rectangle2D bounds = shape.getBounds2D();
+		Rectangle2D stroked = new Rectangle2D.Double(bounds.getX(),
+		                                             bounds.getY(), 0, 0);
+		stroked.add(bounds.getMaxX(), bounds.getMaxY());
+
+		double halfWidth = getStrokeWidth() / 2.0;
+		if (halfWidth > 0)
+		{
+			stroked.setRect(stroked.getX() - halfWidth,
+			                stroked.getY() - halfWidth,
+			                stroked.getWidth() + (2 * halfWidth),
+			                stroked.getHeight() + (2 * halfWidth));
+		}
+
+		return stroked;
+	}
+
+	/**
+	 * Largeur du trait effectivement dessiné
+	 * @return la largeur du {@link #stroke} si le bord de la figure est
+	 * dessiné, 0 sinon
+	 */
+	public float getStrokeWidth()
+	{
+		if ((edge != null) && (stroke != null))
+			return stroke.getLineWidth();
+
+		return 0.0f;
+	}
+
 	/**
 	 * Obtention du barycentre de la figure.
 	 * @return le point correspondant au barycentre de la figure
@@ -132,15 +379,167 @@ public abstract class Figure
 
 	/**
 	 * Teste si le point p est contenu dans cette figure.
-	 * Utilise {@link Shape#contains(Point2D)}
+	 * Utilise {@link Shape#contains(Point2D)} ou bien la grille
+	 * d'accélération construite par {@link #finish()} lorsqu'elle existe
 	 * @param p le point dont on veut tester s'il est contenu dans la figure
 	 * @return true si le point p est contenu dans la figure, false sinon
 	 */
  	public boolean contains(Point2D p)
  	{
+ 		if (grid != null)
+ 			return grid.contains(p);
+
  		return shape.contains(p);
  	}
 
+ 	/**
+	 * Teste si le point p touche cette figure : soit il est contenu dans
+	 * la forme, soit il se trouve sur le trait de la figure ou à moins de
+	 * tolerance pixels de celui-ci. Le contour épaissi utilisé pour ce test
+	 * est calculé une seule fois puis mémorisé jusqu'à la prochaine
+	 * modification de la forme ou du trait.
+	 * @param p le point à tester
+	 * @param tolerance la distance (en pixels) en deçà de laquelle un point
+	 * proche du bord est considéré comme touchant la figure
+	 * @return true si le point p touche la figure, false sinon
+	 */
+	public boolean contains(Point2D p, double tolerance)
+	{
+		if (contains(p))
+			return true;
+
+		Shape outline = getHitOutline(tolerance);
+		if (outline == null)
+			return false;
+
+		Rectangle2D bounds = strokedBounds();
+		if ((p.getX() < bounds.getMinX() - tolerance) ||
+		    (p.getX() > bounds.getMaxX() + tolerance) ||
+		    (p.getY() < bounds.getMinY() - tolerance) ||
+		    (p.getY() > bounds.getMaxY() + tolerance))
+			return false;
+
+		return outline.contains(p);
+	}
+
+	/**
+	 * Obtention de l'aire occupée par la forme de la figure (sans son
+	 * trait), mémorisée par sa copie figée ({@link #snapshot()}) : l'aire
+	 * n'est donc calculée qu'une fois par version de la géométrie.
+	 * @return l'aire occupée par la figure. Celle ci est partagée et ne doit
+	 * donc pas être modifiée : utiliser une copie pour les opérations
+	 * booléennes.
+	 * @see FigureSnapshot#getArea()
+	 */
+	public Area getArea()
+	{
+		return snapshot().getArea();
+	}
+
+	/**
+	 * Teste si la forme de cette figure intersecte celle d'une autre figure
+	 * (test exact basé sur les aires mémorisées par {@link #getArea()},
+	 * précédé d'un test des rectangles englobants)
+	 * @param other l'autre figure
+	 * @return true si les deux formes ont une partie commune d'aire non
+	 * nulle
+	 * @see FigureSnapshot#overlaps(FigureSnapshot)
+	 */
+	public boolean overlaps(Figure other)
+	{
+		return snapshot().overlaps(other.snapshot());
+	}
+
+	/**
+	 * Recherche du point remarquable de la figure (sommet ou centre) le plus
+	 * proche d'un point, utilisé pour l'aimantation. Les sommets des figures
+	 * terminées possédant une {@link EdgeGrid} sont recherchés dans celle-ci
+	 * sans parcourir l'ensemble du contour.
+	 * @param p le point de référence
+	 * @param radius la distance maximum entre p et le point remarquable
+	 * @return le sommet ou le centre le plus proche de p ou bien null s'il
+	 * n'y en a aucun à moins de radius de p
+	 */
+	public Point2D nearestVertex(Point2D p, double radius)
+	{
+		Point2D best = null;
+		double bestDistance = radius;
+
+		Point2D center = getCenter();
+		if ((center != null) && (center.distance(p) <= bestDistance))
+		{
+			best = center;
+			bestDistance = center.distance(p);
+		}
+
+		if (grid != null)
+		{
+			Point2D vertex = grid.nearestVertex(p.getX(), p.getY(),
+			                                    bestDistance);
+			return (vertex != null ? vertex : best);
+		}
+
+		double[] coords = new double[6];
+		for (PathIterator pi = shape.getPathIterator(null); !pi.isDone();
+			pi.next())
+		{
+			int type = pi.currentSegment(coords);
+			int last;
+			switch (type)
+			{
+				case PathIterator.SEG_MOVETO:
+				case PathIterator.SEG_LINETO:
+					last = 0;
+					break;
+				case PathIterator.SEG_QUADTO:
+					last = 2;
+					break;
+				case PathIterator.SEG_CUBICTO:
+					last = 4;
+					break;
+				default:
+					continue;
+			}
+			double d = p.distance(coords[last], coords[last + 1]);
+			if (d <= bestDistance)
+			{
+				best = new Point2D.Double(coords[last], coords[last + 1]);
+				bestDistance = d;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Obtention (et mémorisation) du contour épaissi de la figure : la zone
+	 * couverte par le trait de la figure élargi de tolerance de chaque côté.
+	 * Les pointillés éventuels du trait sont ignorés afin que les espaces
+	 * entre les tirets restent sensibles.
+	 * @param tolerance la distance supplémentaire de chaque côté du trait
+	 * @return le contour épaissi ou bien null si le trait et la tolérance
+	 * sont nuls
+	 */
+	protected Shape getHitOutline(double tolerance)
+	{
+		if ((hitOutline != null) && (hitOutlineVersion == shapeVersion) &&
+		    (hitOutlineStroke == stroke) && (hitOutlineTolerance == tolerance))
+			return hitOutline;
+
+		float width = getStrokeWidth() + (float) (2.0 * tolerance);
+		if (width <= 0.0f)
+			return null;
+
+		BasicStroke hitStroke = new BasicStroke(width, BasicStroke.CAP_ROUND,
+		                                        BasicStroke.JOIN_ROUND);
+		hitOutline = hitStroke.createStrokedShape(shape);
+		hitOutlineVersion = shapeVersion;
+		hitOutlineStroke = stroke;
+		hitOutlineTolerance = tolerance;
+
+		return hitOutline;
+	}
+
  	/**
  	 * Accesseur du type de figure selon {@link FigureType}
  	 * @return le type de figure
@@ -189,9 +588,11 @@ public abstract class Figure
 
 	public void setTransform(AffineTransform transform) {
 		this.transform = transform;
+		shapeChanged();
 	}
 
 	public void setShape(Shape shape) {
 		this.shape = shape;		
+		shapeChanged();
 	}	
 }
@@ -0,0 +1,28 @@
+package figures;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Stratégie alternative de recherche de la figure située sous un point
+ * pouvant être mise en place dans un {@link Drawing} (par exemple par une
+ * vue disposant d'un tampon d'identifiants de figures).
+ * @see Drawing#setPicker(FigurePicker)
+ * @author davidroussel
+ */
+public interface FigurePicker
+{
+	/**
+	 * Teste si ce picker est en mesure de répondre pour le point p
+	 * @param p le point recherché
+	 * @return true si {@link #getFigureAt(Point2D)} peut être utilisé pour
+	 * p, false si le {@link Drawing} doit effectuer la recherche lui même
+	 */
+	public boolean canPick(Point2D p);
+
+	/**
+	 * Obtention de la plus haute figure touchant le point p
+	 * @param p le point recherché
+	 * @return la figure située sous p ou bien null s'il n'y en a pas
+	 */
+	public Figure getFigureAt(Point2D p);
+}
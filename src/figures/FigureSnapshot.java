@@ -0,0 +1,141 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Copie figée de l'état de dessin d'une {@link Figure} (forme, transformation
+ * et style) obtenue par {@link Figure#snapshot()}. Une copie n'est jamais
+ * modifiée après sa création : elle peut donc être dessinée depuis un autre
+ * thread que celui qui modifie la figure.
+ *
+ * @author davidroussel
+ */
+public final class FigureSnapshot
+{
+	/**
+	 * La figure copiée
+	 */
+	private final Figure figure;
+
+	/**
+	 * Copie de la forme de la figure
+	 */
+	private final Shape shape;
+
+	/**
+	 * Copie de la transformation de la figure (ou null)
+	 */
+	private final AffineTransform transform;
+
+	/**
+	 * Le trait du contour de la figure (non modifiable)
+	 */
+	private final BasicStroke stroke;
+
+	/**
+	 * La couleur du contour de la figure
+	 */
+	private final Paint edge;
+
+	/**
+	 * La couleur de remplissage de la figure
+	 */
+	private final Paint fill;
+
+	/**
+	 * Aire occupée par la copie de la forme, calculée paresseusement par
+	 * {@link #getArea()} (éventuellement depuis un autre thread)
+	 */
+	private volatile Area area;
+
+	/**
+	 * Constructeur d'une copie de l'état de dessin d'une figure
+	 * @param figure la figure copiée
+	 * @param shape la copie de la forme de la figure
+	 * @param transform la copie de la transformation de la figure (ou null)
+	 */
+	FigureSnapshot(Figure figure, Shape shape, AffineTransform transform)
+	{
+		this.figure = figure;
+		this.shape = shape;
+		this.transform = transform;
+		stroke = figure.getStroke();
+		edge = figure.getEdgePaint();
+		fill = figure.getFillPaint();
+		area = null;
+	}
+
+	/**
+	 * Accesseur de la figure copiée
+	 * @return la figure dont cet objet est une copie
+	 */
+	public Figure getFigure()
+	{
+		return figure;
+	}
+
+	/**
+	 * Dessin de la copie, identique au dessin de la figure au moment de la
+	 * copie (cf. {@link Figure#draw(Graphics2D)})
+	 * @param g2D le contexte graphique
+	 */
+	public void draw(Graphics2D g2D)
+	{
+		Figure.drawShape(g2D, shape, transform, stroke, edge, fill);
+	}
+
+	/**
+	 * Obtention (et mémorisation) de l'aire occupée par la copie de la
+	 * forme (sans son trait). La copie n'étant jamais modifiée, cette
+	 * méthode peut être appelée depuis n'importe quel thread : au pire
+	 * l'aire est calculée plusieurs fois.
+	 * @return l'aire occupée par la copie. Celle ci est partagée et ne doit
+	 * donc pas être modifiée : utiliser une copie pour les opérations
+	 * booléennes.
+	 */
+	public Area getArea()
+	{
+		Area cached = area;
+		if (cached == null)
+		{
+			cached = new Area(shape);
+			area = cached;
+		}
+
+		return cached;
+	}
+
+	/**
+	 * Rectangle englobant de la copie de la forme
+	 * @return le rectangle englobant de la forme copiée
+	 */
+	public Rectangle2D getBounds2D()
+	{
+		return shape.getBounds2D();
+	}
+
+	/**
+	 * Teste si la forme copiée intersecte celle d'une autre copie (test des
+	 * rectangles englobants puis test exact basé sur les aires mémorisées
+	 * par {@link #getArea()}). Peut être appelée depuis n'importe quel
+	 * thread.
+	 * @param other l'autre copie
+	 * @return true si les deux formes ont une partie commune d'aire non
+	 * nulle
+	 */
+	public boolean overlaps(FigureSnapshot other)
+	{
+		if (!getBounds2D().intersects(other.getBounds2D()))
+			return false;
+
+		Area common = new Area(getArea());
+		common.intersect(other.getArea());
+		return !common.isEmpty();
+	}
+}
@@ -0,0 +1,597 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Niveau de détail du dessin des figures en fonction de leur taille à
+ * l'écran. Les figures dont le rectangle englobant (en pixels) est plus
+ * petit que {@link #getPointSize()} sont dessinées comme un simple pixel,
+ * celles plus petites que {@link #getBoxSize()} comme un petit rectangle,
+ * dans leur couleur de remplissage (ou de contour à défaut). Les polygones
+ * comportant de nombreux sommets sont dessinés à partir d'un ensemble de
+ * sommets simplifié (algorithme de Douglas-Peucker) dont l'écart avec le
+ * contour d'origine est inférieur à {@link #getTolerance()} pixels. Les
+ * contours pointillés (de couleur uniforme) dont le motif est plus court
+ * que {@link #getMinDashPeriod()} pixels sont dessinés comme un trait plein
+ * dont la couleur est atténuée de la proportion couverte par les tirets.
+ * Les figures elles-mêmes ne sont jamais modifiées : les contours simplifiés
+ * sont mémorisés à part, par figure et par version de la forme.
+ *
+ * @author davidroussel
+ */
+public class LevelOfDetail
+{
+	/**
+	 * Taille (en pixels) par défaut en deçà de laquelle une figure est
+	 * dessinée comme un pixel
+	 */
+	public static final double DEFAULT_POINT_SIZE = 1.0;
+
+	/**
+	 * Taille (en pixels) par défaut en deçà de laquelle une figure est
+	 * dessinée comme un rectangle
+	 */
+	public static final double DEFAULT_BOX_SIZE = 3.0;
+
+	/**
+	 * Écart maximum (en pixels) par défaut entre un polygone simplifié et le
+	 * polygone d'origine
+	 */
+	public static final double DEFAULT_TOLERANCE = 0.5;
+
+	/**
+	 * Période (en pixels) par défaut des pointillés en deçà de laquelle un
+	 * trait pointillé est dessiné comme un trait plein atténué
+	 */
+	public static final double DEFAULT_MIN_DASH_PERIOD = 1.5;
+
+	/**
+	 * Nombre minimum de sommets à partir duquel un polygone est simplifié
+	 */
+	public static final int MIN_SIMPLIFIED_VERTICES = 16;
+
+	/**
+	 * Taille en deçà de laquelle une figure est dessinée comme un pixel
+	 */
+	private double pointSize;
+
+	/**
+	 * Taille en deçà de laquelle une figure est dessinée comme un rectangle
+	 */
+	private double boxSize;
+
+	/**
+	 * Écart maximum entre un polygone simplifié et le polygone d'origine
+	 */
+	private double tolerance;
+
+	/**
+	 * Période des pointillés en deçà de laquelle un trait pointillé est
+	 * dessiné comme un trait plein atténué
+	 */
+	private double minDashPeriod;
+
+	/**
+	 * Les contours simplifiés mémorisés pour chaque figure
+	 */
+	private Map<Figure, Simplified> simplified;
+
+	/**
+	 * Les traits pleins atténués mémorisés pour chaque trait pointillé
+	 */
+	private Map<BasicStroke, FadedStroke> faded;
+
+	/**
+	 * Nombre de figures dessinées de manière simplifiée depuis la création
+	 */
+	private long reducedFigures;
+
+	/**
+	 * Constructeur d'un niveau de détail avec les seuils par défaut
+	 */
+	public LevelOfDetail()
+	{
+		pointSize = DEFAULT_POINT_SIZE;
+		boxSize = DEFAULT_BOX_SIZE;
+		tolerance = DEFAULT_TOLERANCE;
+		minDashPeriod = DEFAULT_MIN_DASH_PERIOD;
+		simplified = new WeakHashMap<Figure, Simplified>();
+		faded = new HashMap<BasicStroke, FadedStroke>();
+		reducedFigures = 0;
+	}
+
+	/**
+	 * Accesseur de la taille en deçà de laquelle une figure est dessinée
+	 * comme un pixel
+	 * @return la taille (en pixels)
+	 */
+	public double getPointSize()
+	{
+		return pointSize;
+	}
+
+	/**
+	 * Changement de la taille en deçà de laquelle une figure est dessinée
+	 * comme un pixel
+	 * @param size la nouvelle taille (en pixels)
+	 */
+	public void setPointSize(double size)
+	{
+		pointSize = Math.max(0.0, size);
+	}
+
+	/**
+	 * Accesseur de la taille en deçà de laquelle une figure est dessinée
+	 * comme un rectangle
+	 * @return la taille (en pixels)
+	 */
+	public double getBoxSize()
+	{
+		return boxSize;
+	}
+
+	/**
+	 * Changement de la taille en deçà de laquelle une figure est dessinée
+	 * comme un rectangle
+	 * @param size la nouvelle taille (en pixels)
+	 */
+	public void setBoxSize(double size)
+	{
+		boxSize = Math.max(0.0, size);
+	}
+
+	/**
+	 * Accesseur de l'écart maximum entre un polygone simplifié et le
+	 * polygone d'origine
+	 * @return l'écart maximum (en pixels)
+	 */
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	/**
+	 * Changement de l'écart maximum entre un polygone simplifié et le
+	 * polygone d'origine
+	 * @param tolerance le nouvel écart (en pixels), 0 pour ne pas
+	 * simplifier les polygones
+	 */
+	public void setTolerance(double tolerance)
+	{
+		this.tolerance = Math.max(0.0, tolerance);
+		simplified.clear();
+	}
+
+	/**
+	 * Accesseur de la période des pointillés en deçà de laquelle un trait
+	 * pointillé est dessiné comme un trait plein atténué
+	 * @return la période (en pixels)
+	 */
+	public double getMinDashPeriod()
+	{
+		return minDashPeriod;
+	}
+
+	/**
+	 * Changement de la période des pointillés en deçà de laquelle un trait
+	 * pointillé est dessiné comme un trait plein atténué
+	 * @param period la nouvelle période (en pixels), 0 pour toujours
+	 * dessiner les pointillés
+	 */
+	public void setMinDashPeriod(double period)
+	{
+		minDashPeriod = Math.max(0.0, period);
+	}
+
+	/**
+	 * Nombre de figures dessinées de manière simplifiée
+	 * @return le nombre de figures dessinées comme un pixel, un rectangle,
+	 * un polygone simplifié ou un trait plein atténué depuis la création
+	 */
+	public long getReducedFigures()
+	{
+		return reducedFigures;
+	}
+
+	/**
+	 * Dessin d'une figure avec le niveau de détail correspondant à sa taille
+	 * dans le contexte graphique
+	 * @param g2D le contexte graphique
+	 * @param f la figure à dessiner
+	 */
+	public void draw(Graphics2D g2D, Figure f)
+	{
+		double scale = Math.sqrt(Math.abs(g2D.getTransform().getDeterminant()));
+		if ((scale == 0.0) || (f.getTransform() != null))
+		{
+			f.draw(g2D);
+			return;
+		}
+
+		Rectangle2D bounds = f.strokedBounds();
+		double size = Math.max(bounds.getWidth(), bounds.getHeight()) * scale;
+		Paint paint = (f.getFillPaint() != null ? f.getFillPaint() :
+			f.getEdgePaint());
+
+		if ((size < boxSize) && (paint != null))
+		{
+			g2D.setPaint(paint);
+			if (size < pointSize)
+			{
+				double pixel = 1.0 / scale;
+				g2D.fill(new Rectangle2D.Double(bounds.getCenterX() - (pixel / 2),
+				                                bounds.getCenterY() - (pixel / 2),
+				                                pixel, pixel));
+			}
+			else
+			{
+				g2D.fill(bounds);
+			}
+			reducedFigures++;
+			return;
+		}
+
+		BasicStroke stroke = f.getStroke();
+		Paint edge = f.getEdgePaint();
+		boolean reduced = false;
+		if ((stroke != null) && (stroke.getDashArray() != null) &&
+		    (edge instanceof Color) &&
+		    ((dashPeriod(stroke) * scale) < minDashPeriod))
+		{
+			// Tirets indiscernables : trait plein atténué
+			FadedStroke solid = faded.computeIfAbsent(stroke, FadedStroke::new);
+			edge = solid.fade((Color) edge);
+			stroke = solid.stroke;
+			reduced = true;
+		}
+
+		Shape shape = f.getShape();
+		if ((tolerance > 0.0) && f.isPolygonal())
+		{
+			Shape simple = simplify(f, tolerance / scale);
+			reduced |= (simple != shape);
+			shape = simple;
+		}
+
+		if (reduced)
+		{
+			Figure.drawShape(g2D, shape, null, stroke, edge, f.getFillPaint());
+			reducedFigures++;
+			return;
+		}
+
+		f.draw(g2D);
+	}
+
+	/**
+	 * Obtention (mémorisée) du contour simplifié d'une figure polygonale
+	 * @param f la figure
+	 * @param epsilon l'écart maximum (en coordonnées du dessin)
+	 * @return le contour simplifié ou bien la forme de la figure si elle ne
+	 * peut pas ou n'a pas besoin d'être simplifiée
+	 */
+	private Shape simplify(Figure f, double epsilon)
+	{
+		Simplified cached = simplified.get(f);
+		if ((cached != null) && (cached.version == f.getShapeVersion()) &&
+		    (cached.epsilon == epsilon))
+			return (cached.shape != null ? cached.shape : f.getShape());
+
+		Shape result = simplify(f.getShape(), epsilon);
+		simplified.put(f, new Simplified(f.getShapeVersion(), epsilon, result));
+
+		return (result != null ? result : f.getShape());
+	}
+
+	/**
+	 * Simplification d'une forme constituée de polygones fermés
+	 * @param shape la forme à simplifier
+	 * @param epsilon l'écart maximum (en coordonnées du dessin)
+	 * @return la forme simplifiée ou bien null si la forme comporte des
+	 * courbes, trop peu de sommets ou si la simplification ne retire aucun
+	 * sommet
+	 */
+	private static Shape simplify(Shape shape, double epsilon)
+	{
+		List<double[]> polygons = new ArrayList<double[]>();
+		double[] coords = new double[6];
+		double[] current = new double[16];
+		int n = 0;
+		int total = 0;
+		PathIterator pi = shape.getPathIterator(null);
+		int windingRule = pi.getWindingRule();
+		for (; !pi.isDone(); pi.next())
+		{
+			switch (pi.currentSegment(coords))
+			{
+				case PathIterator.SEG_MOVETO:
+					if (n > 0)
+						polygons.add(Arrays.copyOf(current, n));
+					current = append(current, 0, coords);
+					n = 2;
+					total++;
+					break;
+				case PathIterator.SEG_LINETO:
+					current = append(current, n, coords);
+					n += 2;
+					total++;
+					break;
+				case PathIterator.SEG_CLOSE:
+					break;
+				default:
+					return null;
+			}
+		}
+		if (n > 0)
+			polygons.add(Arrays.copyOf(current, n));
+
+		if (total < MIN_SIMPLIFIED_VERTICES)
+			return null;
+
+		Path2D.Double path = new Path2D.Double(windingRule);
+		int kept = 0;
+		for (double[] polygon : polygons)
+		{
+			int count = polygon.length / 2;
+			boolean[] keep = new boolean[count];
+			keep[0] = true;
+			keep[count - 1] = true;
+			if (count > 2)
+			{
+				// Le sommet le plus éloigné du premier coupe le polygone
+				// fermé en deux lignes simplifiées séparément
+				int far = farthest(polygon, 0, count);
+				keep[far] = true;
+				simplify(polygon, 0, far, epsilon * epsilon, keep);
+				simplify(polygon, far, count - 1, epsilon * epsilon, keep);
+			}
+
+			boolean first = true;
+			for (int i = 0; i < count; i++)
+			{
+				if (!keep[i])
+					continue;
+				if (first)
+					path.moveTo(polygon[2 * i], polygon[(2 * i) + 1]);
+				else
+					path.lineTo(polygon[2 * i], polygon[(2 * i) + 1]);
+				first = false;
+				kept++;
+			}
+			path.closePath();
+		}
+
+		return (kept < total ? path : null);
+	}
+
+	/**
+	 * Ajout d'un sommet aux coordonnées d'un polygone en cours de lecture
+	 * @param polygon les coordonnées des sommets déjà lus
+	 * @param n le nombre de coordonnées déjà lues
+	 * @param coords les coordonnées du segment lu (le sommet en tête)
+	 * @return le tableau des coordonnées (agrandi si nécessaire) contenant
+	 * le nouveau sommet à l'indice n
+	 */
+	private static double[] append(double[] polygon, int n, double[] coords)
+	{
+		if (n + 2 > polygon.length)
+			polygon = Arrays.copyOf(polygon, 2 * polygon.length);
+		polygon[n] = coords[0];
+		polygon[n + 1] = coords[1];
+
+		return polygon;
+	}
+
+	/**
+	 * Recherche du sommet le plus éloigné du premier sommet d'un polygone
+	 * @param polygon les coordonnées des sommets
+	 * @param from l'indice du premier sommet
+	 * @param count le nombre de sommets
+	 * @return l'indice du sommet le plus éloigné du premier
+	 */
+	private static int farthest(double[] polygon, int from, int count)
+	{
+		int best = from;
+		double bestDistance = -1.0;
+		for (int i = from + 1; i < count; i++)
+		{
+			double dx = polygon[2 * i] - polygon[2 * from];
+			double dy = polygon[(2 * i) + 1] - polygon[(2 * from) + 1];
+			double d = (dx * dx) + (dy * dy);
+			if (d > bestDistance)
+			{
+				bestDistance = d;
+				best = i;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Simplification (Douglas-Peucker) d'une portion de ligne polygonale :
+	 * marque les sommets à conserver entre deux sommets conservés
+	 * @param polygon les coordonnées des sommets
+	 * @param from l'indice du premier sommet (conservé)
+	 * @param to l'indice du dernier sommet (conservé)
+	 * @param epsilonSq le carré de l'écart maximum
+	 * @param keep les sommets à conserver
+	 */
+	private static void simplify(double[] polygon, int from, int to,
+	                             double epsilonSq, boolean[] keep)
+	{
+		if (to - from < 2)
+			return;
+
+		double ax = polygon[2 * from];
+		double ay = polygon[(2 * from) + 1];
+		double dx = polygon[2 * to] - ax;
+		double dy = polygon[(2 * to) + 1] - ay;
+		double lengthSq = (dx * dx) + (dy * dy);
+
+		int best = -1;
+		double bestDistance = epsilonSq;
+		for (int i = from + 1; i < to; i++)
+		{
+			double px = polygon[2 * i] - ax;
+			double py = polygon[(2 * i) + 1] - ay;
+			double d;
+			if (lengthSq == 0.0)
+			{
+				d = (px * px) + (py * py);
+			}
+			else
+			{
+				double cross = (px * dy) - (py * dx);
+				d = (cross * cross) / lengthSq;
+			}
+			if (d > bestDistance)
+			{
+				bestDistance = d;
+				best = i;
+			}
+		}
+
+		if (best >= 0)
+		{
+			keep[best] = true;
+			simplify(polygon, from, best, epsilonSq, keep);
+			simplify(polygon, best, to, epsilonSq, keep);
+		}
+	}
+
+	/**
+	 * Longueur d'un motif de pointillés
+	 * @param stroke un trait pointillé
+	 * @return la somme des longueurs des tirets et des espaces du motif (un
+	 * motif de longueur impaire étant répété deux fois)
+	 */
+	private static double dashPeriod(BasicStroke stroke)
+	{
+		float[] dash = stroke.getDashArray();
+		double period = 0.0;
+		for (float length : dash)
+			period += length;
+
+		return ((dash.length % 2) == 0 ? period : 2 * period);
+	}
+
+	/**
+	 * Trait plein et couleurs atténuées remplaçant un trait pointillé dont
+	 * les tirets sont indiscernables
+	 */
+	private static class FadedStroke
+	{
+		/**
+		 * Nombre maximum de couleurs atténuées mémorisées par trait
+		 */
+		private static final int MAX_COLORS = 256;
+
+		/**
+		 * Le trait plein de même épaisseur, extrémités et jointures que le
+		 * trait pointillé
+		 */
+		final BasicStroke stroke;
+
+		/**
+		 * Proportion de la longueur du trait pointillé couverte par les
+		 * tirets, extrémités comprises
+		 */
+		private final double coverage;
+
+		/**
+		 * Les couleurs atténuées déjà calculées pour ce trait
+		 */
+		private final Map<Color, Color> colors;
+
+		/**
+		 * Constructeur du trait plein remplaçant un trait pointillé
+		 * @param dashed le trait pointillé
+		 */
+		FadedStroke(BasicStroke dashed)
+		{
+			stroke = new BasicStroke(dashed.getLineWidth(), dashed.getEndCap(),
+			                         dashed.getLineJoin(),
+			                         dashed.getMiterLimit());
+
+			float[] dash = dashed.getDashArray();
+			double capLength = (dashed.getEndCap() == BasicStroke.CAP_BUTT ?
+				0.0 : dashed.getLineWidth());
+			double covered = 0.0;
+			int count = ((dash.length % 2) == 0 ? dash.length : 2 * dash.length);
+			for (int i = 0; i < count; i += 2)
+				covered += dash[i % dash.length] + capLength;
+			coverage = Math.min(1.0, covered / dashPeriod(dashed));
+
+			colors = new HashMap<Color, Color>();
+		}
+
+		/**
+		 * Atténuation d'une couleur de la proportion couverte par les tirets
+		 * @param color la couleur du trait pointillé
+		 * @return la couleur atténuée (mémorisée tant que le nombre de
+		 * couleurs mémorisées ne dépasse pas {@link #MAX_COLORS})
+		 */
+		Color fade(Color color)
+		{
+			Color result = colors.get(color);
+			if (result == null)
+			{
+				result = new Color(color.getRed(), color.getGreen(),
+				                   color.getBlue(),
+				                   (int) Math.round(color.getAlpha() * coverage));
+				if (colors.size() < MAX_COLORS)
+					colors.put(color, result);
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * Contour simplifié mémorisé pour une version de la forme d'une figure
+	 */
+	private static class Simplified
+	{
+		/**
+		 * La version de la forme simplifiée
+		 */
+		final long version;
+
+		/**
+		 * L'écart maximum utilisé (en coordonnées du dessin)
+		 */
+		final double epsilon;
+
+		/**
+		 * Le contour simplifié ou null si la forme n'est pas simplifiable
+		 */
+		final Shape shape;
+
+		/**
+		 * Constructeur d'un contour simplifié mémorisé
+		 * @param version la version de la forme simplifiée
+		 * @param epsilon l'écart maximum utilisé
+		 * @param shape le contour simplifié (ou null)
+		 */
+		Simplified(long version, double epsilon, Shape shape)
+		{
+			this.version = version;
+			this.epsilon = epsilon;
+			this.shape = shape;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package figures;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.geom.RoundRectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Élimination des figures entièrement cachées par des figures opaques
+ * situées devant elles. Les figures sont parcourues de l'avant vers
+ * l'arrière en accumulant l'intérieur (en pixels entiers) des rectangles et
+ * rectangles arrondis remplis d'une {@link Color} opaque : une figure dont
+ * tous les pixels touchés (rectangle englobant trait compris, élargi d'un
+ * pixel pour l'antialiasing) sont couverts par l'union de ces intérieurs
+ * n'est pas dessinée. L'élimination est conservatrice : les figures
+ * translatées, les remplissages non uniformes ou translucides et les
+ * transformations du contexte graphique autres qu'une mise à l'échelle et
+ * une translation ne cachent jamais rien, et le test est abandonné (figure
+ * dessinée) lorsqu'il devient trop coûteux.
+ * Le résultat est identique (au pixel près) au dessin de toutes les figures.
+ *
+ * @author davidroussel
+ */
+public class OcclusionCuller
+{
+	/**
+	 * Nombre maximum de figures cachantes mémorisées (les plus en avant)
+	 */
+	public static final int MAX_OCCLUDERS = 256;
+
+	/**
+	 * Nombre maximum de morceaux non couverts du rectangle d'une figure au
+	 * delà duquel la figure est considérée comme visible
+	 */
+	private static final int MAX_FRAGMENTS = 64;
+
+	/**
+	 * Nombre de figures éliminées lors du dernier appel à
+	 * {@link #cull(AffineTransform, List)}
+	 */
+	private int occludedCount;
+
+	/**
+	 * Constructeur d'un éliminateur de figures cachées
+	 */
+	public OcclusionCuller()
+	{
+		occludedCount = 0;
+	}
+
+	/**
+	 * Nombre de figures cachées lors de la dernière élimination
+	 * @return le nombre de figures éliminées par le dernier appel à
+	 * {@link #cull(AffineTransform, List)}
+	 */
+	public int getOccludedCount()
+	{
+		return occludedCount;
+	}
+
+	/**
+	 * Élimination des figures cachées
+	 * @param transform la transformation du contexte graphique dans lequel
+	 * les figures seront dessinées
+	 * @param figures les figures dans l'ordre d'empilement (de l'arrière vers
+	 * l'avant)
+	 * @return les figures non cachées dans l'ordre d'empilement
+	 */
+	public List<Figure> cull(AffineTransform transform, List<Figure> figures)
+	{
+		occludedCount = 0;
+		if ((transform.getType() & ~(AffineTransform.TYPE_TRANSLATION |
+		    AffineTransform.TYPE_MASK_SCALE)) != 0)
+		{
+			// Rotation ou cisaillement : aucun rectangle ne reste aligné
+			return figures;
+		}
+
+		List<Rectangle> occluders = new ArrayList<Rectangle>();
+		List<Figure> kept = new ArrayList<Figure>(figures.size());
+		for (int i = figures.size() - 1; i >= 0; i--)
+		{
+			Figure f = figures.get(i);
+			if (f.getTransform() != null)
+			{
+				kept.add(f);
+				continue;
+			}
+
+			if (!occluders.isEmpty() &&
+			    covered(footprint(transform, f.strokedBounds()), occluders))
+			{
+				occludedCount++;
+				continue;
+			}
+
+			kept.add(f);
+			if (occluders.size() < MAX_OCCLUDERS)
+				addInterior(transform, f, occluders);
+		}
+		Collections.reverse(kept);
+
+		return kept;
+	}
+
+	/**
+	 * Pixels susceptibles d'être touchés par le dessin d'une figure
+	 * @param transform la transformation du contexte graphique
+	 * @param bounds le rectangle englobant (trait compris) de la figure
+	 * @return le rectangle des pixels touchés élargi d'un pixel
+	 */
+	private static Rectangle footprint(AffineTransform transform,
+	                                   Rectangle2D bounds)
+	{
+		Rectangle2D device =
+			transform.createTransformedShape(bounds).getBounds2D();
+		int x0 = (int) Math.floor(device.getMinX()) - 1;
+		int y0 = (int) Math.floor(device.getMinY()) - 1;
+		int x1 = (int) Math.ceil(device.getMaxX()) + 1;
+		int y1 = (int) Math.ceil(device.getMaxY()) + 1;
+
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	/**
+	 * Ajout des pixels entièrement couverts par le remplissage opaque d'une
+	 * figure aux rectangles cachants
+	 * @param transform la transformation du contexte graphique
+	 * @param f la figure
+	 * @param occluders les rectangles cachants (en pixels)
+	 */
+	private static void addInterior(AffineTransform transform, Figure f,
+	                                List<Rectangle> occluders)
+	{
+		Paint fill = f.getFillPaint();
+		if (!(fill instanceof Color) || (((Color) fill).getAlpha() != 255))
+			return;
+
+		Shape shape = f.getShape();
+		if (shape instanceof Rectangle2D)
+		{
+			add(transform, (Rectangle2D) shape, occluders);
+		}
+		else if (shape instanceof RoundRectangle2D)
+		{
+			// Les deux rectangles en croix évitant les coins arrondis
+			RoundRectangle2D r = (RoundRectangle2D) shape;
+			double aw = Math.min(Math.abs(r.getArcWidth()), r.getWidth()) / 2;
+			double ah = Math.min(Math.abs(r.getArcHeight()), r.getHeight()) / 2;
+			add(transform, new Rectangle2D.Double(r.getX() + aw, r.getY(),
+			                                      r.getWidth() - (2 * aw),
+			                                      r.getHeight()),
+			    occluders);
+			add(transform, new Rectangle2D.Double(r.getX(), r.getY() + ah,
+			                                      r.getWidth(),
+			                                      r.getHeight() - (2 * ah)),
+			    occluders);
+		}
+	}
+
+	/**
+	 * Ajout des pixels entièrement contenus dans un rectangle aux rectangles
+	 * cachants
+	 * @param transform la transformation du contexte graphique
+	 * @param r le rectangle rempli (en coordonnées du dessin)
+	 * @param occluders les rectangles cachants (en pixels)
+	 */
+	private static void add(AffineTransform transform, RectangularShape r,
+	                        List<Rectangle> occluders)
+	{
+		Rectangle2D device = transform.createTransformedShape(
+			r.getFrame()).getBounds2D();
+		int x0 = (int) Math.ceil(device.getMinX());
+		int y0 = (int) Math.ceil(device.getMinY());
+		int x1 = (int) Math.floor(device.getMaxX());
+		int y1 = (int) Math.floor(device.getMaxY());
+		if ((x1 > x0) && (y1 > y0))
+			occluders.add(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+	}
+
+	/**
+	 * Teste si un rectangle est entièrement couvert par l'union des
+	 * rectangles cachants en retirant successivement de ce rectangle chacun
+	 * des rectangles cachants
+	 * @param r le rectangle testé
+	 * @param occluders les rectangles cachants
+	 * @return true si le rectangle est entièrement couvert, false s'il ne
+	 * l'est pas ou si le nombre de morceaux restants devient trop grand
+	 */
+	private static boolean covered(Rectangle r, List<Rectangle> occluders)
+	{
+		Deque<Rectangle> remaining = new ArrayDeque<Rectangle>();
+		remaining.add(r);
+		for (Rectangle o : occluders)
+		{
+			int count = remaining.size();
+			for (int k = 0; k < count; k++)
+			{
+				Rectangle p = remaining.poll();
+				if (!p.intersects(o))
+				{
+					remaining.add(p);
+					continue;
+				}
+
+				// Morceaux de p hors de o : bandes haute, basse, gauche et
+				// droite
+				int top = Math.max(p.y, o.y);
+				int bottom = Math.min(p.y + p.height, o.y + o.height);
+				if (o.y > p.y)
+					remaining.add(new Rectangle(p.x, p.y, p.width, o.y - p.y));
+				if (o.y + o.height < p.y + p.height)
+					remaining.add(new Rectangle(p.x, bottom, p.width,
+					                            (p.y + p.height) - bottom));
+				if (o.x > p.x)
+					remaining.add(new Rectangle(p.x, top, o.x - p.x,
+					                            bottom - top));
+				if (o.x + o.width < p.x + p.width)
+					remaining.add(new Rectangle(o.x + o.width, top,
+					                            (p.x + p.width) - (o.x + o.width),
+					                            bottom - top));
+			}
+			if (remaining.isEmpty())
+				return true;
+			if (remaining.size() > MAX_FRAGMENTS)
+				return false;
+		}
+
+		return remaining.isEmpty();
+	}
+}
@@ -41,6 +41,19 @@ public class Polygon extends Figure
 		shape = poly;
 	}
 
+	/**
+	 * Sommet (aux coordonnées entières) correspondant à un point : les
+	 * sommets du polygone étant stockés dans un {@link java.awt.Polygon},
+	 * les points sont arrondis à l'entier le plus proche, que le sommet soit
+	 * ajouté ou bien déplacé
+	 * @param p le point
+	 * @return le sommet arrondi correspondant
+	 */
+	public static Point vertexOf(Point2D p)
+	{
+		return new Point((int) Math.round(p.getX()), (int) Math.round(p.getY()));
+	}
+
 	/**
 	 * Ajout d'un point au polygone
 	 * @param x l'abcisse du point à ajouter
@@ -50,6 +63,7 @@ public class Polygon extends Figure
 	{
 		java.awt.Polygon poly = (java.awt.Polygon) shape;
 		poly.addPoint(x, y);
+		shapeChanged();
 	}
 
 	/**
@@ -79,6 +93,7 @@ public class Polygon extends Figure
 			{
 				poly.addPoint(xs[i], ys[i]);
 			}
+			shapeChanged();
 		}
 	}
 
@@ -94,8 +109,13 @@ public class Polygon extends Figure
 		int lastIndex = poly.npoints-1;
 		if (lastIndex >= 0)
 		{
-			poly.xpoints[lastIndex] = Double.valueOf(p.getX()).intValue();
-			poly.ypoints[lastIndex] = Double.valueOf(p.getY()).intValue();
+			Point vertex = vertexOf(p);
+			poly.xpoints[lastIndex] = vertex.x;
+			poly.ypoints[lastIndex] = vertex.y;
+			// les coordonnées ayant été modifiées directement, le rectangle
+			// englobant mémorisé par le polygone doit être recalculé
+			poly.invalidate();
+			shapeChanged();
 		}
 	}
 
@@ -139,4 +159,15 @@ public class Polygon extends Figure
  	{
  		return FigureType.POLYGON;
  	}
+
+	/**
+	 * Les polygones peuvent comporter de nombreux sommets : leurs tests
+	 * d'inclusion sont accélérés une fois la figure terminée
+	 * @see figures.Figure#isPolygonal()
+	 */
+	@Override
+	protected boolean isPolygonal()
+	{
+		return true;
+	}
 }
@@ -79,6 +79,7 @@ public class Rectangle extends Figure
 			float newHeight = (float) (p.getY() - rect.y);
 			rect.width = newWidth;
 			rect.height = newHeight;
+			shapeChanged();
 		}
 	}
 
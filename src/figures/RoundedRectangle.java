@@ -55,6 +55,7 @@ public class RoundedRectangle extends Rectangle
 		RoundRectangle2D.Float rect = (RoundRectangle2D.Float) shape;
 		rect.width = (float) (p.getX() - rect.x);;
 		rect.height = (float) (p.getY() - rect.y);
+		shapeChanged();
 	}
 
 	/**
@@ -97,6 +98,7 @@ public class RoundedRectangle extends Rectangle
 				rect.archeight = 0;
 			}
 		}
+		shapeChanged();
 	}
 	
  	/**
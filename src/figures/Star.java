@@ -2,7 +2,6 @@ package figures;
 
 import java.awt.BasicStroke;
 import java.awt.Paint;
-import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -66,6 +65,7 @@ public class Star extends Figure
 		}
 
 		shape = new Polygon(xPoly, yPoly, xPoly.length);
+		shapeChanged();
 	}
 	/**
 	 * Déplacement du dernier point de la ligne (utilisé lors du dessin d'un
@@ -104,15 +104,26 @@ public class Star extends Figure
  		return FigureType.STAR;
  	}
 
-	public void setSize(Point p) {
+	public void setSize(Point2D p) {
 		size = p.distance(center);
-		angle = Math.atan2(p.y - center.getY(), p.x - center.getX());
+		angle = Math.atan2(p.getY() - center.getY(), p.getX() - center.getX());
 		draw();
 	}
 
-	public void setN(Point p) {
+	public void setN(Point2D p) {
 		int n = (int) (p.distance(center) - size) / 10 + DEFAULT_N;
 		this.n = (n <= 3) ? 3 : n;
 		draw();
 	}
+
+	/**
+	 * Les étoiles peuvent comporter de nombreux sommets : leurs tests
+	 * d'inclusion sont accélérés une fois la figure terminée
+	 * @see figures.Figure#isPolygonal()
+	 */
+	@Override
+	protected boolean isPolygonal()
+	{
+		return true;
+	}
 }
\ No newline at end of file
@@ -83,6 +83,13 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 */
 	protected int currentStep;
 
+	/**
+	 * Le regroupement des mises à jour du dessin déclenchées par les
+	 * déplacements de la souris
+	 * @see #scheduleUpdate(Figure)
+	 */
+	private UpdateScheduler updates;
+
 	/**
 	 * Constructeur protégé (destiné à être utilisé par les classes filles)
 	 *
@@ -98,6 +105,7 @@ public abstract class AbstractCreationListener implements MouseListener,
 		tipLabel = infoLabel;
 		this.nbSteps = nbSteps;
 		currentStep = 0;
+		updates = new UpdateScheduler(model);
 
 		// Allocation du nombres de conseils utilisateurs nécessaires
 		tips = new String[(nbSteps > 0 ? nbSteps : 0)];
@@ -128,8 +136,9 @@ public abstract class AbstractCreationListener implements MouseListener,
 	/**
 	 * Initialisation de la création d'une nouvelle figure. détermine le point
 	 * de départ de la figure ({@link #startPoint}), initie une nouvelle figure
-	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)}),
-	 * met à jour le dessin {@link Drawing#update()}, puis passe à l'étape
+	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)}
+	 * qui notifie les observateurs du dessin) qui devient la figure active
+	 * du dessin ({@link Drawing#setActiveFigure(Figure)}), puis passe à l'étape
 	 * suivante en mettant à jour les conseils utilisateurs (
 	 * {@link #updateTip()}). Pour la plupart des figures la création commence
 	 * par un appui sur le bouton gauche de la souris. A utiliser dans
@@ -141,13 +150,12 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 */
 	public void startFigure(MouseEvent e)
 	{
-		if (!drawingModel.isMoveMode()) {
-			startPoint = e.getPoint();
-			currentFigure = drawingModel.initiateFigure(e.getPoint());
+		if (!drawingModel.isMoveMode() && !drawingModel.isSelectMode()) {
+			startPoint = drawingModel.snap(position(e), null);
+			currentFigure = drawingModel.initiateFigure(startPoint);
+			drawingModel.setActiveFigure(currentFigure);
 	
 			nextStep();
-	
-			drawingModel.update();
 		}
 	}
 
@@ -155,7 +163,11 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 * Terminaison de la création d'une figure. remet l'étape courante à 0,
 	 * détermine la position du point de terminaison de la figure (
 	 * {@link #endPoint}), vérifie que la figure ainsi terminée n'est pas de
-	 * taille 0 ({@link #checkZeroSizeFigure()}), puis met à jour le dessin (
+	 * taille 0 ({@link #checkZeroSizeFigure()}, auquel cas elle est retirée du
+	 * dessin) après avoir effectué la mise à jour en attente
+	 * ({@link #flushUpdate()}), termine la figure (
+	 * {@link Figure#finish()}) qui cesse d'être la figure active du dessin,
+	 * puis met à jour le dessin (
 	 * {@link Drawing#update()}) et les conseils utilisateurs (
 	 * {@link #updateTip()}). A utiliser dans un
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans un
@@ -167,17 +179,79 @@ public abstract class AbstractCreationListener implements MouseListener,
 	{
 		// Remise à zéro de currentStep pour pouvoir réutiliser ce
 		// listener sur une autre figure
-		if (!drawingModel.isMoveMode()) {
+		if (!drawingModel.isMoveMode() && !drawingModel.isSelectMode()) {
+			flushUpdate();
 			nextStep();
 	
-			endPoint = e.getPoint();
+			endPoint = snap(e);
 	
-			checkZeroSizeFigure();
+			if (checkZeroSizeFigure())
+			{
+				// Figure retirée : rien à terminer ni à mettre à jour
+				currentFigure = null;
+				return;
+			}
 	
-			drawingModel.update();
+			currentFigure.finish();
+			drawingModel.setActiveFigure(null);
+	
+			drawingModel.update(currentFigure);
 		}
 	}
 
+	/**
+	 * Mise à jour du dessin suite à la modification de la géométrie d'une
+	 * figure lors d'un déplacement de la souris. Les mises à jour sont
+	 * regroupées à raison d'au plus une notification des observateurs du
+	 * dessin par période de rafraichissement de l'écran, portant sur la
+	 * dernière géométrie de la figure (cf. {@link UpdateScheduler}).
+	 * @param figure la figure modifiée
+	 */
+	protected void scheduleUpdate(Figure figure)
+	{
+		updates.schedule(figure);
+	}
+
+	/**
+	 * Notification immédiate de la mise à jour en attente (s'il y en a une)
+	 * à effectuer avant toute opération reposant sur l'état du dessin connu
+	 * de ses observateurs ou sur son index (recherche de figure, changement
+	 * de figure active, etc.)
+	 */
+	protected void flushUpdate()
+	{
+		updates.flush();
+	}
+
+	/**
+	 * Position de l'évènement souris aimantée sur les figures existantes
+	 * (hormis la figure en cours de création) lorsque l'aimantation est
+	 * active dans le modèle de dessin
+	 * @param e l'évènement souris
+	 * @return la position (éventuellement aimantée) de l'évènement
+	 * @see Drawing#snap(Point2D, Figure)
+	 */
+	protected Point2D snap(MouseEvent e)
+	{
+		return drawingModel.snap(position(e), currentFigure);
+	}
+
+	/**
+	 * Position exacte de l'évènement souris dans le dessin : celle fournie
+	 * par un {@link DrawingMouseEvent} (qui n'est pas arrondie à l'unité du
+	 * dessin lorsque la vue est zoomée) ou à défaut la position entière de
+	 * l'évènement
+	 * @param e l'évènement souris
+	 * @return la position de l'évènement dans le dessin
+	 */
+	protected Point2D position(MouseEvent e)
+	{
+		if (e instanceof DrawingMouseEvent)
+			return ((DrawingMouseEvent) e).getDrawingPoint();
+
+		return e.getPoint();
+	}
+
 	/**
 	 * Passage à l'étape suivante et mise à jours des conseils utilisateurs
 	 * relatifs à l'étape suivante.
@@ -215,15 +289,21 @@ public abstract class AbstractCreationListener implements MouseListener,
 	/**
 	 * Contrôle de la taille de la figure créée à effectuer à la fin de la
 	 * création afin d'éliminer les figures de taille 0;
+	 * @return true si la figure était de taille 0 et a été retirée du
+	 * dessin ({@link Drawing#removeLastFigure()} ayant alors notifié ses
+	 * observateurs de la région qu'elle occupait)
 	 * @see #startPoint
 	 * @see #endPoint
 	 */
-	protected void checkZeroSizeFigure()
+	protected boolean checkZeroSizeFigure()
 	{
 		if (startPoint.distance(endPoint) < 1.0)
 		{
 			drawingModel.removeLastFigure();
 			System.err.println("Removed zero sized figure");
+			return true;
 		}
+
+		return false;
 	}
 }
@@ -0,0 +1,55 @@
+package figures.creationListeners;
+
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+
+/**
+ * Évènement souris exprimé dans les coordonnées du dessin. Une vue zoomée
+ * transmet à ses listeners des évènements dont les coordonnées entières
+ * ({@link #getX()}, {@link #getY()}) sont celles du dessin tronquées, tandis
+ * que {@link #getDrawingPoint()} fournit la position exacte du pointeur dans
+ * le dessin (avec la précision offerte par le zoom).
+ * @see AbstractCreationListener#position(MouseEvent)
+ * @author davidroussel
+ */
+public class DrawingMouseEvent extends MouseEvent
+{
+	/**
+	 * Numéro de série pour la sérialisation
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Position exacte du pointeur dans le dessin
+	 */
+	private final Point2D drawingPoint;
+
+	/**
+	 * Constructeur d'un évènement souris en coordonnées du dessin à partir
+	 * de l'évènement d'origine
+	 * @param source le composant source de l'évènement
+	 * @param e l'évènement d'origine (en coordonnées du composant)
+	 * @param drawingPoint la position exacte du pointeur dans le dessin
+	 */
+	public DrawingMouseEvent(Component source, MouseEvent e,
+	                         Point2D drawingPoint)
+	{
+		super(source, e.getID(), e.getWhen(),
+		      e.getModifiersEx(),
+		      (int) Math.floor(drawingPoint.getX()),
+		      (int) Math.floor(drawingPoint.getY()),
+		      e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(),
+		      e.isPopupTrigger(), e.getButton());
+		this.drawingPoint = drawingPoint;
+	}
+
+	/**
+	 * Position exacte du pointeur dans le dessin
+	 * @return une copie de la position du pointeur en coordonnées du dessin
+	 */
+	public Point2D getDrawingPoint()
+	{
+		return (Point2D) drawingPoint.clone();
+	}
+}
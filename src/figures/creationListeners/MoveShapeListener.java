@@ -51,14 +51,20 @@ public class MoveShapeListener extends AbstractCreationListener {
 
 	@Override
 	public void mousePressed(MouseEvent arg0) {
-		figure = drawingModel.getFigureAt(arg0.getPoint());
-		if (figure != null)
-				nextStep();
+		flushUpdate();
+		figure = drawingModel.getFigureAt(position(arg0));
+		if (figure != null) {
+			drawingModel.setActiveFigure(figure);
+			nextStep();
+		}
 	}
 
 	@Override
 	public void mouseReleased(MouseEvent e) {
+		flushUpdate();
 		if (figure != null) {
+			figure.finish();
+			drawingModel.setActiveFigure(null);
 			nextStep();
 		}
 	}
@@ -67,9 +73,10 @@ public class MoveShapeListener extends AbstractCreationListener {
 	public void mouseDragged(MouseEvent e) {
 		if (figure != null) {
 			AffineTransform t = new AffineTransform();
-			t.translate(e.getX() - figure.getCenter().getX(), e.getY() - figure.getCenter().getY());
+			Point2D p = position(e);
+			t.translate(p.getX() - figure.getCenter().getX(), p.getY() - figure.getCenter().getY());
 			figure.setShape(t.createTransformedShape(figure.getShape()));		
-			drawingModel.update();
+			scheduleUpdate(figure);
 		}		
 	}
 
@@ -86,7 +86,6 @@ public class PolygonCreationListener extends AbstractCreationListener
 	@Override
 	public void mouseClicked(MouseEvent e)
 	{
-		Point p = e.getPoint();
 		/*
 		 * Initie la création d'un premier point fixé à l'endroit du click
 		 * puis d'un deuxième point (créé au même endroit) qui se déplacera avec
@@ -96,6 +95,7 @@ public class PolygonCreationListener extends AbstractCreationListener
 		 * avec le bouton du milieu. Le polygone est terminé si l'utilisateur
 		 * clique sur le bouton droit.
 		 */
+		flushUpdate();
 		if (currentStep == 0)
 		{
 			if (e.getButton() == MouseEvent.BUTTON1)
@@ -114,20 +114,26 @@ public class PolygonCreationListener extends AbstractCreationListener
 			{
 				case MouseEvent.BUTTON1:
 					// On ajoute un point au polygone
-					poly.addPoint(p.x, p.y);
+					Point q = Polygon.vertexOf(snap(e));
+					poly.addPoint(q.x, q.y);
 					break;
 				case MouseEvent.BUTTON2:
 					// On supprime le dernier point
 					poly.removeLastPoint();
 					break;
 				case MouseEvent.BUTTON3:
-					// On termine le polygone
+					// On termine le polygone : endFigure a déjà mis à jour
+					// le dessin
 					endFigure(e);
+					currentFigure = null;
 					break;
 			}
 		}
 
-		drawingModel.update();
+		if (currentFigure != null)
+		{
+			drawingModel.update(currentFigure);
+		}
 		updateTip();
 	}
 
@@ -183,9 +189,9 @@ public class PolygonCreationListener extends AbstractCreationListener
 			Figure figure = currentFigure;
 			if (figure != null)
 			{
-				figure.setLastPoint(e.getPoint());
+				figure.setLastPoint(snap(e));
 			}
-			drawingModel.update();
+			scheduleUpdate(figure);
 		}
 	}
 }
@@ -1,6 +1,7 @@
 package figures.creationListeners;
 
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 import java.awt.event.KeyEvent;
 
 import javax.swing.JLabel;
@@ -77,6 +78,10 @@ public class RectangularNShapeCreationListener extends AbstractCreationListener
 		 */
 		if (currentStep == 2)
 		{
+			// Fin de la figure, une fois sa dernière géométrie notifiée
+			flushUpdate();
+			currentFigure.finish();
+			drawingModel.setActiveFigure(null);
 			nextStep();
 		}
 		if ((e.getButton() == MouseEvent.BUTTON1) && (currentStep == 1))
@@ -122,13 +127,13 @@ public class RectangularNShapeCreationListener extends AbstractCreationListener
 		if(currentStep == 2){
 			if(((Object) currentFigure).getClass()==(RegularPolygon.class)){
 				RegularPolygon polygon = (RegularPolygon) currentFigure;
-				polygon.setN(e.getPoint());
-				drawingModel.update();
+				polygon.setN(position(e));
+				scheduleUpdate(currentFigure);
 			}
 			else{
 				Star polygon = (Star) currentFigure;
-				polygon.setN(e.getPoint());
-				drawingModel.update();
+				polygon.setN(position(e));
+				scheduleUpdate(currentFigure);
 			}
 		}
 	}
@@ -152,17 +157,19 @@ public class RectangularNShapeCreationListener extends AbstractCreationListener
 		if (currentStep == 1){
 			if(((Object) currentFigure).getClass()==(RegularPolygon.class)){
 				RegularPolygon poly = (RegularPolygon) currentFigure;
-				currentFigure.setLastPoint(e.getPoint());
-				poly.setSize(e.getPoint());
+				Point2D p = snap(e);
+				currentFigure.setLastPoint(p);
+				poly.setSize(p);
 				
-				drawingModel.update();
+				scheduleUpdate(currentFigure);
 			}
 			else{
 				Star poly = (Star) currentFigure;
-				currentFigure.setLastPoint(e.getPoint());
-				poly.setSize(e.getPoint());
+				Point2D p = snap(e);
+				currentFigure.setLastPoint(p);
+				poly.setSize(p);
 				
-				drawingModel.update();
+				scheduleUpdate(currentFigure);
 			}
 		}
 		
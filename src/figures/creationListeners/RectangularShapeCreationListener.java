@@ -132,8 +132,8 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 		if (currentStep == 1)
 		{
 			// déplacement du coin inférieur droit du rectangle
-			currentFigure.setLastPoint(e.getPoint());
-			drawingModel.update();
+			currentFigure.setLastPoint(snap(e));
+			scheduleUpdate(currentFigure);
 		}
 	}
 }
@@ -118,9 +118,9 @@ public class RoundedRectangleCreationListener extends AbstractCreationListener
 		if (currentStep == 2)
 		{
 			RoundedRectangle rect = (RoundedRectangle) currentFigure;
-			rect.setArc(e.getPoint());
+			rect.setArc(position(e));
 
-			drawingModel.update();
+			scheduleUpdate(currentFigure);
 		}
 	}
 
@@ -137,8 +137,8 @@ public class RoundedRectangleCreationListener extends AbstractCreationListener
 		if (currentStep == 1)
 		{
 			// déplacement du coin inférieur droit du rectangle
-			currentFigure.setLastPoint(e.getPoint());
-			drawingModel.update();
+			currentFigure.setLastPoint(snap(e));
+			scheduleUpdate(currentFigure);
 		}
 	}
 }
@@ -0,0 +1,171 @@
+package figures.creationListeners;
+
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JLabel;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Listener permettant de sélectionner des figures existantes à l'aide d'un
+ * rectangle élastique :
+ * <ol>
+ * 	<li>bouton 1 pressé et maintenu enfoncé</li>
+ * 	<li>déplacement de la souris avec le bouton enfoncé pour tracer la zone
+ * 	de sélection</li>
+ * 	<li>relachement du bouton</li>
+ * </ol>
+ * Une zone tracée de gauche à droite sélectionne les figures entièrement
+ * contenues dans la zone ({@link Drawing#figuresContainedIn(Rectangle2D)}),
+ * une zone tracée de droite à gauche sélectionne les figures qui
+ * l'intersectent ({@link Drawing#figuresIntersecting(Rectangle2D)}).
+ * Un simple click sélectionne la figure située sous le curseur. Avec la
+ * touche Shift enfoncée les figures sont ajoutées à la sélection courante.
+ */
+public class RubberBandSelectionListener extends AbstractCreationListener
+{
+	/**
+	 * Constructeur d'un listener à deux étapes: pressed->drag->release pour
+	 * la sélection de figures
+	 *
+	 * @param model le modèle de dessin dont on sélectionne les figures
+	 * @param tipLabel le label dans lequel afficher les conseils utilisateur
+	 */
+	public RubberBandSelectionListener(Drawing model, JLabel tipLabel)
+	{
+		super(model, tipLabel, 2);
+
+		tips[0] = new String("Cliquez et tirez pour sélectionner des figures");
+		tips[1] = new String("Relâchez pour terminer la sélection");
+
+		updateTip();
+
+		System.out.println("RubberBandSelectionListener created");
+	}
+
+	/**
+	 * Début du tracé de la zone de sélection si le bouton appuyé est le
+	 * bouton gauche.
+	 * @param e l'évènement souris
+	 * @see java.awt.event.MouseListener#mousePressed(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mousePressed(MouseEvent e)
+	{
+		if ((e.getButton() == MouseEvent.BUTTON1) && (currentStep == 0))
+		{
+			startPoint = position(e);
+			drawingModel.setSelectionArea(area(startPoint, startPoint));
+			nextStep();
+		}
+	}
+
+	/**
+	 * Terminaison de la sélection : les figures correspondant à la zone
+	 * tracée (ou bien la figure sous le curseur s'il n'y a pas eu de
+	 * déplacement) deviennent la sélection courante.
+	 * @param e l'évènement souris
+	 * @see java.awt.event.MouseListener#mouseReleased(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseReleased(MouseEvent e)
+	{
+		if ((e.getButton() == MouseEvent.BUTTON1) && (currentStep == 1))
+		{
+			endPoint = position(e);
+			List<Figure> selected;
+
+			// Moins d'un pixel de la vue entre les deux points : simple clic
+			if ((startPoint.distance(endPoint) *
+			     drawingModel.getViewScale()) < 1.0)
+			{
+				Figure figure = drawingModel.getFigureAt(endPoint);
+				selected = (figure != null ? Collections.singletonList(figure)
+				                           : Collections.<Figure>emptyList());
+			}
+			else if (endPoint.getX() >= startPoint.getX())
+			{
+				selected = drawingModel.figuresContainedIn(area(startPoint,
+				                                                endPoint));
+			}
+			else
+			{
+				selected = drawingModel.figuresIntersecting(area(startPoint,
+				                                                 endPoint));
+			}
+
+			drawingModel.select(selected, e.isShiftDown());
+			drawingModel.setSelectionArea(null);
+			nextStep();
+		}
+	}
+
+	/**
+	 * Mise à jour de la zone de sélection lorsque l'on se trouve à l'étape 1
+	 * @see java.awt.event.MouseMotionListener#mouseDragged(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseDragged(MouseEvent e)
+	{
+		if (currentStep == 1)
+		{
+			drawingModel.setSelectionArea(area(startPoint, position(e)));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.awt.event.MouseListener#mouseClicked(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseClicked(MouseEvent e)
+	{
+		// Rien
+	}
+
+	/* (non-Javadoc)
+	 * @see java.awt.event.MouseListener#mouseEntered(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseEntered(MouseEvent e)
+	{
+		// Rien
+	}
+
+	/* (non-Javadoc)
+	 * @see java.awt.event.MouseListener#mouseExited(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseExited(MouseEvent e)
+	{
+		// Rien
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.awt.event.MouseMotionListener#mouseMoved(java.awt.event.MouseEvent)
+	 */
+	@Override
+	public void mouseMoved(MouseEvent e)
+	{
+		// Rien
+	}
+
+	/**
+	 * Rectangle normalisé défini par deux coins opposés
+	 * @param p1 le premier coin
+	 * @param p2 le coin opposé
+	 * @return le rectangle de largeur et hauteur positives ayant p1 et p2
+	 * pour coins opposés
+	 */
+	private static Rectangle2D area(Point2D p1, Point2D p2)
+	{
+		Rectangle2D area = new Rectangle2D.Double(p1.getX(), p1.getY(), 0, 0);
+		area.add(p2);
+		return area;
+	}
+}
@@ -0,0 +1,139 @@
+package figures.creationListeners;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+
+import javax.swing.Timer;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Regroupement des mises à jour du modèle de dessin déclenchées par les
+ * déplacements de la souris pendant la création ou le déplacement d'une
+ * figure. La géométrie de la figure est modifiée à chaque évènement, mais
+ * les observateurs du dessin ne sont prévenus ({@link Drawing#update(Figure)})
+ * qu'au plus une fois par période de rafraichissement de l'écran : si une
+ * période s'est écoulée depuis la précédente notification, celle-ci est
+ * effectuée immédiatement, sinon elle est différée jusqu'à la fin de la
+ * période et porte alors sur la dernière géométrie de la figure.
+ * En contrepartie, une mise à jour peut être retardée d'au plus une période
+ * (la fin de la période est mesurée depuis la précédente notification et
+ * non synchronisée sur le balayage de l'écran) : c'est le prix de la
+ * limitation du nombre de notifications lorsque la souris émet plus
+ * d'évènements que l'écran n'affiche d'images. Les opérations reposant sur
+ * l'état du dessin connu de ses observateurs ou sur son index doivent donc
+ * d'abord effectuer la notification en attente ({@link #flush()}).
+ * Les méthodes de cette classe doivent être appelées depuis le thread de
+ * l'interface graphique.
+ *
+ * @author davidroussel
+ */
+class UpdateScheduler
+{
+	/**
+	 * Fréquence de rafraichissement (en Hz) utilisée lorsque celle de
+	 * l'écran n'est pas connue
+	 */
+	private static final int DEFAULT_REFRESH_RATE = 60;
+
+	/**
+	 * Le modèle de dessin à mettre à jour
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Période de rafraichissement de l'écran (en ns)
+	 */
+	private final long framePeriod;
+
+	/**
+	 * Le minuteur déclenchant la notification différée jusqu'à la fin de la
+	 * période de rafraichissement courante
+	 */
+	private final Timer timer;
+
+	/**
+	 * La figure modifiée dont la notification est en attente (ou null)
+	 */
+	private Figure pending;
+
+	/**
+	 * Date (en ns) de la dernière notification
+	 */
+	private long lastUpdate;
+
+	/**
+	 * Constructeur d'un regroupement de mises à jour
+	 * @param drawing le modèle de dessin à mettre à jour
+	 */
+	public UpdateScheduler(Drawing drawing)
+	{
+		this.drawing = drawing;
+		framePeriod = 1000000000L / refreshRate();
+		timer = new Timer(0, e -> flush());
+		timer.setRepeats(false);
+		pending = null;
+		lastUpdate = System.nanoTime() - framePeriod;
+	}
+
+	/**
+	 * Demande de mise à jour suite à la modification de la géométrie d'une
+	 * figure : notification immédiate si une période de rafraichissement
+	 * s'est écoulée depuis la précédente, ou bien à la fin de la période
+	 * courante. Une notification en attente pour une autre figure est
+	 * effectuée immédiatement.
+	 * @param figure la figure modifiée
+	 */
+	public void schedule(Figure figure)
+	{
+		if ((pending != null) && (pending != figure))
+			flush();
+
+		pending = figure;
+		long wait = (lastUpdate + framePeriod) - System.nanoTime();
+		if (wait <= 0)
+		{
+			flush();
+		}
+		else if (!timer.isRunning())
+		{
+			timer.setInitialDelay((int) Math.ceil(wait / 1e6));
+			timer.restart();
+		}
+	}
+
+	/**
+	 * Notification immédiate de la mise à jour en attente (s'il y en a une).
+	 * A appeler avant toute opération reposant sur l'état du dessin connu
+	 * des observateurs (fin de création ou de déplacement par exemple).
+	 */
+	public void flush()
+	{
+		timer.stop();
+		Figure figure = pending;
+		pending = null;
+		if (figure != null)
+		{
+			lastUpdate = System.nanoTime();
+			drawing.update(figure);
+		}
+	}
+
+	/**
+	 * Fréquence de rafraichissement de l'écran principal
+	 * @return la fréquence de rafraichissement (en Hz) de l'écran ou bien
+	 * {@link #DEFAULT_REFRESH_RATE} si elle n'est pas connue
+	 */
+	private static int refreshRate()
+	{
+		if (GraphicsEnvironment.isHeadless())
+			return DEFAULT_REFRESH_RATE;
+
+		DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment()
+			.getDefaultScreenDevice().getDisplayMode();
+		int rate = mode.getRefreshRate();
+		return (rate != DisplayMode.REFRESH_RATE_UNKNOWN ? rate :
+			DEFAULT_REFRESH_RATE);
+	}
+}
@@ -73,7 +73,8 @@ public enum FigureType
 			case ROUNDED_RECTANGLE:
 				return new RoundedRectangle(stroke, edge, fill, p, p, 0);
 			case POLYGON:
-				return new Polygon(stroke, edge, fill, (Point) p, (Point) p); 
+				return new Polygon(stroke, edge, fill, Polygon.vertexOf(p),
+				                   Polygon.vertexOf(p));
 			case REGULAR_POLYGON:
 				return new RegularPolygon(stroke, edge, fill, new Point((int)p.getX(), (int)p.getY())); 
 			case STAR:
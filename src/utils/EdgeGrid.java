@@ -0,0 +1,475 @@
+package utils;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * Structure d'accélération des tests d'inclusion d'un point dans un polygone
+ * comportant de nombreux sommets. Le rectangle englobant du polygone est
+ * découpé en une grille de cellules : chaque cellule connaît les côtés du
+ * polygone qui la traversent ainsi que le nombre d'enroulement (winding
+ * number) d'un point de référence situé en son centre. Le test d'inclusion
+ * d'un point se ramène alors à compter les côtés de sa cellule croisés par
+ * le segment allant du point de référence au point testé, ce qui est en
+ * temps quasi constant au lieu d'être linéaire en nombre de sommets.
+ * La grille est construite une fois pour toutes : elle doit être
+ * reconstruite si le polygone est modifié.
+ *
+ * @author davidroussel
+ */
+public class EdgeGrid
+{
+	/**
+	 * Nombre maximum de cellules par ligne ou par colonne
+	 */
+	private static final int MAX_CELLS = 512;
+
+	/**
+	 * Position relative du point de référence dans chaque cellule (décalée
+	 * du centre exact par des valeurs "irrationnelles" pour éviter que ce
+	 * point ne tombe sur un côté joignant des sommets à coordonnées entières)
+	 */
+	private static final double REF_X = 0.5 + ((Math.sqrt(2.0) - 1.0) / 29.0);
+	private static final double REF_Y = 0.5 - ((Math.sqrt(3.0) - 1.0) / 23.0);
+
+	/**
+	 * Coordonnées des extrémités des côtés du polygone
+	 */
+	private final double[] x1, y1, x2, y2;
+
+	/**
+	 * Origine et taille des cellules de la grille
+	 */
+	private final double minX, minY, maxX, maxY, cellWidth, cellHeight;
+
+	/**
+	 * Nombre de colonnes et de lignes de la grille
+	 */
+	private final int cols, rows;
+
+	/**
+	 * Indices des côtés traversant chaque cellule
+	 */
+	private final int[][] cellEdges;
+
+	/**
+	 * Nombre d'enroulement du point de référence de chaque cellule
+	 */
+	private final int[] referenceWinding;
+
+	/**
+	 * Règle de remplissage : pair-impair (true) ou non nul (false)
+	 */
+	private final boolean evenOdd;
+
+	/**
+	 * Construction d'une grille pour une forme polygonale (uniquement
+	 * composée de segments de droites) comportant au moins minEdges côtés.
+	 * @param shape la forme à accélérer
+	 * @param minEdges le nombre minimum de côtés en deçà duquel la grille
+	 * n'apporte rien
+	 * @return la grille construite ou bien null si la forme n'est pas
+	 * polygonale, est dégénérée ou comporte trop peu de côtés
+	 */
+	public static EdgeGrid create(Shape shape, int minEdges)
+	{
+		if (shape == null)
+			return null;
+
+		PathIterator pi = shape.getPathIterator(null);
+		boolean evenOdd = (pi.getWindingRule() == PathIterator.WIND_EVEN_ODD);
+		double[] coords = new double[6];
+		double[] edges = new double[64];
+		int n = 0;
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		boolean open = false;
+
+		while (!pi.isDone())
+		{
+			int type = pi.currentSegment(coords);
+			switch (type)
+			{
+				case PathIterator.SEG_MOVETO:
+				case PathIterator.SEG_CLOSE:
+					// Fermeture (explicite ou implicite) du sous chemin courant
+					if (open && ((lastX != startX) || (lastY != startY)))
+					{
+						edges = addEdge(edges, n++, lastX, lastY, startX, startY);
+					}
+					open = false;
+					if (type == PathIterator.SEG_MOVETO)
+					{
+						startX = lastX = coords[0];
+						startY = lastY = coords[1];
+						open = true;
+					}
+					else
+					{
+						lastX = startX;
+						lastY = startY;
+					}
+					break;
+				case PathIterator.SEG_LINETO:
+					if ((coords[0] != lastX) || (coords[1] != lastY))
+					{
+						edges = addEdge(edges, n++, lastX, lastY, coords[0],
+						                coords[1]);
+					}
+					lastX = coords[0];
+					lastY = coords[1];
+					open = true;
+					break;
+				default:
+					return null; // courbes : la forme n'est pas polygonale
+			}
+			pi.next();
+		}
+		if (open && ((lastX != startX) || (lastY != startY)))
+		{
+			edges = addEdge(edges, n++, lastX, lastY, startX, startY);
+		}
+
+		if (n < minEdges)
+			return null;
+
+		EdgeGrid grid = new EdgeGrid(edges, n, evenOdd);
+		if ((grid.cellWidth <= 0) || (grid.cellHeight <= 0))
+			return null;
+
+		return grid;
+	}
+
+	/**
+	 * Ajout d'un côté dans le tableau des côtés (agrandi si nécessaire)
+	 */
+	private static double[] addEdge(double[] edges, int i, double xa,
+	                                double ya, double xb, double yb)
+	{
+		if ((4 * i) + 4 > edges.length)
+		{
+			edges = Arrays.copyOf(edges, edges.length * 2);
+		}
+		edges[4 * i] = xa;
+		edges[(4 * i) + 1] = ya;
+		edges[(4 * i) + 2] = xb;
+		edges[(4 * i) + 3] = yb;
+		return edges;
+	}
+
+	/**
+	 * Constructeur privé d'une grille à partir d'un tableau de côtés
+	 * @param edges les coordonnées (xa, ya, xb, yb) des côtés
+	 * @param n le nombre de côtés
+	 * @param evenOdd la règle de remplissage
+	 */
+	private EdgeGrid(double[] edges, int n, boolean evenOdd)
+	{
+		this.evenOdd = evenOdd;
+		x1 = new double[n];
+		y1 = new double[n];
+		x2 = new double[n];
+		y2 = new double[n];
+
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double xm = Double.NEGATIVE_INFINITY, ym = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			x1[i] = edges[4 * i];
+			y1[i] = edges[(4 * i) + 1];
+			x2[i] = edges[(4 * i) + 2];
+			y2[i] = edges[(4 * i) + 3];
+			x0 = Math.min(x0, Math.min(x1[i], x2[i]));
+			y0 = Math.min(y0, Math.min(y1[i], y2[i]));
+			xm = Math.max(xm, Math.max(x1[i], x2[i]));
+			ym = Math.max(ym, Math.max(y1[i], y2[i]));
+		}
+		minX = x0;
+		minY = y0;
+		maxX = xm;
+		maxY = ym;
+
+		// Environ une cellule par côté, en respectant les proportions
+		double w = maxX - minX;
+		double h = maxY - minY;
+		if ((w <= 0) || (h <= 0))
+		{
+			cols = rows = 1;
+			cellWidth = w;
+			cellHeight = h;
+			cellEdges = null;
+			referenceWinding = null;
+			return;
+		}
+		int c = (int) Math.ceil(Math.sqrt(n * (w / h)));
+		cols = Math.max(1, Math.min(MAX_CELLS, c));
+		rows = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil((double) n / cols)));
+		cellWidth = w / cols;
+		cellHeight = h / rows;
+
+		cellEdges = registerEdges(n);
+		referenceWinding = computeReferenceWindings(n);
+	}
+
+	/**
+	 * Enregistrement de chaque côté dans les cellules qu'il traverse
+	 * @param n le nombre de côtés
+	 * @return les indices des côtés traversant chaque cellule
+	 */
+	private int[][] registerEdges(int n)
+	{
+		int[] counts = new int[cols * rows];
+		int[][] cells = new int[cols * rows][];
+
+		// Deux passes : comptage puis remplissage
+		for (int pass = 0; pass < 2; pass++)
+		{
+			if (pass == 1)
+			{
+				for (int k = 0; k < cells.length; k++)
+				{
+					cells[k] = new int[counts[k]];
+					counts[k] = 0;
+				}
+			}
+
+			for (int i = 0; i < n; i++)
+			{
+				int r0 = row(Math.min(y1[i], y2[i]));
+				int r1 = row(Math.max(y1[i], y2[i]));
+				for (int r = r0; r <= r1; r++)
+				{
+					// Portion du côté comprise dans la bande de la ligne r
+					double bandY0 = minY + (r * cellHeight);
+					double bandY1 = bandY0 + cellHeight;
+					double xa, xb;
+					if (y1[i] == y2[i])
+					{
+						xa = x1[i];
+						xb = x2[i];
+					}
+					else
+					{
+						double ta = (bandY0 - y1[i]) / (y2[i] - y1[i]);
+						double tb = (bandY1 - y1[i]) / (y2[i] - y1[i]);
+						ta = Math.max(0.0, Math.min(1.0, ta));
+						tb = Math.max(0.0, Math.min(1.0, tb));
+						xa = x1[i] + (ta * (x2[i] - x1[i]));
+						xb = x1[i] + (tb * (x2[i] - x1[i]));
+					}
+					// Marge d'une cellule pour les erreurs d'arrondi
+					int c0 = Math.max(0, col(Math.min(xa, xb)) - 1);
+					int c1 = Math.min(cols - 1, col(Math.max(xa, xb)) + 1);
+					for (int c = c0; c <= c1; c++)
+					{
+						int k = (r * cols) + c;
+						if (pass == 1)
+						{
+							cells[k][counts[k]] = i;
+						}
+						counts[k]++;
+					}
+				}
+			}
+		}
+
+		return cells;
+	}
+
+	/**
+	 * Calcul du nombre d'enroulement du point de référence de chaque
+	 * cellule en balayant chaque ligne de la grille par une demi droite
+	 * horizontale
+	 * @param n le nombre de côtés
+	 * @return le nombre d'enroulement du point de référence de chaque
+	 * cellule
+	 */
+	private int[] computeReferenceWindings(int n)
+	{
+		int[] windings = new int[cols * rows];
+		double[] crossX = new double[n];
+		int[] crossDir = new int[n];
+		Integer[] order = new Integer[n];
+
+		for (int r = 0; r < rows; r++)
+		{
+			double ry = refY(r);
+			int m = 0;
+			for (int i = 0; i < n; i++)
+			{
+				if ((y1[i] <= ry) != (y2[i] <= ry))
+				{
+					double t = (ry - y1[i]) / (y2[i] - y1[i]);
+					crossX[m] = x1[i] + (t * (x2[i] - x1[i]));
+					crossDir[m] = (y2[i] > y1[i] ? 1 : -1);
+					order[m] = m;
+					m++;
+				}
+			}
+			Arrays.sort(order, 0, m, (a, b) -> Double.compare(crossX[a], crossX[b]));
+
+			// Balayage de droite à gauche : le nombre d'enroulement d'un
+			// point est la somme des directions des côtés croisés à sa
+			// droite
+			int k = m - 1;
+			int winding = 0;
+			for (int c = cols - 1; c >= 0; c--)
+			{
+				double rx = refX(c);
+				while ((k >= 0) && (crossX[order[k]] > rx))
+				{
+					winding += crossDir[order[k]];
+					k--;
+				}
+				windings[(r * cols) + c] = winding;
+			}
+		}
+
+		return windings;
+	}
+
+	/**
+	 * Test d'inclusion d'un point dans le polygone
+	 * @param p le point à tester
+	 * @return true si le point est à l'intérieur du polygone selon sa règle
+	 * de remplissage
+	 */
+	public boolean contains(Point2D p)
+	{
+		return contains(p.getX(), p.getY());
+	}
+
+	/**
+	 * Test d'inclusion d'un point dans le polygone
+	 * @param px l'abcisse du point à tester
+	 * @param py l'ordonnée du point à tester
+	 * @return true si le point est à l'intérieur du polygone selon sa règle
+	 * de remplissage
+	 */
+	public boolean contains(double px, double py)
+	{
+		if ((px < minX) || (px > maxX) || (py < minY) || (py > maxY))
+			return false;
+
+		int c = col(px);
+		int r = row(py);
+		int k = (r * cols) + c;
+		double rx = refX(c);
+		double ry = refY(r);
+		double sx = px - rx;
+		double sy = py - ry;
+		int winding = referenceWinding[k];
+
+		for (int i : cellEdges[k])
+		{
+			double dx = x2[i] - x1[i];
+			double dy = y2[i] - y1[i];
+			// Côtés du point de référence et du point testé par rapport au
+			// côté i (à gauche si produit vectoriel > 0)
+			boolean refLeft = ((dx * (ry - y1[i])) - (dy * (rx - x1[i]))) > 0;
+			boolean pLeft = ((dx * (py - y1[i])) - (dy * (px - x1[i]))) > 0;
+			if (refLeft == pLeft)
+				continue;
+
+			// Côtés des extrémités du côté i par rapport au segment
+			boolean aLeft = ((sx * (y1[i] - ry)) - (sy * (x1[i] - rx))) > 0;
+			boolean bLeft = ((sx * (y2[i] - ry)) - (sy * (x2[i] - rx))) > 0;
+			if (aLeft == bLeft)
+				continue;
+
+			// Passer de la droite vers la gauche d'un côté augmente le nombre
+			// d'enroulement
+			winding += (pLeft ? 1 : -1);
+		}
+
+		return evenOdd ? ((winding & 1) != 0) : (winding != 0);
+	}
+
+	/**
+	 * Recherche du sommet du polygone le plus proche d'un point. Seules les
+	 * cellules situées à moins de radius du point sont examinées.
+	 * @param px l'abcisse du point de référence
+	 * @param py l'ordonnée du point de référence
+	 * @param radius la distance maximum entre le point et le sommet
+	 * @return le sommet le plus proche ou bien null si aucun sommet ne se
+	 * trouve à moins de radius du point
+	 */
+	public Point2D nearestVertex(double px, double py, double radius)
+	{
+		if ((px < minX - radius) || (px > maxX + radius) ||
+		    (py < minY - radius) || (py > maxY + radius))
+			return null;
+
+		// Le premier sommet de chaque côté est enregistré dans la cellule
+		// qui le contient
+		int c0 = col(px - radius);
+		int c1 = col(px + radius);
+		int r0 = row(py - radius);
+		int r1 = row(py + radius);
+		double bestSq = radius * radius;
+		int best = -1;
+		for (int r = r0; r <= r1; r++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				for (int i : cellEdges[(r * cols) + c])
+				{
+					double dx = x1[i] - px;
+					double dy = y1[i] - py;
+					double d = (dx * dx) + (dy * dy);
+					if (d <= bestSq)
+					{
+						bestSq = d;
+						best = i;
+					}
+				}
+			}
+		}
+
+		return (best >= 0 ? new Point2D.Double(x1[best], y1[best]) : null);
+	}
+
+	/**
+	 * Nombre de côtés du polygone
+	 * @return le nombre de côtés du polygone
+	 */
+	public int getEdgeCount()
+	{
+		return x1.length;
+	}
+
+	/**
+	 * Colonne de la grille contenant l'abcisse x (bornée à la grille)
+	 */
+	private int col(double x)
+	{
+		int c = (int) Math.floor((x - minX) / cellWidth);
+		return Math.max(0, Math.min(cols - 1, c));
+	}
+
+	/**
+	 * Ligne de la grille contenant l'ordonnée y (bornée à la grille)
+	 */
+	private int row(double y)
+	{
+		int r = (int) Math.floor((y - minY) / cellHeight);
+		return Math.max(0, Math.min(rows - 1, r));
+	}
+
+	/**
+	 * Abcisse du point de référence des cellules de la colonne c
+	 */
+	private double refX(int c)
+	{
+		return minX + ((c + REF_X) * cellWidth);
+	}
+
+	/**
+	 * Ordonnée du point de référence des cellules de la ligne r
+	 */
+	private double refY(int r)
+	{
+		return minY + ((r + REF_Y) * cellHeight);
+	}
+}
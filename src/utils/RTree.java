@@ -0,0 +1,744 @@
+package utils;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Index spatial de type R-tree (découpage quadratique de Guttman) associant
+ * à chaque élément son rectangle englobant. Permet de retrouver en
+ * O(log n) les éléments dont le rectangle englobant contient un point ou
+ * intersecte une région au lieu de parcourir tous les éléments.
+ * Chaque élément reçoit un numéro de séquence lors de sa première insertion
+ * (conservé lors des mises à jour) : les résultats des recherches sont
+ * fournis dans cet ordre d'insertion, ce qui permet de respecter l'ordre
+ * d'empilement (z-order) des figures d'un dessin.
+ *
+ * @author davidroussel
+ * @param <T> le type des éléments indexés
+ */
+public class RTree<T>
+{
+	/**
+	 * Nombre maximum d'éléments dans un noeud avant découpage
+	 */
+	private static final int MAX_ENTRIES = 16;
+
+	/**
+	 * Nombre minimum d'éléments dans un noeud (hors racine)
+	 */
+	private static final int MIN_ENTRIES = 6;
+
+	/**
+	 * Boîte englobante commune aux noeuds et aux entrées de l'arbre
+	 */
+	private static abstract class Box
+	{
+		double minX, minY, maxX, maxY;
+
+		/**
+		 * Le noeud parent de cette boîte (null pour la racine)
+		 */
+		Node parent;
+
+		double area()
+		{
+			return (maxX - minX) * (maxY - minY);
+		}
+
+		double enlargement(Box b)
+		{
+			return ((Math.max(maxX, b.maxX) - Math.min(minX, b.minX)) *
+			        (Math.max(maxY, b.maxY) - Math.min(minY, b.minY))) - area();
+		}
+
+		boolean intersects(double x0, double y0, double x1, double y1)
+		{
+			return (minX <= x1) && (maxX >= x0) && (minY <= y1) && (maxY >= y0);
+		}
+
+		double distanceSq(double x, double y)
+		{
+			double dx = Math.max(Math.max(minX - x, x - maxX), 0.0);
+			double dy = Math.max(Math.max(minY - y, y - maxY), 0.0);
+			return (dx * dx) + (dy * dy);
+		}
+	}
+
+	/**
+	 * Noeud de l'arbre contenant soit des noeuds fils soit des entrées
+	 * (lorsqu'il s'agit d'une feuille)
+	 */
+	private static class Node extends Box
+	{
+		final boolean leaf;
+		final ArrayList<Box> children;
+
+		Node(boolean leaf)
+		{
+			this.leaf = leaf;
+			children = new ArrayList<Box>(MAX_ENTRIES + 1);
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+		}
+
+		void add(Box b)
+		{
+			children.add(b);
+			b.parent = this;
+			include(b);
+		}
+
+		void include(Box b)
+		{
+			minX = Math.min(minX, b.minX);
+			minY = Math.min(minY, b.minY);
+			maxX = Math.max(maxX, b.maxX);
+			maxY = Math.max(maxY, b.maxY);
+		}
+
+		void recomputeBounds()
+		{
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+			for (Box b : children)
+			{
+				include(b);
+			}
+		}
+	}
+
+	/**
+	 * Entrée de l'arbre : un élément, son rectangle et son numéro de séquence
+	 */
+	private static class Entry<T> extends Box
+	{
+		final T item;
+		final long sequence;
+
+		Entry(T item, long sequence, Rectangle2D bounds)
+		{
+			this.item = item;
+			this.sequence = sequence;
+			setBounds(bounds);
+		}
+
+		void setBounds(Rectangle2D bounds)
+		{
+			// Normalisation des rectangles de largeur ou hauteur négative
+			minX = Math.min(bounds.getMinX(), bounds.getMaxX());
+			minY = Math.min(bounds.getMinY(), bounds.getMaxY());
+			maxX = Math.max(bounds.getMinX(), bounds.getMaxX());
+			maxY = Math.max(bounds.getMinY(), bounds.getMaxY());
+		}
+	}
+
+	/**
+	 * Comparateur des entrées selon leur ordre d'insertion
+	 */
+	private static final Comparator<Entry<?>> sequenceOrder =
+		(e1, e2) -> Long.compare(e1.sequence, e2.sequence);
+
+	/**
+	 * La racine de l'arbre
+	 */
+	private Node root;
+
+	/**
+	 * Table d'association entre les éléments et leurs entrées dans l'arbre
+	 * afin de pouvoir retirer ou déplacer un élément sans le rechercher
+	 */
+	private HashMap<T, Entry<T>> entries;
+
+	/**
+	 * Le prochain numéro de séquence à attribuer
+	 */
+	private long nextSequence;
+
+	/**
+	 * Constructeur d'un index vide
+	 */
+	public RTree()
+	{
+		entries = new HashMap<T, Entry<T>>();
+		clear();
+	}
+
+	/**
+	 * Nombre d'éléments indexés
+	 * @return le nombre d'éléments indexés
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Teste si un élément est indexé
+	 * @param item l'élément recherché
+	 * @return true si l'élément fait partie de l'index
+	 */
+	public boolean contains(T item)
+	{
+		return entries.containsKey(item);
+	}
+
+	/**
+	 * Obtention du rectangle sous lequel un élément est indexé
+	 * @param item l'élément recherché
+	 * @return le rectangle de l'élément dans l'index ou bien null si
+	 * l'élément n'est pas indexé
+	 */
+	public Rectangle2D getBounds(T item)
+	{
+		Entry<T> entry = entries.get(item);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		return new Rectangle2D.Double(entry.minX, entry.minY,
+		                              entry.maxX - entry.minX,
+		                              entry.maxY - entry.minY);
+	}
+
+	/**
+	 * Comparaison de l'ordre d'insertion de deux éléments indexés
+	 * @param a le premier élément
+	 * @param b le second élément
+	 * @return un entier négatif, nul ou positif selon que a a été inséré
+	 * avant, en même temps (a == b) ou après b
+	 * @throws IllegalArgumentException si l'un des éléments n'est pas indexé
+	 */
+	public int compareOrder(T a, T b)
+	{
+		Entry<T> ea = entries.get(a);
+		Entry<T> eb = entries.get(b);
+		if ((ea == null) || (eb == null))
+		{
+			throw new IllegalArgumentException("item not indexed");
+		}
+
+		return Long.compare(ea.sequence, eb.sequence);
+	}
+
+	/**
+	 * Obtention du rectangle englobant l'ensemble des éléments indexés
+	 * @return le rectangle englobant tous les éléments ou bien null si
+	 * l'index est vide
+	 */
+	public Rectangle2D getBounds()
+	{
+		if (entries.isEmpty())
+		{
+			return null;
+		}
+
+		return new Rectangle2D.Double(root.minX, root.minY,
+		                              root.maxX - root.minX,
+		                              root.maxY - root.minY);
+	}
+
+	/**
+	 * Ajout d'un élément à l'index (ou mise à jour de son rectangle s'il
+	 * était déjà présent)
+	 * @param item l'élément à ajouter
+	 * @param bounds le rectangle englobant de l'élément
+	 */
+	public void insert(T item, Rectangle2D bounds)
+	{
+		if ((item == null) || (bounds == null))
+		{
+			return;
+		}
+
+		if (entries.containsKey(item))
+		{
+			update(item, bounds);
+			return;
+		}
+
+		Entry<T> entry = new Entry<T>(item, nextSequence++, bounds);
+		entries.put(item, entry);
+		insert(entry);
+	}
+
+	/**
+	 * Mise à jour du rectangle d'un élément déjà indexé. L'élément conserve
+	 * son rang dans l'ordre d'insertion.
+	 * @param item l'élément à mettre à jour
+	 * @param bounds le nouveau rectangle englobant de l'élément
+	 * @return true si l'élément était indexé et a été mis à jour
+	 */
+	public boolean update(T item, Rectangle2D bounds)
+	{
+		Entry<T> entry = entries.get(item);
+		if ((entry == null) || (bounds == null))
+		{
+			return false;
+		}
+
+		Entry<T> moved = new Entry<T>(item, entry.sequence, bounds);
+		if ((moved.minX == entry.minX) && (moved.minY == entry.minY) &&
+		    (moved.maxX == entry.maxX) && (moved.maxY == entry.maxY))
+		{
+			return true; // rien n'a bougé
+		}
+
+		removeEntry(entry);
+		entries.put(item, moved);
+		insert(moved);
+		return true;
+	}
+
+	/**
+	 * Retrait d'un élément de l'index
+	 * @param item l'élément à retirer
+	 * @return true si l'élément était indexé et a été retiré
+	 */
+	public boolean remove(T item)
+	{
+		Entry<T> entry = entries.remove(item);
+		if (entry == null)
+		{
+			return false;
+		}
+
+		removeEntry(entry);
+		return true;
+	}
+
+	/**
+	 * Effacement de tous les éléments de l'index
+	 */
+	public void clear()
+	{
+		entries.clear();
+		root = new Node(true);
+		nextSequence = 0;
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle intersecte une région
+	 * @param region la région de recherche
+	 * @return la liste des éléments trouvés dans leur ordre d'insertion
+	 */
+	public List<T> search(Rectangle2D region)
+	{
+		return search(region.getMinX(), region.getMinY(),
+		              region.getMaxX(), region.getMaxY());
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle contient un point
+	 * @param p le point recherché
+	 * @return la liste des éléments trouvés dans leur ordre d'insertion
+	 */
+	public List<T> search(Point2D p)
+	{
+		return search(p.getX(), p.getY(), p.getX(), p.getY());
+	}
+
+	/**
+	 * Recherche des k éléments dont le rectangle est le plus proche d'un
+	 * point (recherche "best first" : les noeuds sont explorés par distance
+	 * croissante et l'exploration s'arrête dès que les k plus proches
+	 * éléments ont été trouvés, sans parcourir le reste de l'arbre)
+	 * @param p le point de référence
+	 * @param k le nombre maximum d'éléments recherchés
+	 * @param maxDistance la distance maximum entre p et le rectangle d'un
+	 * élément (éventuellement infinie)
+	 * @return la liste des éléments trouvés par distance croissante (la
+	 * distance étant nulle pour les éléments dont le rectangle contient p)
+	 */
+	public List<T> nearest(Point2D p, int k, double maxDistance)
+	{
+		ArrayList<T> items = new ArrayList<T>(Math.max(0, Math.min(k, 64)));
+		if (k <= 0)
+		{
+			return items;
+		}
+
+		visitNearest(p, maxDistance, item -> {
+			items.add(item);
+			return (items.size() < k ? maxDistance : -1.0);
+		});
+
+		return items;
+	}
+
+	/**
+	 * Parcours des éléments par distance croissante entre leur rectangle et
+	 * un point (même ordre que {@link #nearest(Point2D, int, double)}). Le
+	 * visiteur reçoit chaque élément et renvoie la distance maximum des
+	 * éléments restant à visiter : celle-ci peut diminuer au fil du
+	 * parcours (par exemple lorsque le visiteur a trouvé un résultat plus
+	 * proche que les rectangles suivants), une distance négative arrêtant
+	 * le parcours.
+	 * @param p le point de référence
+	 * @param maxDistance la distance maximum initiale entre p et le
+	 * rectangle d'un élément (éventuellement infinie)
+	 * @param visitor le visiteur des éléments renvoyant la nouvelle
+	 * distance maximum
+	 */
+	public void visitNearest(Point2D p, double maxDistance,
+	                         ToDoubleFunction<T> visitor)
+	{
+		if (entries.isEmpty() || (maxDistance < 0))
+		{
+			return;
+		}
+
+		final double x = p.getX();
+		final double y = p.getY();
+		double maxSq = maxDistance * maxDistance;
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+		queue.add(new Candidate(root, root.distanceSq(x, y)));
+
+		while (!queue.isEmpty())
+		{
+			Candidate c = queue.poll();
+			if (c.distanceSq > maxSq)
+			{
+				break;
+			}
+			if (c.box instanceof Node)
+			{
+				for (Box b : ((Node) c.box).children)
+				{
+					double d = b.distanceSq(x, y);
+					if (d <= maxSq)
+					{
+						queue.add(new Candidate(b, d));
+					}
+				}
+			}
+			else
+			{
+				@SuppressWarnings("unchecked")
+				Entry<T> entry = (Entry<T>) c.box;
+				double bound = visitor.applyAsDouble(entry.item);
+				if (bound < 0)
+				{
+					break;
+				}
+				maxSq = Math.min(maxSq, bound * bound);
+			}
+		}
+	}
+
+	/**
+	 * Noeud ou entrée en attente d'exploration lors d'une recherche des plus
+	 * proches voisins, ordonné(e) par distance croissante au point recherché
+	 * puis par ordre d'insertion décroissant (les éléments les plus hauts
+	 * dans l'ordre d'empilement d'abord)
+	 */
+	private static class Candidate implements Comparable<Candidate>
+	{
+		final Box box;
+		final double distanceSq;
+
+		Candidate(Box box, double distanceSq)
+		{
+			this.box = box;
+			this.distanceSq = distanceSq;
+		}
+
+		@Override
+		public int compareTo(Candidate other)
+		{
+			int result = Double.compare(distanceSq, other.distanceSq);
+			if ((result == 0) && (box instanceof Entry) &&
+			    (other.box instanceof Entry))
+			{
+				result = Long.compare(((Entry<?>) other.box).sequence,
+				                      ((Entry<?>) box).sequence);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle intersecte la région
+	 * [x0, x1] x [y0, y1]
+	 * @return la liste des éléments trouvés dans leur ordre d'insertion
+	 */
+	private List<T> search(double x0, double y0, double x1, double y1)
+	{
+		ArrayList<Entry<T>> found = new ArrayList<Entry<T>>();
+		if (!entries.isEmpty())
+		{
+			search(root, x0, y0, x1, y1, found);
+		}
+
+		Collections.sort(found, sequenceOrder);
+
+		ArrayList<T> items = new ArrayList<T>(found.size());
+		for (Entry<T> entry : found)
+		{
+			items.add(entry.item);
+		}
+
+		return items;
+	}
+
+	/**
+	 * Recherche récursive des entrées intersectant une région
+	 */
+	@SuppressWarnings("unchecked")
+	private void search(Node node, double x0, double y0, double x1,
+	                    double y1, List<Entry<T>> found)
+	{
+		for (Box b : node.children)
+		{
+			if (b.intersects(x0, y0, x1, y1))
+			{
+				if (node.leaf)
+				{
+					found.add((Entry<T>) b);
+				}
+				else
+				{
+					search((Node) b, x0, y0, x1, y1, found);
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Insertion et découpage des noeuds
+	// ------------------------------------------------------------------------
+	/**
+	 * Insertion d'une entrée dans la feuille la plus adaptée puis découpage
+	 * éventuel des noeuds trop pleins
+	 * @param entry l'entrée à insérer
+	 */
+	private void insert(Entry<T> entry)
+	{
+		Node leaf = chooseLeaf(entry);
+		leaf.add(entry);
+		Node node = leaf;
+
+		while (node != null)
+		{
+			if (node.children.size() > MAX_ENTRIES)
+			{
+				split(node);
+			}
+			else
+			{
+				node.include(entry);
+			}
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Choix de la feuille nécessitant le plus petit agrandissement pour
+	 * accueillir une entrée
+	 */
+	private Node chooseLeaf(Box box)
+	{
+		Node node = root;
+
+		while (!node.leaf)
+		{
+			Box best = null;
+			double bestEnlargement = Double.POSITIVE_INFINITY;
+			double bestArea = Double.POSITIVE_INFINITY;
+			for (Box child : node.children)
+			{
+				double enlargement = child.enlargement(box);
+				double area = child.area();
+				if ((enlargement < bestEnlargement) ||
+				    ((enlargement == bestEnlargement) && (area < bestArea)))
+				{
+					best = child;
+					bestEnlargement = enlargement;
+					bestArea = area;
+				}
+			}
+			node = (Node) best;
+		}
+
+		return node;
+	}
+
+	/**
+	 * Découpage quadratique d'un noeud trop plein en deux noeuds
+	 * @param node le noeud à découper
+	 */
+	private void split(Node node)
+	{
+		ArrayList<Box> remaining = new ArrayList<Box>(node.children);
+
+		// Choix des deux germes les plus "éloignés"
+		int seed1 = 0;
+		int seed2 = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < remaining.size(); i++)
+		{
+			for (int j = i + 1; j < remaining.size(); j++)
+			{
+				Box a = remaining.get(i);
+				Box b = remaining.get(j);
+				double waste = (a.enlargement(b) + a.area()) - b.area();
+				if (waste > worst)
+				{
+					worst = waste;
+					seed1 = i;
+					seed2 = j;
+				}
+			}
+		}
+
+		Node group1 = new Node(node.leaf);
+		Node group2 = new Node(node.leaf);
+		group1.add(remaining.get(seed1));
+		group2.add(remaining.get(seed2));
+		remaining.remove(seed2); // seed2 > seed1
+		remaining.remove(seed1);
+
+		while (!remaining.isEmpty())
+		{
+			if (group1.children.size() + remaining.size() <= MIN_ENTRIES)
+			{
+				for (Box b : remaining)
+				{
+					group1.add(b);
+				}
+				break;
+			}
+			if (group2.children.size() + remaining.size() <= MIN_ENTRIES)
+			{
+				for (Box b : remaining)
+				{
+					group2.add(b);
+				}
+				break;
+			}
+
+			// Entrée ayant la plus forte préférence pour l'un des groupes
+			int next = 0;
+			double maxDiff = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < remaining.size(); i++)
+			{
+				Box b = remaining.get(i);
+				double diff = Math.abs(group1.enlargement(b) -
+				                       group2.enlargement(b));
+				if (diff > maxDiff)
+				{
+					maxDiff = diff;
+					next = i;
+				}
+			}
+
+			Box b = remaining.remove(next);
+			double e1 = group1.enlargement(b);
+			double e2 = group2.enlargement(b);
+			if ((e1 < e2) || ((e1 == e2) &&
+			    (group1.children.size() <= group2.children.size())))
+			{
+				group1.add(b);
+			}
+			else
+			{
+				group2.add(b);
+			}
+		}
+
+		// Le noeud découpé reprend le contenu du premier groupe
+		node.children.clear();
+		for (Box b : group1.children)
+		{
+			node.add(b);
+		}
+		node.recomputeBounds();
+
+		if (node.parent == null)
+		{
+			Node newRoot = new Node(false);
+			newRoot.add(node);
+			newRoot.add(group2);
+			root = newRoot;
+		}
+		else
+		{
+			node.parent.add(group2);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Retrait des entrées
+	// ------------------------------------------------------------------------
+	/**
+	 * Retrait d'une entrée de sa feuille puis condensation de l'arbre : les
+	 * noeuds devenus trop peu remplis sont supprimés et leurs entrées
+	 * réinsérées.
+	 * @param entry l'entrée à retirer
+	 */
+	private void removeEntry(Entry<T> entry)
+	{
+		Node node = entry.parent;
+		node.children.remove(entry);
+		entry.parent = null;
+
+		ArrayList<Entry<T>> orphans = new ArrayList<Entry<T>>();
+		while (node != root)
+		{
+			Node parent = node.parent;
+			if (node.children.size() < MIN_ENTRIES)
+			{
+				parent.children.remove(node);
+				node.parent = null;
+				collectEntries(node, orphans);
+			}
+			else
+			{
+				node.recomputeBounds();
+			}
+			node = parent;
+		}
+		root.recomputeBounds();
+
+		while (!root.leaf && (root.children.size() == 1))
+		{
+			root = (Node) root.children.get(0);
+			root.parent = null;
+		}
+		if (!root.leaf && root.children.isEmpty())
+		{
+			root = new Node(true);
+		}
+
+		for (Entry<T> orphan : orphans)
+		{
+			insert(orphan);
+		}
+	}
+
+	/**
+	 * Collecte de toutes les entrées contenues dans un sous-arbre
+	 */
+	@SuppressWarnings("unchecked")
+	private void collectEntries(Node node, List<Entry<T>> collected)
+	{
+		for (Box b : node.children)
+		{
+			if (node.leaf)
+			{
+				collected.add((Entry<T>) b);
+			}
+			else
+			{
+				collectEntries((Node) b, collected);
+			}
+		}
+	}
+}
@@ -5,6 +5,9 @@
  * 	<li>une usine à icônes : {@link utils.IconFactory}</li>
  * 	<li>une usine à Paint : {@link utils.PaintFactory}</li>
  * 	<li>une usine à Stroke : {@link utils.StrokeFactory}</li>
+ * 	<li>un index spatial (R-tree) : {@link utils.RTree}</li>
+ * 	<li>une grille d'accélération des tests d'inclusion dans les polygones :
+ * 	{@link utils.EdgeGrid}</li>
  * </ul>
  */
 package utils;
\ No newline at end of file
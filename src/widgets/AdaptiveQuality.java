@@ -0,0 +1,289 @@
+package widgets;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Politique de qualité de rendu adaptative d'un composant. Pendant un geste
+ * (création ou déplacement d'une figure, sélection au lasso), la durée de
+ * chaque image est mesurée : lorsque la durée moyenne des images en haute
+ * qualité dépasse le budget par image, l'antialiasing est désactivé et le
+ * rendu privilégie la vitesse. La haute qualité est rétablie pendant le geste
+ * après un nombre minimum d'images en basse qualité, lorsque la durée
+ * estimée des images en haute qualité (durée moyenne des images en basse
+ * qualité multipliée par le surcoût de la haute qualité mesuré lors de
+ * l'abaissement) est nettement inférieure au budget. Une fois le geste terminé, les régions dessinées en basse qualité
+ * sont redessinées une seule fois en haute qualité après un court délai.
+ *
+ * @author davidroussel
+ */
+class AdaptiveQuality
+{
+	/**
+	 * Budget par défaut (en ms) d'une image pendant un geste
+	 */
+	public static final double DEFAULT_BUDGET = 16.0;
+
+	/**
+	 * Délai (en ms) après la fin d'un geste avant de redessiner en haute
+	 * qualité les régions dessinées en basse qualité
+	 */
+	public static final int SETTLE_DELAY = 150;
+
+	/**
+	 * Poids de la dernière mesure dans les moyennes glissantes des durées
+	 */
+	private static final double SMOOTHING = 0.25;
+
+	/**
+	 * Fraction du budget en dessous de laquelle la durée estimée des images
+	 * en haute qualité permet de revenir à la haute qualité (l'écart avec le
+	 * budget évite d'alterner entre les deux qualités)
+	 */
+	private static final double RESTORE_RATIO = 0.75;
+
+	/**
+	 * Nombre minimum d'images successives en basse qualité avant de pouvoir
+	 * revenir à la haute qualité
+	 */
+	private static final int MIN_LOWERED_FRAMES = 8;
+
+	/**
+	 * Le composant dont on adapte la qualité de rendu
+	 */
+	private final JComponent target;
+
+	/**
+	 * Indique si la politique est active (haute qualité permanente sinon)
+	 */
+	private boolean enabled;
+
+	/**
+	 * Budget (en ns) d'une image pendant un geste
+	 */
+	private long budget;
+
+	/**
+	 * Durée moyenne (en ns) des images dessinées en haute qualité
+	 */
+	private double highCost;
+
+	/**
+	 * Durée moyenne (en ns) des images dessinées en basse qualité
+	 */
+	private double lowCost;
+
+	/**
+	 * Surcoût de la haute qualité : rapport entre la durée moyenne des
+	 * images en haute qualité lors de l'abaissement de la qualité et celle de
+	 * la première image en basse qualité qui l'a suivi (0 s'il n'a pas
+	 * encore été mesuré)
+	 */
+	private double overhead;
+
+	/**
+	 * Nombre d'images successives dessinées en basse qualité depuis
+	 * l'abaissement de la qualité
+	 */
+	private int loweredFrames;
+
+	/**
+	 * Indique que la qualité est actuellement abaissée
+	 */
+	private boolean lowered;
+
+	/**
+	 * Indique si la dernière image a été dessinée en basse qualité
+	 */
+	private boolean lastLowered;
+
+	/**
+	 * Union des régions dessinées en basse qualité depuis le dernier
+	 * redessin en haute qualité (ou null)
+	 */
+	private Rectangle degraded;
+
+	/**
+	 * Timer déclenchant le redessin en haute qualité après un geste
+	 */
+	private Timer settleTimer;
+
+	/**
+	 * Constructeur d'une politique de qualité adaptative (active)
+	 * @param target le composant dont on adapte la qualité
+	 */
+	public AdaptiveQuality(JComponent target)
+	{
+		this.target = target;
+		enabled = true;
+		budget = (long) (DEFAULT_BUDGET * 1e6);
+		highCost = 0.0;
+		lowCost = 0.0;
+		overhead = 0.0;
+		loweredFrames = 0;
+		lowered = false;
+		lastLowered = false;
+		degraded = null;
+		settleTimer = new Timer(SETTLE_DELAY, e -> settle());
+		settleTimer.setRepeats(false);
+	}
+
+	/**
+	 * Teste si la politique adaptative est active
+	 * @return true si la qualité peut être abaissée pendant les gestes
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * (Dés)activation de la politique adaptative. Sa désactivation
+	 * redessine en haute qualité les régions qui ne l'étaient pas.
+	 * @param enabled true pour abaisser la qualité pendant les gestes
+	 * lorsque nécessaire, false pour toujours dessiner en haute qualité
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+		{
+			lowered = false;
+			settle();
+		}
+	}
+
+	/**
+	 * Accesseur du budget par image
+	 * @return le budget (en ms) d'une image pendant un geste
+	 */
+	public double getBudget()
+	{
+		return budget / 1e6;
+	}
+
+	/**
+	 * Changement du budget par image
+	 * @param millis le budget (en ms) d'une image pendant un geste
+	 */
+	public void setBudget(double millis)
+	{
+		budget = (long) (Math.max(0.0, millis) * 1e6);
+	}
+
+	/**
+	 * Teste si la dernière image a été dessinée en basse qualité
+	 * @return true si la dernière image a été dessinée en basse qualité
+	 */
+	public boolean isLowered()
+	{
+		return lastLowered;
+	}
+
+	/**
+	 * Mise en place des indications de rendu pour l'image à dessiner
+	 * @param g2D le contexte graphique de l'image
+	 * @param interacting indique si un geste est en cours
+	 */
+	public void apply(Graphics2D g2D, boolean interacting)
+	{
+		lastLowered = enabled && interacting && lowered;
+		if (lastLowered)
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_OFF);
+			g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+			                     RenderingHints.VALUE_RENDER_SPEED);
+		}
+		else
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_ON);
+		}
+	}
+
+	/**
+	 * Prise en compte de la durée de l'image qui vient d'être dessinée avec
+	 * les indications mises en place par {@link #apply(Graphics2D, boolean)}
+	 * @param nanos la durée de l'image (en ns)
+	 * @param interacting indique si un geste est en cours
+	 * @param painted la région dessinée
+	 */
+	public void frameRendered(long nanos, boolean interacting,
+	                          Rectangle painted)
+	{
+		if (!enabled)
+			return;
+
+		if (lastLowered)
+		{
+			if ((overhead == 0.0) && (nanos > 0))
+				overhead = Math.max(1.0, highCost / nanos);
+			lowCost = average(lowCost, nanos);
+			loweredFrames++;
+			degraded = (degraded == null ? new Rectangle(painted) :
+				degraded.union(painted));
+		}
+		else
+		{
+			highCost = average(highCost, nanos);
+		}
+
+		if (interacting)
+		{
+			settleTimer.stop();
+			if (!lowered && (highCost > budget))
+			{
+				// Les mesures en basse qualité repartent de zéro
+				lowered = true;
+				lowCost = 0.0;
+				overhead = 0.0;
+				loweredFrames = 0;
+			}
+			else if (lowered && (loweredFrames >= MIN_LOWERED_FRAMES) &&
+			         ((lowCost * overhead) < (budget * RESTORE_RATIO)))
+			{
+				// La moyenne en haute qualité est périmée : elle repart
+				// des prochaines images
+				lowered = false;
+				highCost = 0.0;
+			}
+		}
+		else if (degraded != null)
+		{
+			// Fin du geste : redessin unique en haute qualité
+			settleTimer.restart();
+		}
+	}
+
+	/**
+	 * Redessin en haute qualité des régions dessinées en basse qualité
+	 */
+	private void settle()
+	{
+		settleTimer.stop();
+		if (degraded != null)
+		{
+			target.repaint(degraded);
+			degraded = null;
+		}
+	}
+
+	/**
+	 * Mise à jour d'une moyenne glissante
+	 * @param mean la moyenne courante (0 si aucune mesure)
+	 * @param value la nouvelle mesure
+	 * @return la nouvelle moyenne
+	 */
+	private static double average(double mean, long value)
+	{
+		if (mean == 0.0)
+			return value;
+
+		return mean + (SMOOTHING * (value - mean));
+	}
+}
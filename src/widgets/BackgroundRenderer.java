@@ -0,0 +1,592 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.swing.JComponent;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.FigureSnapshot;
+
+/**
+ * Rendu des figures d'un dessin dans un thread dédié. Le thread de
+ * l'interface (EDT) ne fait que relever des copies figées des figures
+ * touchant les régions modifiées (cf. {@link Figure#snapshot()}) et copier à
+ * l'écran la dernière image terminée. Le thread de rendu consomme ces
+ * demandes une à une et produit des images complètes de la partie visible
+ * du composant en ne redessinant que les régions modifiées depuis l'image
+ * précédente. Les images circulent entre trois tampons (image affichée,
+ * image prête et image en cours de rendu).
+ * Lorsque le rendu prend du retard, les images intermédiaires sont
+ * abandonnées : une demande qui n'a pas encore été prise en charge est
+ * remplacée par une demande plus récente et une image terminée qui n'a pas
+ * encore été affichée est remplacée par la suivante.
+ * Les images sont exprimées dans le dessin zoomé (cf. {@link Viewport}) :
+ * pendant un défilement ou un zoom, la dernière image terminée est affichée
+ * à sa place dans la nouvelle vue en attendant la suivante.
+ *
+ * @author davidroussel
+ */
+class BackgroundRenderer implements Runnable
+{
+	/**
+	 * Le modèle de dessin dont on effectue le rendu
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Le composant affichant les images, redessiné à chaque nouvelle image
+	 */
+	private final JComponent target;
+
+	/**
+	 * Le thread de rendu
+	 */
+	private final Thread thread;
+
+	/**
+	 * Indique si le thread de rendu doit continuer à s'exécuter
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Les régions (en coordonnées du dessin zoomé) modifiées depuis la
+	 * dernière demande de rendu (EDT uniquement)
+	 */
+	private DirtyRegions pending;
+
+	/**
+	 * La vue du dessin dans le composant (EDT uniquement)
+	 */
+	private Viewport viewport;
+
+	/**
+	 * La partie visible du composant (en coordonnées du dessin zoomé) lors
+	 * de la dernière demande (EDT uniquement)
+	 */
+	private Rectangle requestedView;
+
+	/**
+	 * Le facteur de zoom lors de la dernière demande (EDT uniquement)
+	 */
+	private double requestedZoom;
+
+	/**
+	 * Le facteur d'échelle lors de la dernière demande (EDT uniquement)
+	 */
+	private double requestedScale;
+
+	/**
+	 * La couleur de fond lors de la dernière demande (EDT uniquement)
+	 */
+	private Color requestedBackground;
+
+	/**
+	 * L'image actuellement affichée (EDT uniquement)
+	 */
+	private Frame front;
+
+	/**
+	 * La dernière image produite par le thread de rendu, servant de base à
+	 * l'image suivante (thread de rendu uniquement)
+	 */
+	private Frame last;
+
+	/**
+	 * La demande de rendu en attente de prise en charge (ou null).
+	 * Partagée, protégée par this.
+	 */
+	private Request requested;
+
+	/**
+	 * L'image terminée non encore affichée (ou null).
+	 * Partagée, protégée par this.
+	 */
+	private Frame ready;
+
+	/**
+	 * Indique que le thread de rendu est en train de produire une image.
+	 * Partagé, protégé par this.
+	 */
+	private boolean busy;
+
+	/**
+	 * Images libérées réutilisables pour les images suivantes.
+	 * Partagées, protégées par this.
+	 */
+	private List<BufferedImage> free;
+
+	/**
+	 * Nombre d'images produites par le thread de rendu (protégé par this)
+	 */
+	private long renderedFrames;
+
+	/**
+	 * Nombre d'images abandonnées avant d'être affichées ou même rendues
+	 * (protégé par this)
+	 */
+	private long droppedFrames;
+
+	/**
+	 * Constructeur d'un renderer : démarre le thread de rendu
+	 * @param drawing le modèle de dessin dont on effectue le rendu
+	 * @param target le composant affichant les images
+	 */
+	public BackgroundRenderer(Drawing drawing, JComponent target)
+	{
+		this.drawing = drawing;
+		this.target = target;
+		pending = new DirtyRegions();
+		viewport = Viewport.IDENTITY;
+		requestedView = null;
+		requestedZoom = 1.0;
+		requestedScale = 1.0;
+		requestedBackground = null;
+		front = null;
+		last = null;
+		requested = null;
+		ready = null;
+		busy = false;
+		free = new ArrayList<BufferedImage>();
+		renderedFrames = 0;
+		droppedFrames = 0;
+
+		running = true;
+		thread = new Thread(this, "DrawingPanel renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Arrêt du thread de rendu
+	 */
+	public void dispose()
+	{
+		synchronized (this)
+		{
+			running = false;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Invalidation d'une région du dessin (depuis l'EDT)
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour redessiner entièrement la partie visible
+	 * @param margin la marge (en pixels) à ajouter autour de la région
+	 */
+	public void invalidate(Rectangle2D region, int margin)
+	{
+		if (region != null)
+		{
+			double zoom = viewport.getZoom();
+			region = new Rectangle2D.Double(region.getX() * zoom,
+			                                region.getY() * zoom,
+			                                region.getWidth() * zoom,
+			                                region.getHeight() * zoom);
+		}
+		pending.add(region, margin);
+	}
+
+	/**
+	 * Changement de la vue du dessin dans le composant (depuis l'EDT) : la
+	 * partie visible est entièrement redessinée lors du prochain dessin
+	 * @param view la nouvelle vue
+	 */
+	public void setViewport(Viewport view)
+	{
+		viewport = view;
+	}
+
+	/**
+	 * Teste si l'image affichée est à jour
+	 * @return true si aucune modification ne reste à rendre ou à afficher
+	 */
+	public synchronized boolean isComplete()
+	{
+		return pending.isEmpty() && (requested == null) && !busy &&
+			(ready == null);
+	}
+
+	/**
+	 * Nombre d'images produites par le thread de rendu
+	 * @return le nombre d'images rendues
+	 */
+	public synchronized long getRenderedFrames()
+	{
+		return renderedFrames;
+	}
+
+	/**
+	 * Nombre d'images abandonnées parce que le rendu prenait du retard
+	 * @return le nombre d'images abandonnées
+	 */
+	public synchronized long getDroppedFrames()
+	{
+		return droppedFrames;
+	}
+
+	/**
+	 * Dessin du composant (depuis l'EDT) : transmission des modifications
+	 * au thread de rendu puis copie de la dernière image terminée
+	 * @param g2D le contexte graphique du composant
+	 * @param visible la partie visible du composant
+	 * @param color la couleur de fond du composant
+	 * @return true si le dessin a pu être effectué à partir des images,
+	 * false si le contexte graphique ne s'y prête pas (rotation par
+	 * exemple) auquel cas il faut dessiner les figures directement
+	 */
+	public boolean paint(Graphics2D g2D, Rectangle visible, Color color)
+	{
+		AffineTransform t = g2D.getTransform();
+		if ((t.getShearX() != 0.0) || (t.getShearY() != 0.0) ||
+		    (t.getScaleX() <= 0.0) || (t.getScaleX() != t.getScaleY()) ||
+		    visible.isEmpty())
+			return false;
+
+		synchronized (this)
+		{
+			if (ready != null)
+			{
+				if (front != null)
+					free.add(front.image);
+				front = ready;
+				ready = null;
+			}
+		}
+
+		submit(new Rectangle(visible.x + viewport.getX(),
+		                     visible.y + viewport.getY(),
+		                     visible.width, visible.height),
+		       t.getScaleX(), color);
+
+		if (front != null)
+		{
+			// Placement de l'image dans la vue courante (mise à l'échelle si
+			// le zoom a changé depuis son rendu)
+			double ratio = viewport.getZoom() / front.zoom;
+			g2D.drawImage(front.image,
+			              (int) Math.round(front.view.x * ratio) - viewport.getX(),
+			              (int) Math.round(front.view.y * ratio) - viewport.getY(),
+			              (int) Math.round(front.view.width * ratio),
+			              (int) Math.round(front.view.height * ratio), null);
+		}
+		else
+		{
+			g2D.setColor(color);
+			g2D.fill(visible);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Transmission au thread de rendu d'une demande contenant les copies
+	 * des figures touchant les régions modifiées. Une demande précédente qui
+	 * n'a pas encore été prise en charge est abandonnée : ses régions sont
+	 * reprises dans la nouvelle demande.
+	 * @param visible la partie visible du composant (en coordonnées du
+	 * dessin zoomé)
+	 * @param scale le facteur d'échelle du contexte graphique
+	 * @param color la couleur de fond
+	 */
+	private void submit(Rectangle visible, double scale, Color color)
+	{
+		if (!visible.equals(requestedView) || (scale != requestedScale) ||
+		    (viewport.getZoom() != requestedZoom) ||
+		    !color.equals(requestedBackground))
+		{
+			pending.add(null, 0);
+			requestedView = new Rectangle(visible);
+			requestedZoom = viewport.getZoom();
+			requestedScale = scale;
+			requestedBackground = color;
+		}
+
+		if (pending.isEmpty())
+			return;
+
+		synchronized (this)
+		{
+			if (requested != null)
+			{
+				if (requested.full)
+					pending.add(null, 0);
+				else
+				{
+					for (Rectangle r : requested.regions)
+						pending.add(r, 0);
+				}
+				requested = null;
+				droppedFrames++;
+			}
+		}
+
+		List<Rectangle> regions = new ArrayList<Rectangle>();
+		if (pending.isFull())
+		{
+			regions.add(requestedView);
+		}
+		else
+		{
+			for (Rectangle r : pending.getRegions())
+			{
+				Rectangle visiblePart = r.intersection(requestedView);
+				if (!visiblePart.isEmpty())
+					regions.add(visiblePart);
+			}
+		}
+		Request request = new Request(requestedView, requestedScale, viewport,
+		                              requestedBackground, pending.isFull(),
+		                              regions);
+		for (Rectangle r : regions)
+			request.figures.add(drawing.stream(drawing.getFiguresIn(
+					new Rectangle2D.Double(r.x / requestedZoom,
+					                       r.y / requestedZoom,
+					                       r.width / requestedZoom,
+					                       r.height / requestedZoom)))
+				.map(Figure::snapshot)
+				.collect(Collectors.toList()));
+		pending.clear();
+
+		if (regions.isEmpty())
+			return;
+
+		synchronized (this)
+		{
+			requested = request;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Boucle du thread de rendu : prise en charge des demandes et
+	 * transmission des images terminées
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			Request request;
+			synchronized (this)
+			{
+				while (running && (requested == null))
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				if (!running)
+					return;
+
+				request = requested;
+				requested = null;
+				busy = true;
+			}
+
+			Frame frame = render(request);
+
+			synchronized (this)
+			{
+				if (ready != null)
+				{
+					free.add(ready.image);
+					droppedFrames++;
+				}
+				ready = frame;
+				busy = false;
+				renderedFrames++;
+			}
+			last = frame;
+
+			Rectangle changed = request.regions.get(0);
+			for (Rectangle r : request.regions)
+				changed = changed.union(r);
+			changed.translate(-request.viewport.getX(),
+			                  -request.viewport.getY());
+			target.repaint(changed);
+		}
+	}
+
+	/**
+	 * Rendu d'une image (thread de rendu) : copie de l'image précédente
+	 * puis dessin des régions modifiées
+	 * @param request la demande de rendu
+	 * @return l'image produite
+	 */
+	private Frame render(Request request)
+	{
+		int w = Math.max(1, (int) Math.ceil(request.view.width * request.scale));
+		int h = Math.max(1, (int) Math.ceil(request.view.height * request.scale));
+		BufferedImage image = allocate(w, h);
+
+		if (!request.full && (last != null))
+		{
+			Graphics2D g = image.createGraphics();
+			g.drawImage(last.image, 0, 0, null);
+			g.dispose();
+		}
+
+		Rectangle bounds = new Rectangle(0, 0, w, h);
+		for (int i = 0; i < request.regions.size(); i++)
+		{
+			Rectangle2D region = request.regions.get(i);
+			Rectangle pixels = bounds.intersection(new Rectangle2D.Double(
+				(region.getX() - request.view.x) * request.scale,
+				(region.getY() - request.view.y) * request.scale,
+				region.getWidth() * request.scale,
+				region.getHeight() * request.scale).getBounds());
+			if (pixels.isEmpty())
+				continue;
+
+			Graphics2D g = image.createGraphics();
+			g.setClip(pixels);
+			g.setColor(request.background);
+			g.fill(pixels);
+			g.scale(request.scale, request.scale);
+			g.translate(-request.view.x, -request.view.y);
+			g.scale(request.viewport.getZoom(), request.viewport.getZoom());
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                   RenderingHints.VALUE_ANTIALIAS_ON);
+			for (FigureSnapshot f : request.figures.get(i))
+				f.draw(g);
+			g.dispose();
+		}
+
+		return new Frame(image, request.view, request.viewport.getZoom());
+	}
+
+	/**
+	 * Obtention d'une image libre de la taille demandée
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @return une image libérée réutilisée ou bien une nouvelle image
+	 */
+	private synchronized BufferedImage allocate(int width, int height)
+	{
+		while (!free.isEmpty())
+		{
+			BufferedImage image = free.remove(free.size() - 1);
+			if ((image.getWidth() == width) && (image.getHeight() == height))
+				return image;
+		}
+
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Demande de rendu : copies des figures touchant chacune des régions
+	 * modifiées de la partie visible
+	 */
+	private static class Request
+	{
+		/**
+		 * La partie visible du composant (en coordonnées du dessin zoomé)
+		 */
+		final Rectangle view;
+
+		/**
+		 * Le facteur d'échelle entre le dessin zoomé et les pixels de
+		 * l'image
+		 */
+		final double scale;
+
+		/**
+		 * La vue du dessin dans le composant
+		 */
+		final Viewport viewport;
+
+		/**
+		 * La couleur de fond
+		 */
+		final Color background;
+
+		/**
+		 * Indique que l'image doit être entièrement redessinée
+		 */
+		final boolean full;
+
+		/**
+		 * Les régions à redessiner (en coordonnées du dessin zoomé)
+		 */
+		final List<Rectangle> regions;
+
+		/**
+		 * Les copies des figures touchant chacune des {@link #regions}, dans
+		 * l'ordre d'empilement
+		 */
+		final List<List<FigureSnapshot>> figures;
+
+		/**
+		 * Constructeur d'une demande de rendu
+		 * @param view la partie visible du composant
+		 * @param scale le facteur d'échelle
+		 * @param viewport la vue du dessin
+		 * @param background la couleur de fond
+		 * @param full indique que l'image doit être entièrement redessinée
+		 * @param regions les régions à redessiner
+		 */
+		Request(Rectangle view, double scale, Viewport viewport,
+		        Color background, boolean full, List<Rectangle> regions)
+		{
+			this.view = view;
+			this.scale = scale;
+			this.viewport = viewport;
+			this.background = background;
+			this.full = full;
+			this.regions = regions;
+			figures = new ArrayList<List<FigureSnapshot>>(regions.size());
+		}
+	}
+
+	/**
+	 * Image terminée de la partie visible du composant
+	 */
+	private static class Frame
+	{
+		/**
+		 * L'image
+		 */
+		final BufferedImage image;
+
+		/**
+		 * La partie visible du composant (en coordonnées du dessin zoomé)
+		 * couverte par l'image
+		 */
+		final Rectangle view;
+
+		/**
+		 * Le facteur de zoom du rendu de l'image
+		 */
+		final double zoom;
+
+		/**
+		 * Constructeur d'une image terminée
+		 * @param image l'image
+		 * @param view la partie visible couverte par l'image
+		 * @param zoom le facteur de zoom du rendu de l'image
+		 */
+		Frame(BufferedImage image, Rectangle view, double zoom)
+		{
+			this.image = image;
+			this.view = view;
+			this.zoom = zoom;
+		}
+	}
+}
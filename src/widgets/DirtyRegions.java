@@ -0,0 +1,112 @@
+package widgets;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ensemble des régions (en pixels) d'une image hors écran devant être
+ * redessinées. Au delà d'un certain nombre de régions, celles-ci sont
+ * fusionnées en leur rectangle englobant afin de borner le coût du
+ * rafraichissement.
+ *
+ * @author davidroussel
+ */
+class DirtyRegions
+{
+	/**
+	 * Nombre maximum de régions mémorisées avant de les fusionner
+	 */
+	private static final int MAX_REGIONS = 16;
+
+	/**
+	 * Les régions à redessiner
+	 */
+	private List<Rectangle> regions;
+
+	/**
+	 * Indique que l'image doit être entièrement redessinée
+	 */
+	private boolean full;
+
+	/**
+	 * Constructeur d'un ensemble de régions indiquant que l'image doit être
+	 * entièrement redessinée
+	 */
+	public DirtyRegions()
+	{
+		regions = new ArrayList<Rectangle>();
+		full = true;
+	}
+
+	/**
+	 * Ajout d'une région à redessiner
+	 * @param region la région modifiée ou null pour indiquer que l'image
+	 * doit être entièrement redessinée
+	 * @param margin la marge (en pixels) à ajouter autour de la région
+	 */
+	public void add(Rectangle2D region, int margin)
+	{
+		if (region == null)
+		{
+			full = true;
+			regions.clear();
+			return;
+		}
+
+		if (full)
+			return;
+
+		Rectangle r = region.getBounds();
+		r.grow(margin, margin);
+		regions.add(r);
+
+		if (regions.size() > MAX_REGIONS)
+		{
+			Rectangle union = regions.get(0);
+			for (Rectangle d : regions)
+				union = union.union(d);
+			regions.clear();
+			regions.add(union);
+		}
+	}
+
+	/**
+	 * Teste si l'image doit être entièrement redessinée
+	 * @return true si l'image doit être entièrement redessinée
+	 */
+	public boolean isFull()
+	{
+		return full;
+	}
+
+	/**
+	 * Teste s'il n'y a rien à redessiner
+	 * @return true si aucune région n'est à redessiner
+	 */
+	public boolean isEmpty()
+	{
+		return !full && regions.isEmpty();
+	}
+
+	/**
+	 * Accès aux régions à redessiner (lorsque l'image n'est pas à
+	 * redessiner entièrement)
+	 * @return une vue non modifiable des régions à redessiner
+	 */
+	public List<Rectangle> getRegions()
+	{
+		return Collections.unmodifiableList(regions);
+	}
+
+	/**
+	 * Oubli des régions à redessiner une fois qu'elles l'ont été
+	 */
+	public void clear()
+	{
+		full = false;
+		regions.clear();
+	}
+}
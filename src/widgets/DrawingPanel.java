@@ -1,31 +1,45 @@
 package widgets;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Stroke;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
+import figures.BatchRenderer;
 import figures.Drawing;
+import figures.DrawingChange;
 import figures.Figure;
+import figures.LevelOfDetail;
+import figures.OcclusionCuller;
 import figures.creationListeners.AbstractCreationListener;
+import figures.creationListeners.DrawingMouseEvent;
 
 /**
  * Panel de dessin des figures (Vue): mis à jour par modèle des figures (
@@ -43,12 +57,35 @@ import figures.creationListeners.AbstractCreationListener;
  * pour traduire les évènements souris en instructions pour le modèle de dessin
  * lors de la création d'une nouvelle figure.
  * </dl>
+ * Le dessin est affiché au travers d'une vue ({@link Viewport}) zoomable
+ * (molette + Ctrl) et déplaçable (molette, molette + Shift) : les
+ * coordonnées des évènements souris sont converties en coordonnées du dessin
+ * avant d'être transmises aux listeners.
  *
  * @author davidroussel
  */
 public class DrawingPanel extends JPanel implements Observer, MouseListener,
-		MouseMotionListener
+		MouseMotionListener, MouseWheelListener
 {
+	/**
+	 * Facteur de zoom appliqué à chaque cran de molette (avec Ctrl) et par
+	 * {@link #zoomIn()} / {@link #zoomOut()}
+	 */
+	public final static double ZOOM_STEP = 1.25;
+
+	/**
+	 * Déplacement (en pixels) de la vue à chaque cran de molette
+	 */
+	public final static int PAN_STEP = 32;
+
+	/**
+	 * Nom de la propriété signalée aux {@link java.beans.PropertyChangeListener}
+	 * lorsque la vue change (zoom ou défilement) : les anciennes et nouvelles
+	 * valeurs sont les transformations des coordonnées du dessin vers celles
+	 * du panel (cf. {@link #getViewTransform()})
+	 */
+	public final static String VIEW_PROPERTY = "viewTransform";
+
 	/**
 	 * Taille effective du panel. Ce panel n'ayant pas de Layout Manager, il est
 	 * important de conserver une taille effective qui puisse être renvoyée dans
@@ -74,6 +111,8 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		public void componentResized(ComponentEvent e)
 		{
 			size = e.getComponent().getSize();
+			if (pickingBuffer != null)
+				pickingBuffer.setSize(size.width, size.height);
 		}
 	}
 
@@ -114,6 +153,139 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	 */
 	private boolean sendInfoState;
 
+	/**
+	 * Suivi de la figure située sous le curseur permettant d'éviter de
+	 * rechercher la figure et de réécrire les labels de l'{@link #infoPanel}
+	 * à chaque déplacement de la souris
+	 */
+	private HoverTracker hoverTracker;
+
+	/**
+	 * Tampon d'identifiants des figures utilisé (lorsqu'il est non null) par
+	 * le modèle pour trouver la figure sous le curseur par une simple lecture
+	 * de pixel.
+	 * @see #setPicking(boolean)
+	 */
+	private PickingBuffer pickingBuffer;
+
+	/**
+	 * Le trait utilisé pour dessiner le cadre des figures sélectionnées et la
+	 * zone de sélection
+	 */
+	private final static BasicStroke selectionStroke =
+		new BasicStroke(1.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+		                1.0f, new float[] { 4.0f, 4.0f }, 0.0f);
+
+	/**
+	 * La couleur du cadre des figures sélectionnées et de la zone de
+	 * sélection
+	 */
+	private final static Color selectionColor = new Color(0, 120, 215);
+
+	/**
+	 * La couleur (translucide) de remplissage de la zone de sélection
+	 */
+	private final static Color selectionAreaColor = new Color(0, 120, 215, 40);
+
+	/**
+	 * Marge (en pixels) ajoutée autour des régions modifiées à redessiner
+	 * afin de couvrir les pixels partiellement touchés par l'antialiasing et
+	 * le cadre de sélection
+	 */
+	private final static int REPAINT_MARGIN = 2;
+
+	/**
+	 * La vue du dessin dans le panel (zoom et défilement)
+	 * @see #setViewport(Viewport)
+	 */
+	private Viewport viewport;
+
+	/**
+	 * Nombre de figures ignorées lors du dernier dessin des figures du panel
+	 * car situées hors de la région à redessiner (modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED})
+	 * @see #getCulledCount()
+	 */
+	private int culledCount;
+
+	/**
+	 * Le mode de dessin des figures
+	 * @see #setRenderMode(RenderMode)
+	 */
+	private RenderMode renderMode;
+
+	/**
+	 * Les images mémorisant le rendu des figures autres que la figure active
+	 * (uniquement en mode {@link RenderMode#LAYERED}, null sinon)
+	 */
+	private LayerCache layerCache;
+
+	/**
+	 * Les tuiles mémorisant le rendu des figures (uniquement en modes
+	 * {@link RenderMode#TILED} et {@link RenderMode#PARALLEL_TILED}, null
+	 * sinon)
+	 */
+	private TileCache tileCache;
+
+	/**
+	 * Les tuiles multi-résolution mémorisant le rendu des figures
+	 * (uniquement en mode {@link RenderMode#TILE_PYRAMID}, null sinon)
+	 */
+	private TilePyramid tilePyramid;
+
+	/**
+	 * Le rendu progressif des figures (uniquement en mode
+	 * {@link RenderMode#PROGRESSIVE}, null sinon)
+	 */
+	private ProgressiveRenderer progressiveRenderer;
+
+	/**
+	 * Le rendu des figures dans un thread dédié (uniquement en mode
+	 * {@link RenderMode#BACKGROUND}, null sinon)
+	 */
+	private BackgroundRenderer backgroundRenderer;
+
+	/**
+	 * Le dessin des figures selon les options de dessin (élimination des
+	 * figures cachées, niveau de détail, dessin par lots)
+	 * partagé par les modes {@link RenderMode#DIRECT} et
+	 * {@link RenderMode#LAYERED}
+	 * @see #setBatching(boolean)
+	 * @see #setLevelOfDetail(boolean)
+	 * @see #setOcclusionCulling(boolean)
+	 */
+	private FigurePainter figurePainter;
+
+	/**
+	 * Indique si les images du {@link #layerCache} doivent être allouées en
+	 * mémoire vidéo
+	 * @see #setAcceleratedLayers(boolean)
+	 */
+	private boolean acceleratedLayers;
+
+	/**
+	 * La politique de qualité de rendu adaptative pendant les gestes
+	 */
+	private AdaptiveQuality quality;
+
+	/**
+	 * Taille mémoire maximum (en octets) des tuiles du {@link #tileCache}
+	 * ou de la {@link #tilePyramid}
+	 */
+	private long tileBudget;
+
+	/**
+	 * Nombre de threads utilisés pour rendre les tuiles en mode
+	 * {@link RenderMode#PARALLEL_TILED}
+	 */
+	private int renderThreads;
+
+	/**
+	 * Le pool de threads rendant les tuiles en mode
+	 * {@link RenderMode#PARALLEL_TILED} (créé à la demande)
+	 */
+	private ForkJoinPool renderPool;
+
 	/**
 	 * Constructeur de la zone de dessin à partir d'un modèle de dessin.
 	 *
@@ -151,11 +323,29 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		this.infoPanel = infoPanel; // Remise à zero de l'infoPanel
 		if (this.infoPanel != null)
 			this.infoPanel.resetLabels();
+		hoverTracker = new HoverTracker();
+		pickingBuffer = null;
+		culledCount = 0;
+		viewport = Viewport.IDENTITY;
+		renderMode = RenderMode.DIRECT;
+		layerCache = null;
+		tileCache = null;
+		tilePyramid = null;
+		progressiveRenderer = null;
+		backgroundRenderer = null;
+		quality = new AdaptiveQuality(this);
+		figurePainter = new FigurePainter();
+		acceleratedLayers = false;
+		tileBudget = TileCache.DEFAULT_BUDGET;
+		renderThreads = Runtime.getRuntime().availableProcessors();
+		renderPool = null;
+		setRenderMode(RenderMode.LAYERED);
 		
 
 		// DrawingPanel est son propre listener d'évènements souris
 		addMouseListener(this);
 		addMouseMotionListener(this);
+		addMouseWheelListener(this);
 	}
 
 	/**
@@ -182,6 +372,8 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	public void setDrawing(Drawing drawing)
 	{
 		// retrait du précédent modèle de dessin (s'il existe)
+		boolean picking = isPicking();
+		setPicking(false);
 		if (drawingModel != null)
 		{
 			drawingModel.deleteObserver(this);
@@ -189,13 +381,308 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 
 		// Mise en place du nouveau modèle de dessin
 		drawingModel = drawing;
+		hoverTracker.reset();
 		
 		if (drawingModel != null)
 		{
 			drawingModel.addObserver(this);
+			drawingModel.setViewScale(viewport.getZoom());
+		}
+		setPicking(picking);
+
+		RenderMode mode = renderMode;
+		renderMode = null;
+		setRenderMode(mode);
+	}
+
+	/**
+	 * Changement du mode de dessin des figures
+	 * @param mode le nouveau mode de dessin
+	 */
+	public void setRenderMode(RenderMode mode)
+	{
+		if ((mode == null) || (mode == renderMode))
+			return;
+
+		renderMode = mode;
+		culledCount = 0;
+		layerCache = null;
+		tileCache = null;
+		tilePyramid = null;
+		progressiveRenderer = null;
+		if (backgroundRenderer != null)
+		{
+			backgroundRenderer.dispose();
+			backgroundRenderer = null;
+		}
+		if (drawingModel != null)
+		{
+			switch (mode)
+			{
+				case LAYERED:
+					layerCache = new LayerCache(drawingModel, figurePainter);
+					layerCache.setAccelerated(acceleratedLayers);
+					break;
+				case TILED:
+					tileCache = new TileCache(drawingModel, tileBudget);
+					break;
+				case PARALLEL_TILED:
+					if (renderPool == null)
+						renderPool = new ForkJoinPool(renderThreads);
+					tileCache = new TileCache(drawingModel, tileBudget,
+					                          renderPool);
+					break;
+				case TILE_PYRAMID:
+					tilePyramid = new TilePyramid(drawingModel, tileBudget);
+					break;
+				case PROGRESSIVE:
+					progressiveRenderer = new ProgressiveRenderer(drawingModel,
+					                                              this);
+					break;
+				case BACKGROUND:
+					backgroundRenderer = new BackgroundRenderer(drawingModel,
+					                                            this);
+					break;
+				default:
+					break;
+			}
+		}
+		if (layerCache != null)
+			layerCache.setViewport(viewport);
+		if (progressiveRenderer != null)
+			progressiveRenderer.setViewport(viewport);
+		if (backgroundRenderer != null)
+			backgroundRenderer.setViewport(viewport);
+
+		repaint();
+	}
+
+	/**
+	 * Changement de la taille mémoire maximum des tuiles utilisées en mode
+	 * {@link RenderMode#TILED}, {@link RenderMode#PARALLEL_TILED} et
+	 * {@link RenderMode#TILE_PYRAMID}
+	 * @param budget la taille mémoire maximum des tuiles (en octets)
+	 */
+	public void setTileBudget(long budget)
+	{
+		tileBudget = Math.max(0, budget);
+		if (tileCache != null)
+			tileCache.setBudget(tileBudget);
+		if (tilePyramid != null)
+			tilePyramid.setBudget(tileBudget);
+	}
+
+	/**
+	 * Accesseur de la taille mémoire maximum des tuiles
+	 * @return la taille mémoire maximum des tuiles (en octets)
+	 */
+	public long getTileBudget()
+	{
+		return tileBudget;
+	}
+
+	/**
+	 * Changement du nombre de threads utilisés pour rendre les tuiles en mode
+	 * {@link RenderMode#PARALLEL_TILED}. Les tuiles déjà rendues sont
+	 * conservées si le mode courant n'est pas concerné, et abandonnées sinon.
+	 * @param threads le nombre de threads (au moins 1)
+	 */
+	public void setRenderThreads(int threads)
+	{
+		threads = Math.max(1, threads);
+		if (threads == renderThreads)
+			return;
+
+		renderThreads = threads;
+		if (renderPool != null)
+		{
+			renderPool.shutdown();
+			renderPool = null;
+		}
+		if (renderMode == RenderMode.PARALLEL_TILED)
+		{
+			renderMode = null;
+			setRenderMode(RenderMode.PARALLEL_TILED);
 		}
 	}
 
+	/**
+	 * Accesseur du nombre de threads utilisés pour rendre les tuiles en mode
+	 * {@link RenderMode#PARALLEL_TILED}
+	 * @return le nombre de threads de rendu des tuiles
+	 */
+	public int getRenderThreads()
+	{
+		return renderThreads;
+	}
+
+	/**
+	 * Accesseur du mode de dessin des figures
+	 * @return le mode de dessin courant
+	 */
+	public RenderMode getRenderMode()
+	{
+		return renderMode;
+	}
+
+	/**
+	 * Accesseur du facteur de zoom de la vue
+	 * @return le facteur de zoom (1 lorsque le dessin n'est pas zoomé)
+	 */
+	public double getZoom()
+	{
+		return viewport.getZoom();
+	}
+
+	/**
+	 * Changement du facteur de zoom de la vue autour du centre de la partie
+	 * visible du panel
+	 * @param zoom le nouveau facteur de zoom (borné entre
+	 * {@link Viewport#MIN_ZOOM} et {@link Viewport#MAX_ZOOM})
+	 */
+	public void setZoom(double zoom)
+	{
+		Rectangle visible = getVisibleRect();
+		setViewport(viewport.zoomed(zoom,
+		                            new Point2D.Double(visible.getCenterX(),
+		                                               visible.getCenterY())));
+	}
+
+	/**
+	 * Agrandissement de la vue d'un facteur {@link #ZOOM_STEP}
+	 */
+	public void zoomIn()
+	{
+		setZoom(getZoom() * ZOOM_STEP);
+	}
+
+	/**
+	 * Réduction de la vue d'un facteur {@link #ZOOM_STEP}
+	 */
+	public void zoomOut()
+	{
+		setZoom(getZoom() / ZOOM_STEP);
+	}
+
+	/**
+	 * Déplacement de la vue
+	 * @param dx le déplacement horizontal du dessin (en pixels du panel)
+	 * @param dy le déplacement vertical du dessin (en pixels du panel)
+	 */
+	public void panBy(int dx, int dy)
+	{
+		setViewport(viewport.panned(dx, dy));
+	}
+
+	/**
+	 * Retour à la vue initiale : dessin non zoomé dont l'origine est dans le
+	 * coin supérieur gauche du panel
+	 */
+	public void resetView()
+	{
+		setViewport(Viewport.IDENTITY);
+	}
+
+	/**
+	 * Transformation des coordonnées du dessin vers celles du panel
+	 * @return une copie de la transformation de la vue courante
+	 */
+	public AffineTransform getViewTransform()
+	{
+		return viewport.getTransform();
+	}
+
+	/**
+	 * Partie du dessin visible dans le panel
+	 * @return la région du dessin (en coordonnées du dessin) visible dans le
+	 * panel
+	 */
+	public Rectangle2D getVisibleDrawingArea()
+	{
+		return viewport.toDrawing(getVisibleRect());
+	}
+
+	/**
+	 * Déplacement de la vue de manière à centrer un point du dessin dans la
+	 * partie visible du panel
+	 * @param p le point du dessin à centrer
+	 */
+	public void centerOn(Point2D p)
+	{
+		Rectangle visible = getVisibleRect();
+		Point2D center = viewport.toDrawing(
+			new Point2D.Double(visible.getCenterX(), visible.getCenterY()));
+		double zoom = viewport.getZoom();
+		panBy((int) Math.round((center.getX() - p.getX()) * zoom),
+		      (int) Math.round((center.getY() - p.getY()) * zoom));
+	}
+
+	/**
+	 * Mise en place d'une nouvelle vue : les rendus mémorisés dépendant de
+	 * la vue sont invalidés et le panel redessiné, puis les observateurs de
+	 * la propriété {@link #VIEW_PROPERTY} sont prévenus
+	 * @param view la nouvelle vue
+	 */
+	private void setViewport(Viewport view)
+	{
+		if (view.equals(viewport))
+			return;
+
+		AffineTransform previous = viewport.getTransform();
+		viewport = view;
+		if (drawingModel != null)
+			drawingModel.setViewScale(view.getZoom());
+		if (pickingBuffer != null)
+			pickingBuffer.setViewport(view);
+		if (layerCache != null)
+			layerCache.setViewport(view);
+		if (progressiveRenderer != null)
+			progressiveRenderer.setViewport(view);
+		if (backgroundRenderer != null)
+			backgroundRenderer.setViewport(view);
+		hoverTracker.reset();
+		repaint();
+		firePropertyChange(VIEW_PROPERTY, previous, view.getTransform());
+	}
+
+	/**
+	 * Activation ou désactivation du mode de recherche des figures par
+	 * tampon d'identifiants. Dans ce mode la figure située sous le curseur
+	 * (pour l'{@link #infoPanel} comme pour le déplacement des figures) est
+	 * obtenue par une lecture de pixel dans un {@link PickingBuffer} mis à
+	 * jour par régions lorsque le modèle change.
+	 * @param picking true pour activer ce mode
+	 */
+	public void setPicking(boolean picking)
+	{
+		if (drawingModel == null)
+			return;
+
+		if (picking && (pickingBuffer == null))
+		{
+			pickingBuffer = new PickingBuffer(drawingModel, size.width,
+			                                  size.height, viewport);
+			drawingModel.setPicker(pickingBuffer);
+		}
+		else if (!picking && (pickingBuffer != null))
+		{
+			if (drawingModel.getPicker() == pickingBuffer)
+				drawingModel.setPicker(null);
+			pickingBuffer = null;
+		}
+		hoverTracker.reset();
+	}
+
+	/**
+	 * Accesseur du mode de recherche des figures par tampon d'identifiants
+	 * @return true si le mode de recherche par tampon d'identifiants est
+	 * actif
+	 */
+	public boolean isPicking()
+	{
+		return pickingBuffer != null;
+	}
+
 	/**
 	 * Mise en place du label dans lequel afficher les coordonnées du pointeur
 	 * de la souris.
@@ -217,10 +704,259 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	public void setInfoPanel(InfoPanel infoPanel)
 	{
 		this.infoPanel = infoPanel;
+		hoverTracker.reset();
 	}
 
 	/**
-	 * Dessin du panel. Effacement ce celui-ci puis dessin des figures.
+	 * Nombre de figures ignorées lors du dernier dessin des figures.
+	 * En mode {@link RenderMode#DIRECT} il s'agit des figures dont le
+	 * rectangle englobant n'intersectait pas la région à redessiner (clip)
+	 * ou qui étaient cachées (cf. {@link #setOcclusionCulling(boolean)})
+	 * lors du dernier appel à {@link #paintComponent(Graphics)}. En mode
+	 * {@link RenderMode#LAYERED} il s'agit des figures n'intersectant aucune
+	 * des régions des images redessinées lors de la dernière image ayant
+	 * redessiné une partie de celles-ci (cf. {@link LayerCache}). Les
+	 * autres modes dessinent les figures par tuiles ou hors de
+	 * {@link #paintComponent(Graphics)} et ne mettent pas ce compteur à jour
+	 * (il est remis à 0 lors du changement de mode).
+	 * @return le nombre de figures ignorées lors du dernier dessin
+	 */
+	public int getCulledCount()
+	{
+		return culledCount;
+	}
+
+	/**
+	 * (Dés)activation de la qualité de rendu adaptative : lorsqu'elle est
+	 * active, l'antialiasing est désactivé pendant la création ou le
+	 * déplacement d'une figure si les images dépassent le budget par image,
+	 * puis les régions concernées sont redessinées en haute qualité à la fin
+	 * du geste.
+	 * @param adaptive true pour activer la qualité adaptative, false pour
+	 * toujours dessiner en haute qualité
+	 */
+	public void setAdaptiveQuality(boolean adaptive)
+	{
+		quality.setEnabled(adaptive);
+	}
+
+	/**
+	 * Teste si la qualité de rendu adaptative est active
+	 * @return true si la qualité de rendu est abaissée pendant les gestes
+	 * lorsque nécessaire
+	 */
+	public boolean isAdaptiveQuality()
+	{
+		return quality.isEnabled();
+	}
+
+	/**
+	 * Changement du budget par image en deçà duquel la qualité de rendu
+	 * adaptative conserve la haute qualité pendant les gestes
+	 * @param millis le budget (en ms) d'une image
+	 */
+	public void setFrameBudget(double millis)
+	{
+		quality.setBudget(millis);
+	}
+
+	/**
+	 * Accesseur du budget par image de la qualité de rendu adaptative
+	 * @return le budget (en ms) d'une image
+	 */
+	public double getFrameBudget()
+	{
+		return quality.getBudget();
+	}
+
+	/**
+	 * Teste si la dernière image a été dessinée en basse qualité
+	 * @return true si l'antialiasing était désactivé lors du dernier dessin
+	 */
+	public boolean isQualityLowered()
+	{
+		return quality.isLowered();
+	}
+
+	/**
+	 * (Dés)activation du dessin par lots des figures en modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED} (cf.
+	 * {@link RenderMode#appliesDrawingOptions()}) : les figures voisines dans
+	 * l'ordre d'empilement, disjointes et de même style sont fusionnées en
+	 * un seul chemin (cf. {@link BatchRenderer}). Le résultat est identique,
+	 * seul le nombre d'appels au pipeline graphique change.
+	 * @param batching true pour dessiner les figures par lots
+	 */
+	public void setBatching(boolean batching)
+	{
+		if (batching == isBatching())
+			return;
+
+		figurePainter.setBatching(batching);
+		drawingOptionsChanged();
+	}
+
+	/**
+	 * Teste si les figures sont dessinées par lots
+	 * @return true si les figures sont dessinées par lots en modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED}
+	 */
+	public boolean isBatching()
+	{
+		return figurePainter.isBatching();
+	}
+
+	/**
+	 * Prise en compte d'un changement des options de dessin des figures :
+	 * les images du {@link #layerCache} sont entièrement redessinées
+	 */
+	private void drawingOptionsChanged()
+	{
+		if (layerCache != null)
+			layerCache.invalidate(null, 0);
+		repaint();
+	}
+
+	/**
+	 * (Dés)activation du niveau de détail en modes {@link RenderMode#DIRECT}
+	 * et {@link RenderMode#LAYERED} :
+	 * les figures ne couvrant que quelques pixels sont dessinées comme un
+	 * pixel ou un rectangle de leur couleur et les polygones comportant de
+	 * nombreux sommets à partir d'un contour simplifié, et les pointillés
+	 * trop fins pour être discernés comme un trait plein atténué (cf.
+	 * {@link LevelOfDetail}). Les figures du dessin ne sont pas modifiées.
+	 * Le niveau de détail est prioritaire sur le dessin par lots.
+	 * @param enabled true pour dessiner les figures selon leur taille à
+	 * l'écran
+	 */
+	public void setLevelOfDetail(boolean enabled)
+	{
+		if (enabled == isLevelOfDetail())
+			return;
+
+		figurePainter.setLevelOfDetail(enabled);
+		drawingOptionsChanged();
+	}
+
+	/**
+	 * Teste si les figures sont dessinées selon leur taille à l'écran
+	 * @return true si le niveau de détail est appliqué en modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED}
+	 */
+	public boolean isLevelOfDetail()
+	{
+		return figurePainter.isLevelOfDetail();
+	}
+
+	/**
+	 * Accesseur du niveau de détail permettant d'en régler les seuils. Les
+	 * images du mode {@link RenderMode#LAYERED} déjà dessinées ne sont pas
+	 * redessinées lorsque les seuils changent.
+	 * @return le niveau de détail appliqué (ou null s'il est désactivé)
+	 */
+	public LevelOfDetail getLevelOfDetail()
+	{
+		return figurePainter.getLevelOfDetail();
+	}
+
+	/**
+	 * (Dés)activation de l'élimination des figures cachées en modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED} : les figures entièrement recouvertes par
+	 * l'intérieur de rectangles (éventuellement arrondis) remplis d'une
+	 * couleur opaque situés devant elles ne sont pas dessinées (cf.
+	 * {@link OcclusionCuller}). Le résultat est identique.
+	 * @param enabled true pour éliminer les figures cachées
+	 */
+	public void setOcclusionCulling(boolean enabled)
+	{
+		if (enabled == isOcclusionCulling())
+			return;
+
+		figurePainter.setOcclusionCulling(enabled);
+		drawingOptionsChanged();
+	}
+
+	/**
+	 * Teste si les figures cachées sont éliminées
+	 * @return true si les figures cachées ne sont pas dessinées en modes
+	 * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED}
+	 */
+	public boolean isOcclusionCulling()
+	{
+		return figurePainter.isOcclusionCulling();
+	}
+
+	/**
+	 * (Dés)activation de l'allocation en mémoire vidéo
+	 * ({@link java.awt.image.VolatileImage}) des images utilisées en mode
+	 * {@link RenderMode#LAYERED}. Les images ordinaires sont utilisées si
+	 * l'accélération n'est pas disponible (cf. {@link LayerCache}).
+	 * @param enabled true pour demander des images accélérées
+	 */
+	public void setAcceleratedLayers(boolean enabled)
+	{
+		if (enabled == acceleratedLayers)
+			return;
+
+		acceleratedLayers = enabled;
+		if (layerCache != null)
+			layerCache.setAccelerated(enabled);
+		repaint();
+	}
+
+	/**
+	 * Teste si les images du mode {@link RenderMode#LAYERED} doivent être
+	 * allouées en mémoire vidéo
+	 * @return true si des images accélérées sont demandées
+	 */
+	public boolean isAcceleratedLayers()
+	{
+		return acceleratedLayers;
+	}
+
+	/**
+	 * Teste si les images du mode {@link RenderMode#LAYERED} utilisées lors
+	 * du dernier dessin étaient effectivement en mémoire vidéo
+	 * @return true si le dernier dessin a composé des images accélérées
+	 */
+	public boolean isLayerAccelerated()
+	{
+		return (layerCache != null) && layerCache.isAccelerated();
+	}
+
+	/**
+	 * Teste si le dessin des figures est complet. Seuls les modes
+	 * {@link RenderMode#PROGRESSIVE} et {@link RenderMode#BACKGROUND}
+	 * peuvent afficher un dessin incomplet (ou dépassé) en attendant la fin
+	 * du rendu en cours.
+	 * @return true si toutes les figures visibles ont été dessinées
+	 */
+	public boolean isRenderComplete()
+	{
+		if (progressiveRenderer != null)
+			return progressiveRenderer.isComplete();
+		if (backgroundRenderer != null)
+			return backgroundRenderer.isComplete();
+
+		return true;
+	}
+
+	/**
+	 * Dessin du panel. Effacement ce celui-ci puis dessin des figures
+	 * touchant la région à redessiner (clip) dans leur ordre d'empilement.
+	 * En mode {@link RenderMode#LAYERED} les figures autres que la figure
+	 * active sont obtenues à partir du {@link #layerCache}, en modes
+	 * {@link RenderMode#TILED} et {@link RenderMode#PARALLEL_TILED} la
+	 * région à redessiner est copiée à partir des tuiles du
+	 * {@link #tileCache}, en mode {@link RenderMode#TILE_PYRAMID} elle est
+	 * copiée à partir des tuiles du niveau de la {@link #tilePyramid} adapté
+	 * au zoom, en mode {@link RenderMode#PROGRESSIVE} la partie
+	 * visible est copiée à partir du {@link #progressiveRenderer} après une
+	 * tranche de rendu et en mode {@link RenderMode#BACKGROUND} seule la
+	 * dernière image terminée par le {@link #backgroundRenderer} est copiée.
+	 * La durée de chaque image est transmise à la politique de qualité
+	 * adaptative ({@link #quality}) qui décide de l'antialiasing de l'image
+	 * suivante.
 	 * @param g le contexte graphique
 	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
 	 */
@@ -230,12 +966,102 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		super.paintComponent(g); // Inutile
 
 		// caractéristiques graphiques : mise en place de l'antialiasing
+		// (désactivé pendant un geste si les images sont trop longues à
+		// dessiner)
 		Graphics2D g2D = (Graphics2D) g;
-		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-		                     RenderingHints.VALUE_ANTIALIAS_ON);
-		
+		boolean interacting = isInteracting();
+		quality.apply(g2D, interacting);
+
+		long start = System.nanoTime();
+		paintFigures(g2D);
+
+		Rectangle clip = g2D.getClipBounds();
+		quality.frameRendered(System.nanoTime() - start, interacting,
+		                      (clip != null ? clip :
+		                       new Rectangle(0, 0, getWidth(), getHeight())));
+	}
+
+	/**
+	 * Teste si un geste de l'utilisateur est en cours : création ou
+	 * déplacement d'une figure ou bien tracé d'une zone de sélection
+	 * @return true si un geste est en cours
+	 */
+	private boolean isInteracting()
+	{
+		return (drawingModel != null) &&
+			((drawingModel.getActiveFigure() != null) ||
+			 (drawingModel.getSelectionArea() != null));
+	}
+
+	/**
+	 * Dessin du fond, des figures et de la sélection selon le mode de dessin
+	 * courant (cf. {@link #paintComponent(Graphics)})
+	 * @param g2D le contexte graphique
+	 */
+	private void paintFigures(Graphics2D g2D)
+	{
 		// taille de la zone de dessin
 		Dimension d = getSize();
+
+		if ((layerCache != null) &&
+		    layerCache.paint(g2D, d.width, d.height, getBackground(),
+		                     REPAINT_MARGIN))
+		{
+			culledCount = layerCache.getCulledCount();
+			paintSelection(g2D);
+			return;
+		}
+
+		Rectangle clip = g2D.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, d.width, d.height);
+
+		/*
+		 * Les tuiles sont rendues dans le dessin zoomé : un défilement de la
+		 * vue réutilise les tuiles déjà rendues
+		 */
+		if (tileCache != null)
+		{
+			Graphics2D gv = (Graphics2D) g2D.create();
+			viewport.apply(gv);
+			boolean painted = tileCache.paint(gv, viewport.toDrawing(clip),
+			                                  getBackground());
+			gv.dispose();
+			if (painted)
+			{
+				paintSelection(g2D);
+				return;
+			}
+		}
+
+		if (tilePyramid != null)
+		{
+			Graphics2D gv = (Graphics2D) g2D.create();
+			viewport.apply(gv);
+			boolean painted = tilePyramid.paint(gv, viewport.toDrawing(clip),
+			                                    getBackground());
+			gv.dispose();
+			if (painted)
+			{
+				paintSelection(g2D);
+				return;
+			}
+		}
+
+		if ((progressiveRenderer != null) &&
+		    progressiveRenderer.paint(g2D, getVisibleRect(), getBackground()))
+		{
+			paintSelection(g2D);
+			return;
+		}
+
+		if ((backgroundRenderer != null) &&
+		    backgroundRenderer.paint(g2D, getVisibleRect(), getBackground()))
+		{
+			paintSelection(g2D);
+			return;
+		}
+
 		// on commence par effacer le fond
 		g2D.setColor(getBackground());
 		g2D.fillRect(0, 0, d.width, d.height);
@@ -244,14 +1070,61 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		if (drawingModel != null)
 		{
 			/*
-			 * Application d'un Consumer<Figure> en tant que lambda 
-			 * expression sur le flux (éventuellement filtré) : pour chaque 
-			 * figure du flux il faut la dessiner (avec sa méthode draw)
+			 * Seules les figures dont le rectangle englobant intersecte la
+			 * région du dessin à redessiner (dans la vue) sont visitées, les
+			 * autres sont ignorées
 			 */
-			drawingModel.stream().forEach(f -> f.draw(g2D));
+			List<Figure> visible =
+				drawingModel.getFiguresIn(viewport.toDrawing(clip));
+			culledCount = drawingModel.size() - visible.size();
+
+			// Les figures sont dessinées en coordonnées du dessin
+			AffineTransform panelTransform = g2D.getTransform();
+			viewport.apply(g2D);
+
+			// Puis dessin des figures selon les options de dessin (les
+			// figures cachées sont aussi ignorées)
+			culledCount += figurePainter.draw(g2D, drawingModel, visible);
+			g2D.setTransform(panelTransform);
+
+			// Puis la sélection par dessus les figures
+			paintSelection(g2D);
 		}
 	}
 
+	/**
+	 * Dessin du cadre des figures sélectionnées ainsi que de la zone de
+	 * sélection en cours de tracé. Les cadres sont convertis dans la vue
+	 * afin de conserver un trait d'un pixel quel que soit le zoom.
+	 * @param g2D le contexte graphique (en coordonnées du panel)
+	 */
+	private void paintSelection(Graphics2D g2D)
+	{
+		Rectangle2D area = drawingModel.getSelectionArea();
+		Collection<Figure> selection = drawingModel.getSelection();
+
+		if ((area == null) && selection.isEmpty())
+			return;
+
+		Stroke previousStroke = g2D.getStroke();
+		g2D.setStroke(selectionStroke);
+		g2D.setColor(selectionColor);
+		for (Figure f : selection)
+		{
+			g2D.draw(viewport.toPanel(f.getBounds2D()));
+		}
+
+		if (area != null)
+		{
+			Rectangle2D panelArea = viewport.toPanel(area);
+			g2D.setColor(selectionAreaColor);
+			g2D.fill(panelArea);
+			g2D.setColor(selectionColor);
+			g2D.draw(panelArea);
+		}
+		g2D.setStroke(previousStroke);
+	}
+
 	/**
 	 * Mise en place d'un nouveau creationListener
 	 *
@@ -289,7 +1162,9 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	/**
 	 * Mise à jour déclenchée par un {@link Observable#notifyObservers()} : en
 	 * l'occurence le modèle de dessin ({@link Drawing}) lorsque celui ci est
-	 * modifié. Cette mise à jour déclenche une requête de redessin du panel.
+	 * modifié. Cette mise à jour déclenche une requête de redessin du panel
+	 * limitée à la région modifiée lorsque le modèle la fournit (cf.
+	 * {@link DrawingChange}), et de tout le panel sinon.
 	 *
 	 * @param observable l'observable ayant déclenché cette MAJ
 	 * @param data les données (evt) transmises par l'observable
@@ -300,11 +1175,69 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		if (observable instanceof Drawing)
 		{
-			// Le modèle à changé il faut redessiner les figures
-			repaint();
+			// Le tampon d'identifiants doit être mis à jour dans la région
+			// modifiée (et libérer l'identifiant d'une figure retirée)
+			if (pickingBuffer != null)
+				pickingBuffer.update(data);
+
+			// Les images mémorisées ne changent pas lorsque seule la figure
+			// active est modifiée
+			if ((layerCache != null) && !isActiveFigureChange(data))
+				layerCache.invalidate(DrawingChange.boundsOf(data),
+				                      REPAINT_MARGIN);
+
+			// Seules les tuiles touchant la région modifiée sont à refaire
+			if (tileCache != null)
+				tileCache.invalidate(DrawingChange.boundsOf(data),
+				                     REPAINT_MARGIN);
+
+			// Seules les tuiles de chaque niveau touchant la région modifiée
+			// sont à refaire
+			if (tilePyramid != null)
+				tilePyramid.invalidate(DrawingChange.boundsOf(data),
+				                       REPAINT_MARGIN);
+
+			// La passe de rendu en cours est interrompue et reprendra avec
+			// l'état courant du dessin
+			if (progressiveRenderer != null)
+				progressiveRenderer.invalidate(DrawingChange.boundsOf(data),
+				                               REPAINT_MARGIN);
+
+			// Le thread de rendu redessinera la région modifiée
+			if (backgroundRenderer != null)
+				backgroundRenderer.invalidate(DrawingChange.boundsOf(data),
+				                              REPAINT_MARGIN);
+
+			// Le modèle à changé il faut redessiner les figures (uniquement
+			// dans la région modifiée si elle est connue)
+			Rectangle2D bounds = viewport.toPanel(DrawingChange.boundsOf(data));
+			if (bounds != null)
+			{
+				Rectangle dirty = bounds.getBounds();
+				dirty.grow(REPAINT_MARGIN, REPAINT_MARGIN);
+				repaint(dirty);
+			}
+			else
+			{
+				repaint();
+			}
 		}
 	}
 
+	/**
+	 * Teste si une notification du modèle ne concerne que la figure active
+	 * @param data les données transmises par le modèle
+	 * @return true si la notification concerne la figure active du modèle
+	 */
+	private boolean isActiveFigureChange(Object data)
+	{
+		if (!(data instanceof DrawingChange))
+			return false;
+
+		Figure figure = ((DrawingChange) data).getFigure();
+		return (figure != null) && (figure == drawingModel.getActiveFigure());
+	}
+
 	/**
 	 * Rafraichissement des panneaux d'information lors du déplacement de la
 	 * souris
@@ -320,7 +1253,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		 * [Opt]MAJ de l'infoPanel si une figure se situe sous le curseur
 		 */
 		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		refreshInfoPanel(drawingPoint(e));
 	}
 
 	/**
@@ -338,7 +1271,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		 * MAJ de l'infoPanel si une figure se situe sous le curseur
 		 */
 		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		refreshInfoPanel(drawingPoint(e));
 	}
 
 	@Override
@@ -347,6 +1280,90 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		// Rien
 	}
 
+	/**
+	 * Zoom (avec Ctrl) autour du pointeur ou bien déplacement vertical
+	 * (horizontal avec Shift) de la vue à l'aide de la molette
+	 * @param e l'évènement molette (en coordonnées du panel)
+	 */
+	@Override
+	public void mouseWheelMoved(MouseWheelEvent e)
+	{
+		double rotation = e.getPreciseWheelRotation();
+		if (e.isControlDown())
+		{
+			setViewport(viewport.zoomed(getZoom() * Math.pow(ZOOM_STEP,
+			                                                 -rotation),
+			                            e.getPoint()));
+		}
+		else
+		{
+			int delta = (int) Math.round(-rotation * PAN_STEP);
+			if (e.isShiftDown())
+				panBy(delta, 0);
+			else
+				panBy(0, delta);
+		}
+		e.consume();
+	}
+
+	/**
+	 * Transmission des évènements souris aux listeners en coordonnées du
+	 * dessin
+	 * @param e l'évènement souris (en coordonnées du panel)
+	 * @see java.awt.Component#processMouseEvent(java.awt.event.MouseEvent)
+	 */
+	@Override
+	protected void processMouseEvent(MouseEvent e)
+	{
+		MouseEvent de = toDrawing(e);
+		super.processMouseEvent(de);
+		if (de.isConsumed())
+			e.consume();
+	}
+
+	/**
+	 * Transmission des évènements de déplacement de la souris aux listeners
+	 * en coordonnées du dessin
+	 * @param e l'évènement souris (en coordonnées du panel)
+	 * @see java.awt.Component#processMouseMotionEvent(java.awt.event.MouseEvent)
+	 */
+	@Override
+	protected void processMouseMotionEvent(MouseEvent e)
+	{
+		MouseEvent de = toDrawing(e);
+		super.processMouseMotionEvent(de);
+		if (de.isConsumed())
+			e.consume();
+	}
+
+	/**
+	 * Conversion d'un évènement souris en coordonnées du dessin : les
+	 * coordonnées entières de l'évènement obtenu sont celles du dessin
+	 * tronquées et sa position exacte est fournie par
+	 * {@link DrawingMouseEvent#getDrawingPoint()}, de sorte que le zoom
+	 * apporte une précision supplémentaire aux listeners
+	 * @param e l'évènement souris (en coordonnées du panel)
+	 * @return l'évènement correspondant en coordonnées du dessin
+	 */
+	private MouseEvent toDrawing(MouseEvent e)
+	{
+		return new DrawingMouseEvent(this, e, viewport.toDrawing(e.getPoint()));
+	}
+
+	/**
+	 * Position exacte dans le dessin d'un évènement souris transmis aux
+	 * listeners du panel
+	 * @param e l'évènement souris (en coordonnées du dessin)
+	 * @return la position non arrondie de l'évènement dans le dessin
+	 */
+	private static Point2D drawingPoint(MouseEvent e)
+	{
+		if (e instanceof DrawingMouseEvent)
+			return ((DrawingMouseEvent) e).getDrawingPoint();
+
+		return e.getPoint();
+	}
+
 	/**
 	 * Reprise du rafraichissement des panneaux d'information lorsque la souris
 	 * rentre dans ce panel.
@@ -363,7 +1380,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		 */
 		sendInfoState = true;
 		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		refreshInfoPanel(drawingPoint(e));
 	}
 
 	/**
@@ -428,17 +1445,23 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		/*
 		 *  Si on est dans l'état où l'on met à jour les infos
 		 * 	On recherche la dernière figure sous le curseur
-		 * 	Si on a trouvé une figure 
-		 * 		met à jour l'info panel avec les infos de la figure
-		 * 	Sinon
-		 * 		On remet l'infoPanel à ses valeurs par défaut
+		 * 	Si la figure ou sa géométrie ont changé depuis le dernier appel
+		 * 		Si on a trouvé une figure 
+		 * 			met à jour l'info panel avec les infos de la figure
+		 * 		Sinon
+		 * 			On remet l'infoPanel à ses valeurs par défaut
 		 */
 		if (sendInfoState) {
-			Figure f = drawingModel.getFigureAt(p);
-			if (f != null)
-				infoPanel.updateLabels(f);
-			else
-				infoPanel.resetLabels();
+			if (hoverTracker.update(drawingModel, p)) {
+				Figure f = hoverTracker.getFigure();
+				if (f != null)
+					infoPanel.updateLabels(f);
+				else
+					infoPanel.resetLabels();
+			}
+		}
+		else {
+			hoverTracker.reset();
 		}
 		// this.infoPanel((Point2d) to Point()) point2d to point()
 	}
@@ -29,6 +29,7 @@ import javax.swing.event.ChangeListener;
 import figures.Drawing;
 import figures.creationListeners.AbstractCreationListener;
 import figures.creationListeners.MoveShapeListener;
+import figures.creationListeners.RubberBandSelectionListener;
 import figures.enums.FigureType;
 import figures.enums.LineType;
 import figures.enums.PaintToType;
@@ -42,12 +43,14 @@ import javax.swing.JMenuBar;
 import javax.swing.JToolBar;
 import java.awt.BorderLayout;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import java.awt.event.ActionListener;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.SwingConstants;
 import java.awt.Panel;
@@ -235,11 +238,31 @@ public class EditorFrame extends JFrame
 	 */
 	private final Action moveAction = new MoveAction();
 
+	/**
+	 * Action déclenchée lorsque l'on clique sur le bouton select
+	 */
+	private final Action selectAction = new SelectAction();
+
 	/**
 	 * Action déclenchée lorsque l'on clique sur le bouton about ou sur l'item
 	 * de menu about
 	 */
 	private final Action aboutAction = new AboutAction();
+
+	/**
+	 * Action déclenchée lorsque l'on clique sur l'item de menu zoom in
+	 */
+	private final Action zoomInAction = new ZoomAction(1);
+
+	/**
+	 * Action déclenchée lorsque l'on clique sur l'item de menu zoom out
+	 */
+	private final Action zoomOutAction = new ZoomAction(-1);
+
+	/**
+	 * Action déclenchée lorsque l'on clique sur l'item de menu reset view
+	 */
+	private final Action resetViewAction = new ZoomAction(0);
 	
 	/**
 	 * Action déclenchée lorsque l'on clique sur l'item de menu de filtrage
@@ -346,6 +369,7 @@ public class EditorFrame extends JFrame
 		JButton undoButton = new JButton("Undo");
 		JButton clearButton = new JButton("Clear");		
 		JButton moveButton = new JButton("Move");		
+		JButton selectButton = new JButton("Select");
 		JButton aboutButton = new JButton("About");		
 		JButton quitButton = new JButton("Quit");
 		quitButton.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -353,12 +377,14 @@ public class EditorFrame extends JFrame
 		undoButton.setAction(undoAction);
 		clearButton.setAction(clearAction);
 		moveButton.setAction(moveAction);
+		selectButton.setAction(selectAction);
 		aboutButton.setAction(aboutAction);
 		quitButton.setAction(quitAction);
 		
 		toolBar.add(undoButton);		
 		toolBar.add(clearButton);		
 		toolBar.add(moveButton);		
+		toolBar.add(selectButton);
 		toolBar.add(aboutButton);		
 		toolBar.add(quitButton);
 		
@@ -417,6 +443,11 @@ public class EditorFrame extends JFrame
 		// --------------------------------------------------------------------
 		//infoPanel.setPreferredSize(new Dimension(170, 130));
 		panel_1.add(infoPanel);
+
+		// Vue d'ensemble du dessin sous le panneau d'information
+		JPanel panel_2 = new JPanel();
+		panel.add(panel_2);
+		panel_2.add(new Minimap(drawingModel, drawingPanel));
 		
 		
 		// --------------------------------------------------------------------
@@ -530,6 +561,111 @@ public class EditorFrame extends JFrame
 		chckbxmntmDashed.setAction(dashedLineFilterAction);
 		mnStrokes.add(chckbxmntmDashed);
 		
+		JMenu mnView = new JMenu("View");
+		menuBar.add(mnView);
+
+		JMenuItem mntmZoomIn = new JMenuItem("Zoom In");
+		mntmZoomIn.setAction(zoomInAction);
+		mnView.add(mntmZoomIn);
+
+		JMenuItem mntmZoomOut = new JMenuItem("Zoom Out");
+		mntmZoomOut.setAction(zoomOutAction);
+		mnView.add(mntmZoomOut);
+
+		JMenuItem mntmResetView = new JMenuItem("Reset View");
+		mntmResetView.setAction(resetViewAction);
+		mnView.add(mntmResetView);
+		mnView.addSeparator();
+
+		JCheckBoxMenuItem chckbxmntmPicking = new JCheckBoxMenuItem("Picking Buffer");
+		chckbxmntmPicking.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setPicking(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmPicking);
+
+		JCheckBoxMenuItem chckbxmntmSnap = new JCheckBoxMenuItem("Snap to Objects");
+		chckbxmntmSnap.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingModel.setSnapping(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmSnap);
+
+		JCheckBoxMenuItem chckbxmntmAdaptive = new JCheckBoxMenuItem("Adaptive Quality");
+		chckbxmntmAdaptive.setSelected(drawingPanel.isAdaptiveQuality());
+		chckbxmntmAdaptive.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setAdaptiveQuality(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmAdaptive);
+
+		JCheckBoxMenuItem chckbxmntmBatching = new JCheckBoxMenuItem("Batched Drawing");
+		chckbxmntmBatching.setSelected(drawingPanel.isBatching());
+		chckbxmntmBatching.setEnabled(drawingPanel.getRenderMode().appliesDrawingOptions());
+		chckbxmntmBatching.setToolTipText("Direct and Layered rendering only");
+		chckbxmntmBatching.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setBatching(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmBatching);
+
+		JCheckBoxMenuItem chckbxmntmDetail = new JCheckBoxMenuItem("Level of Detail");
+		chckbxmntmDetail.setSelected(drawingPanel.isLevelOfDetail());
+		chckbxmntmDetail.setEnabled(drawingPanel.getRenderMode().appliesDrawingOptions());
+		chckbxmntmDetail.setToolTipText("Direct and Layered rendering only");
+		chckbxmntmDetail.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setLevelOfDetail(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmDetail);
+
+		JCheckBoxMenuItem chckbxmntmOcclusion = new JCheckBoxMenuItem("Occlusion Culling");
+		chckbxmntmOcclusion.setSelected(drawingPanel.isOcclusionCulling());
+		chckbxmntmOcclusion.setEnabled(drawingPanel.getRenderMode().appliesDrawingOptions());
+		chckbxmntmOcclusion.setToolTipText("Direct and Layered rendering only");
+		chckbxmntmOcclusion.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setOcclusionCulling(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmOcclusion);
+
+		JCheckBoxMenuItem chckbxmntmAccelerated = new JCheckBoxMenuItem("Accelerated Layers");
+		chckbxmntmAccelerated.setSelected(drawingPanel.isAcceleratedLayers());
+		chckbxmntmAccelerated.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				drawingPanel.setAcceleratedLayers(e.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		mnView.add(chckbxmntmAccelerated);
+
+		JMenu mnRendering = new JMenu("Rendering");
+		mnView.add(mnRendering);
+		ButtonGroup renderingGroup = new ButtonGroup();
+		for (RenderMode mode : RenderMode.values())
+		{
+			JRadioButtonMenuItem rdbtnmntmMode = new JRadioButtonMenuItem(mode.toString());
+			rdbtnmntmMode.setSelected(mode == drawingPanel.getRenderMode());
+			rdbtnmntmMode.addItemListener(new ItemListener() {
+				public void itemStateChanged(ItemEvent e) {
+					if (e.getStateChange() == ItemEvent.SELECTED)
+					{
+						drawingPanel.setRenderMode(mode);
+						chckbxmntmBatching.setEnabled(mode.appliesDrawingOptions());
+						chckbxmntmDetail.setEnabled(mode.appliesDrawingOptions());
+						chckbxmntmOcclusion.setEnabled(mode.appliesDrawingOptions());
+					}
+				}
+			});
+			renderingGroup.add(rdbtnmntmMode);
+			mnRendering.add(rdbtnmntmMode);
+		}
+
 		JMenu mnHelp = new JMenu("Help");
 		menuBar.add(mnHelp);
 		
@@ -714,6 +850,7 @@ public class EditorFrame extends JFrame
 			
 			boolean movemode = !drawingModel.isMoveMode();
 			drawingModel.setMoveMode(movemode);
+			drawingModel.setSelectMode(false);
 			
 			drawingPanel.removeCreationListener(creationListener);
 			
@@ -730,6 +867,54 @@ public class EditorFrame extends JFrame
 		}
 	}
 
+	/**
+	 * Action réalisée pour sélectionner des figures avec un rectangle
+	 * élastique
+	 */
+	private class SelectAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour sélectionner des figures.
+		 * Met en place le nom et la description de l'action
+		 */
+		public SelectAction()
+		{
+			putValue(NAME, "Select");
+			putValue(SHORT_DESCRIPTION, "Select figures");
+		}
+
+		/**
+		 * Opérations réalisées par l'action
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 *            ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			/*
+			 * Action à effectuer lorsque l'action "select" est cliquée :
+			 * Activer/Désactiver le mode de sélection
+			 */
+			boolean selectmode = !drawingModel.isSelectMode();
+			drawingModel.setSelectMode(selectmode);
+			drawingModel.setMoveMode(false);
+
+			drawingPanel.removeCreationListener(creationListener);
+
+			if (selectmode) {
+				creationListener = new RubberBandSelectionListener(drawingModel, infoLabel);
+				drawingPanel.addCreationListener(creationListener);
+			}
+			else {
+				drawingModel.clearSelection();
+				creationListener = drawingModel.getType().getCreationListener(drawingModel, infoLabel);
+				drawingPanel.addCreationListener(creationListener);
+			}
+
+			drawingPanel.repaint();
+		}
+	}
+
 	/**
 	 * Action réalisée pour afficher la boite de dialogue "A propos ..."
 	 */
@@ -943,6 +1128,69 @@ public class EditorFrame extends JFrame
 		}
 	}
 
+	/**
+	 * Action réalisée pour zoomer, dézoomer ou revenir à la vue initiale du
+	 * dessin
+	 */
+	private class ZoomAction extends AbstractAction
+	{
+		/**
+		 * Sens du zoom : positif pour agrandir, négatif pour réduire et nul
+		 * pour revenir à la vue initiale
+		 */
+		private int direction;
+
+		/**
+		 * Constructeur de l'action de zoom.
+		 * Met en place le nom, le raccourci clavier et la description de
+		 * l'action
+		 * @param direction positif pour agrandir, négatif pour réduire et
+		 * nul pour revenir à la vue initiale
+		 */
+		public ZoomAction(int direction)
+		{
+			this.direction = direction;
+			int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+			if (direction > 0)
+			{
+				putValue(NAME, "Zoom In");
+				putValue(ACCELERATOR_KEY,
+				         KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, mask));
+				putValue(SHORT_DESCRIPTION, "Zoom in the drawing");
+			}
+			else if (direction < 0)
+			{
+				putValue(NAME, "Zoom Out");
+				putValue(ACCELERATOR_KEY,
+				         KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, mask));
+				putValue(SHORT_DESCRIPTION, "Zoom out the drawing");
+			}
+			else
+			{
+				putValue(NAME, "Reset View");
+				putValue(ACCELERATOR_KEY,
+				         KeyStroke.getKeyStroke(KeyEvent.VK_0, mask));
+				putValue(SHORT_DESCRIPTION, "Unzoomed drawing at its origin");
+			}
+		}
+
+		/**
+		 * Opérations réalisées par l'action
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 *            ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			if (direction > 0)
+				drawingPanel.zoomIn();
+			else if (direction < 0)
+				drawingPanel.zoomOut();
+			else
+				drawingPanel.resetView();
+		}
+	}
+
 	/**
 	 * Contrôleur d'évènement permettant de modifier le type de figures à
 	 * dessiner.
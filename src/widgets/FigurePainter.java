@@ -0,0 +1,160 @@
+package widgets;
+
+import java.awt.Graphics2D;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import figures.BatchRenderer;
+import figures.Drawing;
+import figures.Figure;
+import figures.LevelOfDetail;
+import figures.OcclusionCuller;
+
+/**
+ * Dessin d'une liste de figures selon les options de dessin d'un
+ * {@link DrawingPanel} (élimination des figures cachées, niveau de détail,
+ * dessin par lots). Partagé par le dessin direct des
+ * figures et par le rendu des images du {@link LayerCache} afin que les
+ * options s'appliquent de la même manière dans les modes
+ * {@link RenderMode#DIRECT} et {@link RenderMode#LAYERED}.
+ *
+ * @author davidroussel
+ */
+class FigurePainter
+{
+	/**
+	 * Le renderer dessinant par lots les figures de même style (ou null
+	 * pour dessiner les figures une à une)
+	 */
+	private BatchRenderer batchRenderer;
+
+	/**
+	 * Le niveau de détail appliqué aux petites figures et aux grands
+	 * polygones (ou null pour dessiner toutes les figures en détail). Il est
+	 * prioritaire sur le dessin par lots.
+	 */
+	private LevelOfDetail levelOfDetail;
+
+	/**
+	 * L'élimination des figures cachées par des figures opaques (ou null
+	 * pour dessiner toutes les figures)
+	 */
+	private OcclusionCuller occlusionCuller;
+
+	/**
+	 * Constructeur d'un dessin de figures sans option
+	 */
+	public FigurePainter()
+	{
+		batchRenderer = null;
+		levelOfDetail = null;
+		occlusionCuller = null;
+	}
+
+	/**
+	 * (Dés)activation du dessin par lots (cf. {@link BatchRenderer})
+	 * @param batching true pour dessiner les figures par lots
+	 */
+	public void setBatching(boolean batching)
+	{
+		if (batching != isBatching())
+			batchRenderer = (batching ? new BatchRenderer() : null);
+	}
+
+	/**
+	 * Teste si les figures sont dessinées par lots
+	 * @return true si les figures sont dessinées par lots
+	 */
+	public boolean isBatching()
+	{
+		return batchRenderer != null;
+	}
+
+	/**
+	 * (Dés)activation du niveau de détail (cf. {@link LevelOfDetail})
+	 * @param enabled true pour dessiner les figures selon leur taille à
+	 * l'écran
+	 */
+	public void setLevelOfDetail(boolean enabled)
+	{
+		if (enabled != isLevelOfDetail())
+			levelOfDetail = (enabled ? new LevelOfDetail() : null);
+	}
+
+	/**
+	 * Teste si les figures sont dessinées selon leur taille à l'écran
+	 * @return true si le niveau de détail est appliqué
+	 */
+	public boolean isLevelOfDetail()
+	{
+		return levelOfDetail != null;
+	}
+
+	/**
+	 * Accesseur du niveau de détail
+	 * @return le niveau de détail appliqué (ou null s'il est désactivé)
+	 */
+	public LevelOfDetail getLevelOfDetail()
+	{
+		return levelOfDetail;
+	}
+
+	/**
+	 * (Dés)activation de l'élimination des figures cachées (cf.
+	 * {@link OcclusionCuller})
+	 * @param enabled true pour éliminer les figures cachées
+	 */
+	public void setOcclusionCulling(boolean enabled)
+	{
+		if (enabled != isOcclusionCulling())
+			occlusionCuller = (enabled ? new OcclusionCuller() : null);
+	}
+
+	/**
+	 * Teste si les figures cachées sont éliminées
+	 * @return true si les figures cachées ne sont pas dessinées
+	 */
+	public boolean isOcclusionCulling()
+	{
+		return occlusionCuller != null;
+	}
+
+	/**
+	 * Dessin des figures (filtrées par le dessin) d'une liste
+	 * @param g2D le contexte graphique (en coordonnées du dessin)
+	 * @param drawing le dessin dont les filtres sont appliqués aux figures
+	 * @param figures les figures à dessiner dans l'ordre d'empilement
+	 * @return le nombre de figures non dessinées car cachées par des figures
+	 * opaques situées devant elles
+	 */
+	public int draw(Graphics2D g2D, Drawing drawing, List<Figure> figures)
+	{
+		/*
+		 * Seules les figures (filtrées) qui ne sont pas entièrement
+		 * cachées par des figures opaques situées devant elles sont
+		 * dessinées
+		 */
+		int occluded = 0;
+		if (occlusionCuller != null)
+		{
+			figures = occlusionCuller.cull(g2D.getTransform(),
+				drawing.stream(figures).collect(Collectors.toList()));
+			occluded = occlusionCuller.getOccludedCount();
+		}
+
+		/*
+		 * Application d'un Consumer<Figure> en tant que lambda 
+		 * expression sur le flux (éventuellement filtré) : pour chaque 
+		 * figure du flux il faut la dessiner (avec sa méthode draw) selon sa
+		 * taille à l'écran, ou bien dessin par lots des figures de même style
+		 */
+		if (levelOfDetail != null)
+			drawing.stream(figures).forEach(f -> levelOfDetail.draw(g2D, f));
+		else if (batchRenderer != null)
+			batchRenderer.draw(g2D, drawing.stream(figures)::iterator);
+		else
+			drawing.stream(figures).forEach(f -> f.draw(g2D));
+
+		return occluded;
+	}
+}
@@ -0,0 +1,127 @@
+package widgets;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Suivi de la figure située sous le curseur exploitant la cohérence
+ * temporelle des évènements souris : deux évènements consécutifs tombent
+ * le plus souvent sur la même figure. Tant que le modèle n'a pas changé
+ * (cf. {@link Drawing#getVersion()}), que le curseur reste dans la figure
+ * précédemment trouvée et qu'aucune autre figure ne la recouvre, cette
+ * figure est réutilisée sans interroger le modèle.
+ *
+ * @author davidroussel
+ */
+class HoverTracker
+{
+	/**
+	 * La dernière figure trouvée sous le curseur (ou null)
+	 */
+	private Figure figure;
+
+	/**
+	 * Le rectangle englobant de {@link #figure} lorsqu'elle a été trouvée.
+	 * Permet de détecter un changement de géométrie de la figure.
+	 */
+	private Rectangle2D bounds;
+
+	/**
+	 * Version du modèle lors de la dernière recherche
+	 */
+	private long version;
+
+	/**
+	 * Indique qu'aucune figure ne recouvre le rectangle englobant de
+	 * {@link #figure} : tant que le curseur reste dans celle-ci, elle est
+	 * forcément la figure la plus haute sous le curseur.
+	 */
+	private boolean uncovered;
+
+	/**
+	 * Indique si l'état mémorisé est significatif (false après
+	 * {@link #reset()})
+	 */
+	private boolean valid;
+
+	/**
+	 * Constructeur d'un suivi vierge
+	 */
+	public HoverTracker()
+	{
+		reset();
+	}
+
+	/**
+	 * Oubli de la figure mémorisée. La prochaine mise à jour sera considérée
+	 * comme un changement.
+	 */
+	public void reset()
+	{
+		figure = null;
+		bounds = null;
+		version = -1;
+		uncovered = false;
+		valid = false;
+	}
+
+	/**
+	 * Accesseur de la figure actuellement sous le curseur
+	 * @return la figure sous le curseur lors de la dernière mise à jour ou
+	 * bien null s'il n'y en avait pas
+	 */
+	public Figure getFigure()
+	{
+		return figure;
+	}
+
+	/**
+	 * Mise à jour de la figure sous le curseur
+	 * @param drawing le modèle de dessin
+	 * @param p la position du curseur (ou null si le curseur est hors de la
+	 * zone de dessin)
+	 * @return true si la figure sous le curseur ou bien sa géométrie ont
+	 * changé depuis la dernière mise à jour, false si les informations
+	 * affichées à son propos sont toujours valables
+	 */
+	public boolean update(Drawing drawing, Point2D p)
+	{
+		long currentVersion = (drawing != null ? drawing.getVersion() : -1);
+		Figure hit;
+
+		if ((p == null) || (drawing == null))
+		{
+			hit = null;
+		}
+		else if ((currentVersion == version) && (figure != null) &&
+		         uncovered &&
+		         figure.contains(p, drawing.getHitDistance()))
+		{
+			// Le curseur n'a pas quitté la figure précédente
+			return false;
+		}
+		else
+		{
+			hit = drawing.getFigureAt(p);
+		}
+
+		Rectangle2D hitBounds = (hit != null ? hit.getBounds2D() : null);
+		boolean changed = !valid || (hit != figure) ||
+			((hit != null) && !hitBounds.equals(bounds));
+
+		if ((hit != null) && (changed || (currentVersion != version)))
+		{
+			uncovered = !drawing.hasFigureAbove(hit);
+		}
+
+		figure = hit;
+		bounds = hitBounds;
+		version = currentVersion;
+		valid = true;
+
+		return changed;
+	}
+}
@@ -0,0 +1,529 @@
+package widgets;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Mémorisation du rendu des figures d'un dessin dans deux images hors écran
+ * séparées par la figure active du dessin (cf.
+ * {@link Drawing#getActiveFigure()}) : l'image du dessous contient le fond et
+ * les figures situées sous la figure active, l'image du dessus (transparente)
+ * les figures situées au dessus d'elle. Tant que seule la figure active
+ * change, le dessin du panel se résume à la composition de ces deux images
+ * avec la figure active.
+ * Les images sont redessinées par régions lorsque le modèle signale d'autres
+ * modifications ainsi que lorsque la figure active change, et entièrement
+ * lorsque la vue (zoom et défilement, cf. {@link Viewport}) change.
+ * Les images peuvent être des {@link VolatileImage} (en mémoire vidéo) si
+ * l'accélération est demandée et disponible pour le périphérique du
+ * contexte graphique, des {@link BufferedImage} sinon. Les images
+ * accélérées dont le contenu est perdu (changement de mode d'affichage par
+ * exemple) sont entièrement redessinées, et les {@link BufferedImage} sont
+ * utilisées définitivement si le contenu est perdu à chaque composition.
+ *
+ * @author davidroussel
+ */
+class LayerCache
+{
+	/**
+	 * Le modèle de dessin dont on mémorise le rendu
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Le dessin des figures selon les options de dessin du panel
+	 */
+	private final FigurePainter painter;
+
+	/**
+	 * Image contenant le fond et les figures situées sous la figure active
+	 * (ou toutes les figures s'il n'y a pas de figure active)
+	 */
+	private Image below;
+
+	/**
+	 * Image transparente contenant les figures situées au dessus de la
+	 * figure active
+	 */
+	private Image above;
+
+	/**
+	 * Nombre maximum de compositions successives dont le contenu des images
+	 * accélérées est perdu avant de revenir aux {@link BufferedImage}
+	 */
+	private static final int MAX_RESTORE_ATTEMPTS = 3;
+
+	/**
+	 * Indique si les images doivent être allouées en mémoire vidéo
+	 */
+	private boolean accelerated;
+
+	/**
+	 * Indique si l'accélération demandée s'est avérée indisponible (les
+	 * images sont alors des {@link BufferedImage})
+	 */
+	private boolean unavailable;
+
+	/**
+	 * Facteur d'échelle entre les coordonnées du panel et les pixels des
+	 * images (supérieur à 1 sur les écrans haute résolution)
+	 */
+	private double scale;
+
+	/**
+	 * La vue du dessin dans le panel lors du dernier rendu des images
+	 */
+	private Viewport viewport;
+
+	/**
+	 * La figure active exclue des images lors de leur dernier rendu
+	 */
+	private Figure active;
+
+	/**
+	 * Les régions (en coordonnées du panel) à redessiner avant la
+	 * prochaine composition
+	 */
+	private DirtyRegions dirtyRegions;
+
+	/**
+	 * Nombre de figures ignorées lors du dernier rafraichissement des images
+	 * car situées hors des régions redessinées ou cachées
+	 * @see #getCulledCount()
+	 */
+	private int culledCount;
+
+	/**
+	 * Constructeur d'un cache de rendu vide
+	 * @param drawing le modèle de dessin dont on mémorise le rendu
+	 * @param painter le dessin des figures selon les options de dessin du
+	 * panel
+	 */
+	public LayerCache(Drawing drawing, FigurePainter painter)
+	{
+		this.drawing = drawing;
+		this.painter = painter;
+		below = null;
+		above = null;
+		accelerated = false;
+		unavailable = false;
+		scale = 1.0;
+		viewport = Viewport.IDENTITY;
+		active = null;
+		dirtyRegions = new DirtyRegions();
+		culledCount = 0;
+	}
+
+	/**
+	 * Invalidation d'une région des images
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour invalider entièrement les images
+	 * @param margin la marge (en pixels) à ajouter autour de la région
+	 */
+	public void invalidate(Rectangle2D region, int margin)
+	{
+		dirtyRegions.add(viewport.toPanel(region), margin);
+	}
+
+	/**
+	 * Changement de la vue du dessin dans le panel : les images sont
+	 * entièrement invalidées si elle change
+	 * @param view la nouvelle vue
+	 */
+	public void setViewport(Viewport view)
+	{
+		if (!view.equals(viewport))
+		{
+			viewport = view;
+			dirtyRegions.add(null, 0);
+		}
+	}
+
+	/**
+	 * Demande d'allocation des images en mémoire vidéo (prise en compte lors
+	 * de la prochaine composition)
+	 * @param accelerated true pour utiliser des {@link VolatileImage} si
+	 * elles sont accélérées, false pour utiliser des {@link BufferedImage}
+	 */
+	public void setAccelerated(boolean accelerated)
+	{
+		this.accelerated = accelerated;
+		unavailable = false;
+	}
+
+	/**
+	 * Teste si les images utilisées lors de la dernière composition sont en
+	 * mémoire vidéo
+	 * @return true si les images sont des {@link VolatileImage} accélérées
+	 */
+	public boolean isAccelerated()
+	{
+		return below instanceof VolatileImage;
+	}
+
+	/**
+	 * Nombre de figures ignorées lors du dernier rafraichissement des images
+	 * @return le nombre de figures du dessin (hors figure active) qui
+	 * n'intersectaient aucune des régions redessinées lors de la dernière
+	 * composition ayant redessiné une partie des images, ou qui y étaient
+	 * cachées par des figures opaques (cf.
+	 * {@link FigurePainter#setOcclusionCulling(boolean)}). Une figure cachée
+	 * dans plusieurs régions est comptée pour chacune d'elles.
+	 */
+	public int getCulledCount()
+	{
+		return culledCount;
+	}
+
+	/**
+	 * Dessin du panel par composition des images mémorisées (mises à jour si
+	 * nécessaire) et de la figure active
+	 * @param g2D le contexte graphique du panel
+	 * @param width la largeur du panel
+	 * @param height la hauteur du panel
+	 * @param background la couleur de fond du panel
+	 * @param margin la marge (en pixels) à ajouter autour des régions
+	 * redessinées lorsque la figure active change
+	 * @return true si le dessin a pu être effectué à partir des images,
+	 * false si le contexte graphique ne s'y prête pas (rotation par
+	 * exemple) auquel cas il faut dessiner les figures directement
+	 */
+	public boolean paint(Graphics2D g2D, int width, int height,
+	                     Color background, int margin)
+	{
+		AffineTransform t = g2D.getTransform();
+		if ((t.getShearX() != 0.0) || (t.getShearY() != 0.0) ||
+		    (t.getScaleX() <= 0.0) || (t.getScaleX() != t.getScaleY()))
+			return false;
+
+		GraphicsConfiguration gc = g2D.getDeviceConfiguration();
+		validate(gc, width, height, t.getScaleX());
+
+		Figure current = drawing.getActiveFigure();
+		if (current != active)
+		{
+			activeChanged(current, margin);
+		}
+
+		// Le contenu des images accélérées peut être perdu pendant leur
+		// mise à jour ou leur composition : il faut alors recommencer
+		for (int attempt = 1; ; attempt++)
+		{
+			refresh(background);
+			compose(g2D, width, height);
+			if (!contentsLost())
+				break;
+
+			if (attempt == MAX_RESTORE_ATTEMPTS)
+				unavailable = true;
+			validate(gc, width, height, t.getScaleX());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Composition des images et de la figure active
+	 * @param g2D le contexte graphique du panel
+	 * @param width la largeur du panel
+	 * @param height la hauteur du panel
+	 */
+	private void compose(Graphics2D g2D, int width, int height)
+	{
+		g2D.drawImage(below, 0, 0, width, height, null);
+		if (active != null)
+		{
+			Graphics2D g = (Graphics2D) g2D.create();
+			viewport.apply(g);
+			drawing.stream(Collections.singletonList(active))
+				.forEach(f -> f.draw(g));
+			g.dispose();
+			g2D.drawImage(above, 0, 0, width, height, null);
+		}
+	}
+
+	/**
+	 * Teste si le contenu des images accélérées a été perdu depuis leur
+	 * dernière validation
+	 * @return true si l'une des images est une {@link VolatileImage} dont
+	 * le contenu a été perdu
+	 */
+	private boolean contentsLost()
+	{
+		return (below instanceof VolatileImage) &&
+			(((VolatileImage) below).contentsLost() ||
+			 ((VolatileImage) above).contentsLost());
+	}
+
+	/**
+	 * Prise en compte d'un changement de figure active. Lorsque la figure
+	 * active est (ou était) la plus haute figure du dessin (cas de la
+	 * création d'une figure), seule la région qu'elle occupe change d'image.
+	 * Sinon, toutes les figures situées au dessus d'elle changent d'image :
+	 * les deux images doivent être entièrement redessinées.
+	 * @param current la nouvelle figure active
+	 * @param margin la marge (en pixels) à ajouter autour des régions
+	 * redessinées
+	 */
+	private void activeChanged(Figure current, int margin)
+	{
+		Figure top = drawing.getLastFigure();
+		if ((active == null) && (current == top))
+		{
+			// Aucune figure au dessus de la nouvelle figure active
+			clear(above);
+			dirtyRegions.add(viewport.toPanel(current.getStrokedBounds2D()),
+			                 margin);
+		}
+		else if ((current == null) && (active == top))
+		{
+			// L'ancienne figure active rejoint l'image du dessous
+			dirtyRegions.add(viewport.toPanel(active.getStrokedBounds2D()),
+			                 margin);
+		}
+		else
+		{
+			dirtyRegions.add(null, 0);
+		}
+		active = current;
+	}
+
+	/**
+	 * Effacement complet d'une image transparente
+	 * @param image l'image à effacer
+	 */
+	private static void clear(Image image)
+	{
+		Graphics2D g = (Graphics2D) image.getGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, image.getWidth(null), image.getHeight(null));
+		g.dispose();
+	}
+
+	/**
+	 * (Ré)allocation des images si la taille du panel, le facteur d'échelle
+	 * ou le type d'images requis ont changé, ou si les images accélérées ne
+	 * sont plus compatibles avec le périphérique. Les images sont
+	 * entièrement invalidées si elles sont réallouées ou si le contenu des
+	 * images accélérées a été perdu.
+	 * @param gc la configuration du périphérique du contexte graphique
+	 * @param width la largeur du panel
+	 * @param height la hauteur du panel
+	 * @param newScale le facteur d'échelle du contexte graphique
+	 */
+	private void validate(GraphicsConfiguration gc, int width, int height,
+	                      double newScale)
+	{
+		int w = Math.max(1, (int) Math.ceil(width * newScale));
+		int h = Math.max(1, (int) Math.ceil(height * newScale));
+		boolean wanted = accelerated && !unavailable;
+		if ((below == null) || (below.getWidth(null) != w) ||
+		    (below.getHeight(null) != h) || (scale != newScale) ||
+		    (isAccelerated() != wanted))
+		{
+			allocate(gc, w, h, wanted);
+			scale = newScale;
+			dirtyRegions.add(null, 0);
+		}
+		else if (isAccelerated())
+		{
+			int belowStatus = ((VolatileImage) below).validate(gc);
+			int aboveStatus = ((VolatileImage) above).validate(gc);
+			if ((belowStatus == VolatileImage.IMAGE_INCOMPATIBLE) ||
+			    (aboveStatus == VolatileImage.IMAGE_INCOMPATIBLE))
+			{
+				allocate(gc, w, h, wanted);
+				dirtyRegions.add(null, 0);
+			}
+			else if ((belowStatus == VolatileImage.IMAGE_RESTORED) ||
+			         (aboveStatus == VolatileImage.IMAGE_RESTORED))
+			{
+				dirtyRegions.add(null, 0);
+			}
+		}
+	}
+
+	/**
+	 * Allocation des images, en mémoire vidéo si c'est demandé et possible
+	 * @param gc la configuration du périphérique du contexte graphique
+	 * @param w la largeur des images (en pixels)
+	 * @param h la hauteur des images (en pixels)
+	 * @param volatileImages true pour tenter d'allouer des
+	 * {@link VolatileImage}
+	 */
+	private void allocate(GraphicsConfiguration gc, int w, int h,
+	                      boolean volatileImages)
+	{
+		if (below != null)
+			below.flush();
+		if (above != null)
+			above.flush();
+
+		if (volatileImages && (gc != null))
+		{
+			VolatileImage b = gc.createCompatibleVolatileImage(w, h,
+				Transparency.OPAQUE);
+			VolatileImage a = gc.createCompatibleVolatileImage(w, h,
+				Transparency.TRANSLUCENT);
+			if ((b != null) && (a != null) &&
+			    b.getCapabilities().isAccelerated() &&
+			    a.getCapabilities().isAccelerated())
+			{
+				below = b;
+				above = a;
+				clear(above);
+				return;
+			}
+
+			// Accélération indisponible (affichage sans carte graphique ou
+			// mode headless par exemple)
+			if (b != null)
+				b.flush();
+			if (a != null)
+				a.flush();
+			unavailable = true;
+		}
+
+		below = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		above = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	/**
+	 * Dessin des régions modifiées depuis la dernière composition et mise à
+	 * jour du nombre de figures ignorées ({@link #culledCount})
+	 * @param background la couleur de fond
+	 */
+	private void refresh(Color background)
+	{
+		if (dirtyRegions.isEmpty())
+			return;
+
+		// Figures touchant les régions redessinées et figures cachées
+		int touched;
+		int occluded = 0;
+		if (dirtyRegions.isFull() || (dirtyRegions.getRegions().size() == 1))
+		{
+			Rectangle region = (dirtyRegions.isFull() ? null :
+			                    dirtyRegions.getRegions().get(0));
+			int[] counts = render(region, background, null);
+			touched = counts[0];
+			occluded = counts[1];
+		}
+		else
+		{
+			// Une figure peut toucher plusieurs régions
+			Set<Figure> figures = new HashSet<Figure>();
+			for (Rectangle r : dirtyRegions.getRegions())
+				occluded += render(r, background, figures)[1];
+			touched = figures.size();
+		}
+		dirtyRegions.clear();
+
+		int others = drawing.size() - (active != null ? 1 : 0);
+		culledCount = Math.min(others, Math.max(0, others - touched + occluded));
+	}
+
+	/**
+	 * Dessin d'une région des deux images
+	 * @param region la région à redessiner (en coordonnées du panel) ou
+	 * null pour redessiner entièrement les images
+	 * @param background la couleur de fond
+	 * @param touched l'ensemble auquel ajouter les figures touchant la
+	 * région (ou null)
+	 * @return le nombre de figures (hors figure active) touchant la région
+	 * et le nombre de celles qui étaient cachées
+	 */
+	private int[] render(Rectangle2D region, Color background,
+	                     Set<Figure> touched)
+	{
+		Rectangle pixels = new Rectangle(0, 0, below.getWidth(null),
+		                                 below.getHeight(null));
+		if (region != null)
+		{
+			pixels = pixels.intersection(new Rectangle2D.Double(
+				region.getX() * scale, region.getY() * scale,
+				region.getWidth() * scale, region.getHeight() * scale)
+				.getBounds());
+			if (pixels.isEmpty())
+				return new int[] {0, 0};
+		}
+
+		// Répartition des figures de la région de part et d'autre de la
+		// figure active (les figures sont fournies dans l'ordre d'empilement)
+		Rectangle2D area = new Rectangle2D.Double(pixels.x / scale,
+		                                          pixels.y / scale,
+		                                          pixels.width / scale,
+		                                          pixels.height / scale);
+		List<Figure> lower = new ArrayList<Figure>();
+		List<Figure> upper = new ArrayList<Figure>();
+		for (Figure f : drawing.getFiguresIn(viewport.toDrawing(area)))
+		{
+			if (f == active)
+				continue;
+			if ((active != null) && drawing.isAbove(f, active))
+				upper.add(f);
+			else
+				lower.add(f);
+		}
+		if (touched != null)
+		{
+			touched.addAll(lower);
+			touched.addAll(upper);
+		}
+
+		Graphics2D g = createGraphics(below, pixels);
+		g.setColor(background);
+		g.fill(area);
+		viewport.apply(g);
+		int occluded = painter.draw(g, drawing, lower);
+		g.dispose();
+
+		Graphics2D ga = createGraphics(above, pixels);
+		Composite composite = ga.getComposite();
+		ga.setComposite(AlphaComposite.Clear);
+		ga.fill(area);
+		ga.setComposite(composite);
+		viewport.apply(ga);
+		occluded += painter.draw(ga, drawing, upper);
+		ga.dispose();
+
+		return new int[] {lower.size() + upper.size(), occluded};
+	}
+
+	/**
+	 * Création d'un contexte graphique dessinant en coordonnées du panel
+	 * dans une région d'une image
+	 * @param image l'image dans laquelle dessiner
+	 * @param pixels la région de l'image (en pixels) à laquelle limiter le
+	 * dessin
+	 * @return le contexte graphique (à libérer par l'appelant)
+	 */
+	private Graphics2D createGraphics(Image image, Rectangle pixels)
+	{
+		Graphics2D g = (Graphics2D) image.getGraphics();
+		g.setClip(pixels);
+		g.scale(scale, scale);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                   RenderingHints.VALUE_ANTIALIAS_ON);
+		return g;
+	}
+}
@@ -0,0 +1,331 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Observable;
+import java.util.Observer;
+
+import javax.swing.JPanel;
+import javax.swing.border.LineBorder;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.LevelOfDetail;
+
+/**
+ * Vue d'ensemble d'un dessin affichant l'ensemble des figures ainsi que la
+ * partie du dessin visible dans un {@link DrawingPanel}. Un clic ou un
+ * glissé dans la vue d'ensemble centre la vue du {@link DrawingPanel} sur
+ * le point désigné.
+ * Les figures sont mémorisées dans une image à la taille de la vue
+ * d'ensemble, dessinées avec un {@link LevelOfDetail} : seules les régions
+ * de l'image touchées par les modifications signalées par le modèle sont
+ * redessinées. L'image n'est entièrement redessinée que lorsque la région
+ * du dessin qu'elle couvre (étendue des figures et partie visible, avec une
+ * marge) doit changer ou lorsque la taille de la vue d'ensemble change.
+ *
+ * @author davidroussel
+ */
+public class Minimap extends JPanel implements Observer
+{
+	/**
+	 * Taille par défaut de la vue d'ensemble
+	 */
+	private static final Dimension DEFAULT_SIZE = new Dimension(160, 120);
+
+	/**
+	 * Marge (en proportion de sa taille) ajoutée de chaque côté de la région
+	 * à couvrir afin que l'ajout de figures au bord du dessin ne change pas
+	 * systématiquement la région couverte
+	 */
+	private static final double EXTENT_MARGIN = 0.25;
+
+	/**
+	 * Rapport maximum entre l'aire de la région couverte et celle de la
+	 * région à couvrir au delà duquel la région couverte est réduite
+	 */
+	private static final double MAX_EXTENT_RATIO = 16.0;
+
+	/**
+	 * Couleur du rectangle représentant la partie visible du dessin
+	 */
+	private static final Color VIEW_COLOR = Color.RED;
+
+	/**
+	 * Le modèle de dessin affiché
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Le panel dont on affiche la partie visible et dont on déplace la vue
+	 */
+	private final DrawingPanel drawingPanel;
+
+	/**
+	 * Image mémorisant le dessin des figures (à la taille de la vue
+	 * d'ensemble)
+	 */
+	private BufferedImage raster;
+
+	/**
+	 * Région du dessin couverte par l'image (ou null si elle n'a pas encore
+	 * été déterminée)
+	 */
+	private Rectangle2D extent;
+
+	/**
+	 * Transformation des coordonnées du dessin vers les pixels de l'image
+	 */
+	private AffineTransform toMap;
+
+	/**
+	 * Les régions (en pixels de l'image) à redessiner avant le prochain
+	 * affichage
+	 */
+	private DirtyRegions dirtyRegions;
+
+	/**
+	 * Le niveau de détail avec lequel les figures sont dessinées dans
+	 * l'image
+	 */
+	private LevelOfDetail levelOfDetail;
+
+	/**
+	 * Constructeur d'une vue d'ensemble
+	 * @param drawing le modèle de dessin à afficher
+	 * @param drawingPanel le panel dont on affiche la partie visible et dont
+	 * on déplace la vue
+	 */
+	public Minimap(Drawing drawing, DrawingPanel drawingPanel)
+	{
+		this.drawing = drawing;
+		this.drawingPanel = drawingPanel;
+		raster = null;
+		extent = null;
+		toMap = new AffineTransform();
+		dirtyRegions = new DirtyRegions();
+		levelOfDetail = new LevelOfDetail();
+
+		setPreferredSize(DEFAULT_SIZE);
+		setBorder(new LineBorder(Color.GRAY));
+
+		drawing.addObserver(this);
+		drawingPanel.addPropertyChangeListener(DrawingPanel.VIEW_PROPERTY,
+		                                       e -> repaint());
+		drawingPanel.addComponentListener(new ComponentAdapter()
+		{
+			@Override
+			public void componentResized(ComponentEvent e)
+			{
+				repaint();
+			}
+
+			@Override
+			public void componentMoved(ComponentEvent e)
+			{
+				repaint();
+			}
+		});
+
+		MouseAdapter navigator = new MouseAdapter()
+		{
+			@Override
+			public void mousePressed(MouseEvent e)
+			{
+				navigate(e.getPoint());
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e)
+			{
+				navigate(e.getPoint());
+			}
+		};
+		addMouseListener(navigator);
+		addMouseMotionListener(navigator);
+	}
+
+	/**
+	 * Mise à jour déclenchée par une modification du modèle : seule la
+	 * région modifiée de l'image est à redessiner
+	 * @param observable le modèle de dessin
+	 * @param data la modification effectuée ({@link DrawingChange}) ou null
+	 * pour une modification globale
+	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+	 */
+	@Override
+	public void update(Observable observable, Object data)
+	{
+		Rectangle2D bounds = DrawingChange.boundsOf(data);
+		dirtyRegions.add((bounds != null ?
+		                  toMap.createTransformedShape(bounds).getBounds2D() :
+		                  null),
+		                 1);
+		repaint();
+	}
+
+	/**
+	 * Dessin de la vue d'ensemble : image des figures (mise à jour si
+	 * nécessaire) et rectangle de la partie visible du dessin
+	 * @param g le contexte graphique
+	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+	 */
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		super.paintComponent(g);
+		Graphics2D g2D = (Graphics2D) g;
+
+		Rectangle2D visible = drawingPanel.getVisibleDrawingArea();
+		validateImage(visible);
+		refresh();
+		g2D.drawImage(raster, 0, 0, null);
+
+		Rectangle2D view = toMap.createTransformedShape(visible).getBounds2D();
+		g2D.setColor(VIEW_COLOR);
+		g2D.drawRect((int) Math.floor(view.getX()),
+		             (int) Math.floor(view.getY()),
+		             (int) Math.ceil(view.getWidth()),
+		             (int) Math.ceil(view.getHeight()));
+	}
+
+	/**
+	 * (Ré)allocation de l'image si la taille de la vue d'ensemble a changé
+	 * et détermination de la région couverte si elle ne contient plus
+	 * l'étendue des figures et la partie visible du dessin ou bien si elle
+	 * est devenue trop grande. L'image est alors entièrement invalidée.
+	 * @param visible la partie du dessin visible dans le panel
+	 */
+	private void validateImage(Rectangle2D visible)
+	{
+		int w = Math.max(1, getWidth());
+		int h = Math.max(1, getHeight());
+		boolean changed = false;
+		if ((raster == null) || (raster.getWidth() != w) ||
+		    (raster.getHeight() != h))
+		{
+			raster = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			changed = true;
+		}
+
+		Rectangle2D required = visible.getBounds2D();
+		Rectangle2D bounds = drawing.getBounds();
+		if (bounds != null)
+			required.add(bounds);
+		double requiredArea = Math.max(1.0, required.getWidth()) *
+			Math.max(1.0, required.getHeight());
+		if ((extent == null) || !extent.contains(required) ||
+		    ((extent.getWidth() * extent.getHeight()) >
+		     (MAX_EXTENT_RATIO * requiredArea)))
+		{
+			double mx = Math.max(1.0, required.getWidth()) * EXTENT_MARGIN;
+			double my = Math.max(1.0, required.getHeight()) * EXTENT_MARGIN;
+			extent = new Rectangle2D.Double(required.getX() - mx,
+			                                required.getY() - my,
+			                                required.getWidth() + (2 * mx),
+			                                required.getHeight() + (2 * my));
+			changed = true;
+		}
+
+		if (changed)
+		{
+			// Mise à l'échelle de la région couverte, centrée dans l'image
+			double scale = Math.min(w / extent.getWidth(),
+			                        h / extent.getHeight());
+			toMap = AffineTransform.getTranslateInstance(
+				(w - (extent.getWidth() * scale)) / 2,
+				(h - (extent.getHeight() * scale)) / 2);
+			toMap.scale(scale, scale);
+			toMap.translate(-extent.getX(), -extent.getY());
+			dirtyRegions.add(null, 0);
+		}
+	}
+
+	/**
+	 * Dessin des régions de l'image modifiées depuis le dernier affichage
+	 */
+	private void refresh()
+	{
+		if (dirtyRegions.isEmpty())
+			return;
+
+		if (dirtyRegions.isFull())
+		{
+			render(new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+		}
+		else
+		{
+			for (Rectangle r : dirtyRegions.getRegions())
+				render(r);
+		}
+		dirtyRegions.clear();
+	}
+
+	/**
+	 * Dessin d'une région de l'image
+	 * @param region la région à redessiner (en pixels de l'image)
+	 */
+	private void render(Rectangle region)
+	{
+		Rectangle pixels = region.intersection(
+			new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+		if (pixels.isEmpty())
+			return;
+
+		Graphics2D g = raster.createGraphics();
+		g.setClip(pixels);
+		g.setColor(drawingPanel.getBackground());
+		g.fill(pixels);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                   RenderingHints.VALUE_ANTIALIAS_ON);
+		g.transform(toMap);
+		Rectangle2D area = toDrawing(pixels);
+		drawing.stream(drawing.getFiguresIn(area))
+			.forEach(f -> levelOfDetail.draw(g, f));
+		g.dispose();
+	}
+
+	/**
+	 * Centrage de la vue du panel sur le point du dessin correspondant à un
+	 * point de la vue d'ensemble
+	 * @param p le point de la vue d'ensemble
+	 */
+	private void navigate(Point2D p)
+	{
+		try
+		{
+			drawingPanel.centerOn(toMap.inverseTransform(p, null));
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			// Vue d'ensemble pas encore affichée : rien à faire
+		}
+	}
+
+	/**
+	 * Conversion d'une région de l'image en région du dessin
+	 * @param pixels la région de l'image
+	 * @return la région correspondante du dessin
+	 */
+	private Rectangle2D toDrawing(Rectangle pixels)
+	{
+		double scale = toMap.getScaleX();
+		return new Rectangle2D.Double(
+			(pixels.getX() - toMap.getTranslateX()) / scale,
+			(pixels.getY() - toMap.getTranslateY()) / scale,
+			pixels.getWidth() / scale, pixels.getHeight() / scale);
+	}
+}
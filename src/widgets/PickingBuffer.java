@@ -0,0 +1,347 @@
+package widgets;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.Figure;
+import figures.FigurePicker;
+
+/**
+ * Tampon d'identifiants de figures permettant de trouver la figure située
+ * sous un point par une simple lecture de pixel. Chaque figure est dessinée
+ * (sans antialiasing) dans une image hors écran avec une couleur unique
+ * correspondant à son identifiant : sa forme est remplie et son trait
+ * (élargi de la tolérance de contact du {@link Drawing}) est dessiné.
+ * L'image couvre le panel : les figures y sont dessinées au travers de la
+ * {@link Viewport} courante, de sorte que la partie visible du dessin est
+ * couverte quels que soient le zoom et le déplacement de la vue.
+ * Lorsque le dessin change, seules les régions modifiées sont redessinées,
+ * et ce uniquement lors de la recherche suivante. Les identifiants des
+ * figures retirées du dessin sont libérés puis réattribués.
+ *
+ * @author davidroussel
+ */
+class PickingBuffer implements FigurePicker
+{
+	/**
+	 * Le plus grand identifiant représentable dans un pixel RGB
+	 */
+	private static final int MAX_ID = 0xFFFFFF;
+
+	/**
+	 * Le modèle de dessin dont on identifie les figures
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * L'image contenant les identifiants des figures (0 pour le fond)
+	 */
+	private BufferedImage ids;
+
+	/**
+	 * Table des figures indexée par leur identifiant - 1 (null pour un
+	 * identifiant libéré)
+	 */
+	private List<Figure> figuresById;
+
+	/**
+	 * Couleurs (codant leur identifiant) déjà attribuées aux figures
+	 */
+	private IdentityHashMap<Figure, Color> colorsByFigure;
+
+	/**
+	 * Identifiants libérés par les figures retirées du dessin, à
+	 * réattribuer en priorité
+	 */
+	private Deque<Integer> freeIds;
+
+	/**
+	 * Traits élargis de la tolérance de contact mémorisés pour chaque
+	 * épaisseur de trait des figures
+	 */
+	private Map<Float, BasicStroke> strokes;
+
+	/**
+	 * Tolérance de contact (en coordonnées du dessin) pour laquelle les
+	 * {@link #strokes} ont été calculés
+	 */
+	private double strokesTolerance;
+
+	/**
+	 * Régions de l'image (en coordonnées du panel) à redessiner avant la
+	 * prochaine lecture
+	 */
+	private DirtyRegions dirtyRegions;
+
+	/**
+	 * La vue au travers de laquelle les figures sont dessinées dans l'image
+	 */
+	private Viewport viewport;
+
+	/**
+	 * Constructeur d'un tampon d'identifiants
+	 * @param drawing le modèle de dessin
+	 * @param width la largeur du tampon (celle du panel)
+	 * @param height la hauteur du tampon (celle du panel)
+	 * @param viewport la vue courante du panel
+	 */
+	public PickingBuffer(Drawing drawing, int width, int height,
+	                     Viewport viewport)
+	{
+		this.drawing = drawing;
+		this.viewport = viewport;
+		figuresById = new ArrayList<Figure>();
+		colorsByFigure = new IdentityHashMap<Figure, Color>();
+		freeIds = new ArrayDeque<Integer>();
+		strokes = new HashMap<Float, BasicStroke>();
+		strokesTolerance = -1.0;
+		dirtyRegions = new DirtyRegions();
+		setSize(width, height);
+	}
+
+	/**
+	 * Changement de la vue au travers de laquelle les figures sont
+	 * dessinées (entraîne une reconstruction complète)
+	 * @param viewport la nouvelle vue du panel
+	 */
+	public void setViewport(Viewport viewport)
+	{
+		if (!viewport.equals(this.viewport))
+		{
+			this.viewport = viewport;
+			invalidate(null);
+		}
+	}
+
+	/**
+	 * Changement de taille du tampon (entraîne une reconstruction complète)
+	 * @param width la nouvelle largeur
+	 * @param height la nouvelle hauteur
+	 */
+	public void setSize(int width, int height)
+	{
+		if ((ids == null) || (ids.getWidth() != width) ||
+		    (ids.getHeight() != height))
+		{
+			ids = new BufferedImage(Math.max(1, width), Math.max(1, height),
+			                        BufferedImage.TYPE_INT_RGB);
+			invalidate(null);
+		}
+	}
+
+	/**
+	 * Prise en compte d'une modification du dessin : la région modifiée est
+	 * invalidée et l'identifiant d'une figure retirée du dessin est libéré
+	 * (ses pixels, situés dans la région modifiée, seront redessinés avant
+	 * toute lecture)
+	 * @param data la modification transmise par le dessin à ses
+	 * observateurs
+	 */
+	public void update(Object data)
+	{
+		invalidate(DrawingChange.boundsOf(data));
+
+		if (data instanceof DrawingChange)
+		{
+			Figure figure = ((DrawingChange) data).getFigure();
+			if ((figure != null) && !drawing.contains(figure))
+			{
+				Color color = colorsByFigure.remove(figure);
+				if (color != null)
+				{
+					int id = color.getRGB() & MAX_ID;
+					figuresById.set(id - 1, null);
+					freeIds.push(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidation d'une région du tampon
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour invalider l'ensemble du tampon
+	 */
+	public void invalidate(Rectangle2D region)
+	{
+		// Marge d'un pixel pour les arrondis et la tolérance de contact
+		// (exprimée en pixels de la vue)
+		int margin = (int) Math.ceil(drawing.getHitTolerance()) + 1;
+		dirtyRegions.add(viewport.toPanel(region), margin);
+	}
+
+	/**
+	 * Un point peut être identifié s'il se trouve dans le tampon et que le
+	 * nombre de figures ne dépasse pas le nombre d'identifiants disponibles
+	 * @see figures.FigurePicker#canPick(java.awt.geom.Point2D)
+	 */
+	@Override
+	public boolean canPick(Point2D p)
+	{
+		Point2D q = viewport.toPanel(p);
+		int x = (int) Math.floor(q.getX());
+		int y = (int) Math.floor(q.getY());
+
+		return (x >= 0) && (y >= 0) && (x < ids.getWidth()) &&
+			(y < ids.getHeight()) && (drawing.size() < MAX_ID);
+	}
+
+	/**
+	 * Lecture de l'identifiant de la figure sous le point p après avoir
+	 * redessiné les régions modifiées
+	 * @see figures.FigurePicker#getFigureAt(java.awt.geom.Point2D)
+	 */
+	@Override
+	public Figure getFigureAt(Point2D p)
+	{
+		refresh();
+
+		Point2D q = viewport.toPanel(p);
+		int id = ids.getRGB((int) Math.floor(q.getX()),
+		                    (int) Math.floor(q.getY())) & MAX_ID;
+		if ((id == 0) || (id > figuresById.size()))
+			return null;
+
+		return figuresById.get(id - 1);
+	}
+
+	/**
+	 * Dessin des régions modifiées depuis la dernière lecture
+	 */
+	private void refresh()
+	{
+		if (dirtyRegions.isFull())
+		{
+			figuresById.clear();
+			colorsByFigure.clear();
+			freeIds.clear();
+			render(new Rectangle(0, 0, ids.getWidth(), ids.getHeight()));
+		}
+		else
+		{
+			for (Rectangle r : dirtyRegions.getRegions())
+				render(r);
+		}
+		dirtyRegions.clear();
+	}
+
+	/**
+	 * Dessin des identifiants des figures touchant une région du tampon
+	 * @param region la région à redessiner (en coordonnées du panel)
+	 */
+	private void render(Rectangle region)
+	{
+		Rectangle clip = region.intersection(
+			new Rectangle(0, 0, ids.getWidth(), ids.getHeight()));
+		if (clip.isEmpty())
+			return;
+
+		Graphics2D g2D = ids.createGraphics();
+		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                     RenderingHints.VALUE_ANTIALIAS_OFF);
+		g2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+		                     RenderingHints.VALUE_STROKE_PURE);
+		g2D.setClip(clip);
+		g2D.setColor(Color.BLACK); // identifiant 0 : pas de figure
+		g2D.fill(clip);
+
+		// Le pixel (x, y) est échantillonné en son centre et représente
+		// les points du panel situés à moins d'un demi pixel de celui-ci
+		viewport.apply(g2D);
+
+		// Tolérance de contact (en pixels de la vue) exprimée dans le dessin
+		double tolerance = drawing.getHitTolerance() / viewport.getZoom();
+		Rectangle2D area = viewport.toDrawing(clip);
+		double margin = tolerance + (1.0 / viewport.getZoom());
+		Rectangle2D searched = new Rectangle2D.Double(area.getX() - margin,
+		                                              area.getY() - margin,
+		                                              area.getWidth() + (2 * margin),
+		                                              area.getHeight() + (2 * margin));
+		if (tolerance != strokesTolerance)
+		{
+			strokes.clear();
+			strokesTolerance = tolerance;
+		}
+		for (Figure f : drawing.getFiguresIn(searched))
+		{
+			g2D.setColor(colorOf(f));
+			g2D.fill(f.getShape());
+
+			BasicStroke stroke = strokeOf(f.getStrokeWidth(), tolerance);
+			if (stroke != null)
+			{
+				g2D.setStroke(stroke);
+				g2D.draw(f.getShape());
+			}
+		}
+
+		g2D.dispose();
+	}
+
+	/**
+	 * Obtention (ou attribution) de la couleur codant l'identifiant d'une
+	 * figure. Un identifiant libéré est réattribué en priorité.
+	 * @param f la figure
+	 * @return la couleur (mémorisée) dont la valeur RGB est l'identifiant
+	 * de la figure
+	 */
+	private Color colorOf(Figure f)
+	{
+		Color color = colorsByFigure.get(f);
+		if (color == null)
+		{
+			int id;
+			if (freeIds.isEmpty())
+			{
+				figuresById.add(f);
+				id = figuresById.size();
+			}
+			else
+			{
+				id = freeIds.pop();
+				figuresById.set(id - 1, f);
+			}
+			color = new Color(id);
+			colorsByFigure.put(f, color);
+		}
+
+		return color;
+	}
+
+	/**
+	 * Obtention (mémorisée) du trait élargi de la tolérance de contact
+	 * @param width l'épaisseur du trait de la figure
+	 * @param tolerance la tolérance de contact (en coordonnées du dessin)
+	 * @return le trait élargi ou null s'il n'y a pas de trait à dessiner
+	 */
+	private BasicStroke strokeOf(float width, double tolerance)
+	{
+		BasicStroke stroke = strokes.get(width);
+		if (stroke == null)
+		{
+			float wide = width + (float) (2 * tolerance);
+			if (wide <= 0)
+				return null;
+			stroke = new BasicStroke(wide, BasicStroke.CAP_ROUND,
+			                         BasicStroke.JOIN_ROUND);
+			strokes.put(width, stroke);
+		}
+
+		return stroke;
+	}
+}
@@ -0,0 +1,500 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Rendu progressif et interruptible des figures d'un dessin dans une image
+ * hors écran couvrant la partie visible d'un composant. Les régions à
+ * redessiner sont traitées par tranches de temps d'au plus
+ * {@link #SLICE_MILLIS} ms : chaque tranche dessine les figures suivantes
+ * puis rend la main, l'image partiellement dessinée étant affichée en
+ * attendant la tranche suivante. Toutes les régions de l'image dessinées
+ * au cours d'une tranche (qui peut terminer plusieurs bandes) sont ensuite
+ * redessinées dans le composant. Toute modification du modèle et tout
+ * défilement interrompent la passe en cours, dont les régions sont
+ * redessinées depuis le début lors de la passe suivante avec l'état courant
+ * du dessin.
+ * L'image est exprimée dans le dessin zoomé (cf. {@link Viewport}) : à zoom
+ * constant, le défilement de la vue est traité comme celui du composant.
+ *
+ * @author davidroussel
+ */
+class ProgressiveRenderer
+{
+	/**
+	 * Durée maximum (en ms) d'une tranche de rendu
+	 */
+	public static final int SLICE_MILLIS = 8;
+
+	/**
+	 * Hauteur maximum (en pixels) des bandes dans lesquelles sont découpées
+	 * les régions à redessiner, afin que le relevé des figures d'une bande
+	 * tienne lui aussi dans une tranche
+	 */
+	private static final int BAND_HEIGHT = 64;
+
+	/**
+	 * Le modèle de dessin dont on effectue le rendu
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Le composant affichant le rendu et redessiné après chaque tranche
+	 */
+	private final JComponent target;
+
+	/**
+	 * L'image contenant le rendu de la partie visible du composant
+	 */
+	private BufferedImage buffer;
+
+	/**
+	 * La partie visible du composant (en coordonnées du dessin zoomé)
+	 * couverte par l'image
+	 */
+	private Rectangle view;
+
+	/**
+	 * Facteur d'échelle entre les coordonnées du dessin zoomé et les pixels
+	 * de l'image
+	 */
+	private double scale;
+
+	/**
+	 * La vue du dessin dans le composant
+	 */
+	private Viewport viewport;
+
+	/**
+	 * Couleur de fond de l'image
+	 */
+	private Color background;
+
+	/**
+	 * Les régions (en coordonnées du dessin zoomé) à redessiner lors de la
+	 * prochaine passe
+	 */
+	private DirtyRegions pending;
+
+	/**
+	 * Les régions (en pixels de l'image) restant à traiter dans la passe en
+	 * cours (vide s'il n'y a pas de passe en cours)
+	 */
+	private List<Rectangle> pass;
+
+	/**
+	 * Les figures (filtrées) touchant la première région de la passe en
+	 * cours, dans l'ordre d'empilement
+	 */
+	private List<Figure> figures;
+
+	/**
+	 * Indice de la prochaine figure à dessiner dans {@link #figures}
+	 */
+	private int next;
+
+	/**
+	 * Union des régions (en pixels de l'image) dessinées depuis la dernière
+	 * demande de redessin du composant (ou null)
+	 */
+	private Rectangle damaged;
+
+	/**
+	 * Timer déclenchant le redessin du composant (et donc la tranche
+	 * suivante) tant que la passe en cours n'est pas terminée
+	 */
+	private Timer timer;
+
+	/**
+	 * Nombre de passes interrompues depuis la création du renderer
+	 */
+	private long abortedPasses;
+
+	/**
+	 * Constructeur d'un renderer progressif
+	 * @param drawing le modèle de dessin dont on effectue le rendu
+	 * @param target le composant affichant le rendu
+	 */
+	public ProgressiveRenderer(Drawing drawing, JComponent target)
+	{
+		this.drawing = drawing;
+		this.target = target;
+		buffer = null;
+		view = null;
+		scale = 1.0;
+		viewport = Viewport.IDENTITY;
+		background = null;
+		pending = new DirtyRegions();
+		pass = new ArrayList<Rectangle>();
+		figures = null;
+		next = 0;
+		damaged = null;
+		timer = new Timer(0, e -> {
+			// Régions dessinées lors de la tranche précédente et bande en
+			// cours pour la tranche suivante
+			Rectangle r = damaged;
+			damaged = null;
+			if (!pass.isEmpty())
+				r = (r == null ? pass.get(0) : r.union(pass.get(0)));
+			if (r != null)
+				target.repaint(toComponent(r));
+		});
+		timer.setRepeats(false);
+		abortedPasses = 0;
+	}
+
+	/**
+	 * Invalidation d'une région de l'image. La passe en cours éventuelle
+	 * est interrompue.
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour invalider entièrement l'image
+	 * @param margin la marge (en pixels) à ajouter autour de la région
+	 */
+	public void invalidate(Rectangle2D region, int margin)
+	{
+		abort();
+		pending.add(zoomed(region), margin);
+	}
+
+	/**
+	 * Changement de la vue du dessin dans le composant. Un changement de
+	 * zoom invalide entièrement l'image, un défilement de la vue est traité
+	 * lors du prochain dessin comme un défilement du composant.
+	 * @param view la nouvelle vue
+	 */
+	public void setViewport(Viewport view)
+	{
+		if (view.getZoom() != viewport.getZoom())
+		{
+			abort();
+			pending.add(null, 0);
+		}
+		viewport = view;
+	}
+
+	/**
+	 * Teste si le rendu est complet
+	 * @return true si aucune région ne reste à redessiner
+	 */
+	public boolean isComplete()
+	{
+		return pass.isEmpty() && pending.isEmpty();
+	}
+
+	/**
+	 * Nombre de passes interrompues par une modification ou un défilement
+	 * @return le nombre de passes interrompues depuis la création
+	 */
+	public long getAbortedPasses()
+	{
+		return abortedPasses;
+	}
+
+	/**
+	 * Dessin du composant : exécution d'une tranche de rendu puis copie de
+	 * l'image (éventuellement partiellement dessinée)
+	 * @param g2D le contexte graphique du composant
+	 * @param visible la partie visible du composant
+	 * @param color la couleur de fond du composant
+	 * @return true si le dessin a pu être effectué à partir de l'image,
+	 * false si le contexte graphique ne s'y prête pas (rotation par
+	 * exemple) auquel cas il faut dessiner les figures directement
+	 */
+	public boolean paint(Graphics2D g2D, Rectangle visible, Color color)
+	{
+		AffineTransform t = g2D.getTransform();
+		if ((t.getShearX() != 0.0) || (t.getShearY() != 0.0) ||
+		    (t.getScaleX() <= 0.0) || (t.getScaleX() != t.getScaleY()) ||
+		    visible.isEmpty())
+			return false;
+
+		validate(new Rectangle(visible.x + viewport.getX(),
+		                       visible.y + viewport.getY(),
+		                       visible.width, visible.height),
+		         t.getScaleX(), color);
+
+		if (pass.isEmpty() && !pending.isEmpty())
+			start();
+		if (!pass.isEmpty())
+			step();
+
+		g2D.drawImage(buffer, view.x - viewport.getX(),
+		              view.y - viewport.getY(), view.width, view.height, null);
+
+		if (!pass.isEmpty())
+		{
+			timer.restart();
+		}
+		else if (damaged != null)
+		{
+			// Passe terminée : affichage des régions dessinées en dehors de
+			// la zone redessinée
+			Rectangle r = toComponent(damaged);
+			damaged = null;
+			Rectangle clip = g2D.getClipBounds();
+			if ((clip == null) || !clip.contains(r))
+				target.repaint(r);
+		}
+
+		return true;
+	}
+
+	/**
+	 * (Ré)allocation de l'image si la partie visible, le facteur d'échelle
+	 * ou la couleur de fond ont changé. Lors d'un simple défilement, la
+	 * partie encore visible de l'ancienne image est conservée et seules les
+	 * parties découvertes sont à redessiner.
+	 * @param visible la partie visible du composant (en coordonnées du
+	 * dessin zoomé)
+	 * @param newScale le facteur d'échelle du contexte graphique
+	 * @param color la couleur de fond
+	 */
+	private void validate(Rectangle visible, double newScale, Color color)
+	{
+		if (visible.equals(view) && (newScale == scale) &&
+		    color.equals(background))
+			return;
+
+		abort();
+
+		BufferedImage previous = buffer;
+		Rectangle previousView = view;
+		boolean scrolled = (previous != null) && (newScale == scale) &&
+			color.equals(background) &&
+			(previousView.width == visible.width) &&
+			(previousView.height == visible.height) &&
+			(newScale == Math.rint(newScale));
+
+		int w = Math.max(1, (int) Math.ceil(visible.width * newScale));
+		int h = Math.max(1, (int) Math.ceil(visible.height * newScale));
+		buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		damaged = null;
+		view = new Rectangle(visible);
+		scale = newScale;
+		background = color;
+
+		if (scrolled)
+		{
+			Graphics2D g = buffer.createGraphics();
+			g.drawImage(previous, (int) ((previousView.x - view.x) * scale),
+			            (int) ((previousView.y - view.y) * scale), null);
+			g.dispose();
+
+			// Bandes découvertes par le défilement
+			Rectangle kept = view.intersection(previousView);
+			if (kept.isEmpty())
+			{
+				pending.add(null, 0);
+			}
+			else
+			{
+				if (view.y < kept.y)
+					pending.add(new Rectangle(view.x, view.y, view.width,
+					                          kept.y - view.y), 0);
+				if (view.y + view.height > kept.y + kept.height)
+					pending.add(new Rectangle(view.x, kept.y + kept.height,
+					                          view.width,
+					                          (view.y + view.height) -
+					                          (kept.y + kept.height)), 0);
+				if (view.x < kept.x)
+					pending.add(new Rectangle(view.x, kept.y, kept.x - view.x,
+					                          kept.height), 0);
+				if (view.x + view.width > kept.x + kept.width)
+					pending.add(new Rectangle(kept.x + kept.width, kept.y,
+					                          (view.x + view.width) -
+					                          (kept.x + kept.width),
+					                          kept.height), 0);
+			}
+		}
+		else
+		{
+			pending.add(null, 0);
+		}
+	}
+
+	/**
+	 * Démarrage d'une nouvelle passe traitant les régions en attente
+	 */
+	private void start()
+	{
+		Rectangle pixels = new Rectangle(0, 0, buffer.getWidth(),
+		                                 buffer.getHeight());
+		if (pending.isFull())
+		{
+			addBands(pixels);
+		}
+		else
+		{
+			for (Rectangle r : pending.getRegions())
+			{
+				Rectangle p = pixels.intersection(toPixels(r));
+				if (!p.isEmpty())
+					addBands(p);
+			}
+		}
+		pending.clear();
+
+		if (!pass.isEmpty())
+			load();
+	}
+
+	/**
+	 * Ajout d'une région à la passe en cours sous la forme de bandes d'au
+	 * plus {@link #BAND_HEIGHT} pixels de haut
+	 * @param pixels la région (en pixels de l'image) à ajouter
+	 */
+	private void addBands(Rectangle pixels)
+	{
+		for (int y = pixels.y; y < pixels.y + pixels.height; y += BAND_HEIGHT)
+			pass.add(new Rectangle(pixels.x, y, pixels.width,
+			                       Math.min(BAND_HEIGHT,
+			                                (pixels.y + pixels.height) - y)));
+	}
+
+	/**
+	 * Préparation du rendu de la première région de la passe : effacement
+	 * de la région et relevé des figures qui la touchent
+	 */
+	private void load()
+	{
+		Rectangle pixels = pass.get(0);
+		Graphics2D g = buffer.createGraphics();
+		g.setColor(background);
+		g.fill(pixels);
+		g.dispose();
+
+		figures = drawing.stream(drawing.getFiguresIn(
+			viewport.toDrawing(toComponent(pixels))))
+			.collect(Collectors.toList());
+		next = 0;
+	}
+
+	/**
+	 * Tranche de rendu : dessin des figures suivantes de la passe en cours
+	 * jusqu'à épuisement du temps imparti ou fin de la passe. Les bandes
+	 * dessinées (entièrement ou partiellement) sont ajoutées à
+	 * {@link #damaged}.
+	 */
+	private void step()
+	{
+		long deadline = System.nanoTime() + (SLICE_MILLIS * 1000000L);
+		do
+		{
+			Rectangle band = pass.get(0);
+			damaged = (damaged == null ? new Rectangle(band)
+			                           : damaged.union(band));
+
+			Graphics2D g = buffer.createGraphics();
+			g.setClip(pass.get(0));
+			g.scale(scale, scale);
+			g.translate(-view.x, -view.y);
+			g.scale(viewport.getZoom(), viewport.getZoom());
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                   RenderingHints.VALUE_ANTIALIAS_ON);
+			while (next < figures.size())
+			{
+				figures.get(next++).draw(g);
+				if (System.nanoTime() >= deadline)
+					break;
+			}
+			g.dispose();
+
+			if (next < figures.size())
+				return;
+
+			// Région terminée : passage à la suivante
+			pass.remove(0);
+			figures = null;
+			if (!pass.isEmpty())
+				load();
+		}
+		while (!pass.isEmpty() && (System.nanoTime() < deadline));
+	}
+
+	/**
+	 * Interruption de la passe en cours : ses régions restant à traiter
+	 * seront entièrement redessinées lors de la prochaine passe
+	 */
+	private void abort()
+	{
+		if (pass.isEmpty())
+			return;
+
+		for (Rectangle p : pass)
+			pending.add(toZoomed(p), 0);
+		pass.clear();
+		figures = null;
+		abortedPasses++;
+	}
+
+	/**
+	 * Conversion d'une région du dessin en coordonnées du dessin zoomé
+	 * @param region la région en coordonnées du dessin (ou null)
+	 * @return la région en coordonnées du dessin zoomé (ou null)
+	 */
+	private Rectangle2D zoomed(Rectangle2D region)
+	{
+		if (region == null)
+			return null;
+
+		double zoom = viewport.getZoom();
+		return new Rectangle2D.Double(region.getX() * zoom,
+		                              region.getY() * zoom,
+		                              region.getWidth() * zoom,
+		                              region.getHeight() * zoom);
+	}
+
+	/**
+	 * Conversion d'une région du dessin zoomé en pixels de l'image
+	 * @param region la région en coordonnées du dessin zoomé
+	 * @return le rectangle de pixels couvrant la région
+	 */
+	private Rectangle toPixels(Rectangle2D region)
+	{
+		return new Rectangle2D.Double((region.getX() - view.x) * scale,
+		                              (region.getY() - view.y) * scale,
+		                              region.getWidth() * scale,
+		                              region.getHeight() * scale).getBounds();
+	}
+
+	/**
+	 * Conversion d'une région de l'image en coordonnées du dessin zoomé
+	 * @param pixels la région en pixels de l'image
+	 * @return le rectangle (en coordonnées du dessin zoomé) couvrant la
+	 * région
+	 */
+	private Rectangle toZoomed(Rectangle pixels)
+	{
+		return new Rectangle2D.Double(view.x + (pixels.x / scale),
+		                              view.y + (pixels.y / scale),
+		                              pixels.width / scale,
+		                              pixels.height / scale).getBounds();
+	}
+
+	/**
+	 * Conversion d'une région de l'image en coordonnées du composant
+	 * @param pixels la région en pixels de l'image
+	 * @return le rectangle (en coordonnées du composant) couvrant la région
+	 */
+	private Rectangle toComponent(Rectangle pixels)
+	{
+		Rectangle r = toZoomed(pixels);
+		r.translate(-viewport.getX(), -viewport.getY());
+		return r;
+	}
+}
@@ -0,0 +1,95 @@
+package widgets;
+
+/**
+ * Les différentes manières de dessiner les figures dans un
+ * {@link DrawingPanel}
+ *
+ * @author davidroussel
+ */
+public enum RenderMode
+{
+	/**
+	 * Dessin direct de chacune des figures touchant la région à redessiner
+	 */
+	DIRECT,
+	/**
+	 * Composition d'images mémorisant les figures situées sous et au dessus
+	 * de la figure active avec le dessin de la figure active
+	 * @see LayerCache
+	 */
+	LAYERED,
+	/**
+	 * Copie de tuiles mémorisant le rendu des figures dans un cache LRU
+	 * @see TileCache
+	 */
+	TILED,
+	/**
+	 * Copie de tuiles mémorisant le rendu des figures dans un cache LRU, les
+	 * tuiles manquantes étant rendues en parallèle
+	 * @see TileCache
+	 * @see DrawingPanel#setRenderThreads(int)
+	 */
+	PARALLEL_TILED,
+	/**
+	 * Copie de tuiles pré-rendues à plusieurs résolutions, les vues
+	 * réduites utilisant des tuiles réduites au lieu de dessiner chacune
+	 * des figures
+	 * @see TilePyramid
+	 */
+	TILE_PYRAMID,
+	/**
+	 * Dessin progressif des figures par tranches de temps dans une image
+	 * affichée au fur et à mesure, interrompu par toute modification
+	 * @see ProgressiveRenderer
+	 */
+	PROGRESSIVE,
+	/**
+	 * Dessin des figures dans un thread dédié, le panel se contentant
+	 * d'afficher la dernière image terminée
+	 * @see BackgroundRenderer
+	 */
+	BACKGROUND;
+
+	/**
+	 * Teste si les options de dessin des figures du {@link DrawingPanel}
+	 * (dessin par lots, cf. {@link DrawingPanel#setBatching(boolean)}, et
+	 * niveau de détail, cf. {@link DrawingPanel#setLevelOfDetail(boolean)},
+	 * et élimination des figures cachées, cf.
+	 * {@link DrawingPanel#setOcclusionCulling(boolean)})
+	 * s'appliquent dans ce mode. Les autres modes dessinent les figures
+	 * dans des tuiles ou hors du thread de l'interface graphique.
+	 * @return true pour les modes {@link #DIRECT} et {@link #LAYERED}
+	 */
+	public boolean appliesDrawingOptions()
+	{
+		return (this == DIRECT) || (this == LAYERED);
+	}
+
+	/**
+	 * Représentation sous forme de chaîne de caractères
+	 * @return le nom du mode de rendu
+	 */
+	@Override
+	public String toString()
+	{
+		switch (this)
+		{
+			case DIRECT:
+				return new String("Direct");
+			case LAYERED:
+				return new String("Layered");
+			case TILED:
+				return new String("Tiled");
+			case PARALLEL_TILED:
+				return new String("Parallel Tiled");
+			case TILE_PYRAMID:
+				return new String("Tile Pyramid");
+			case PROGRESSIVE:
+				return new String("Progressive");
+			case BACKGROUND:
+				return new String("Background");
+			default:
+				throw new AssertionError("RenderMode unknown assertion: " + this);
+		}
+	}
+}
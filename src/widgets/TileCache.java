@@ -0,0 +1,431 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Mémorisation du rendu d'un dessin sous la forme d'une grille de tuiles
+ * (images de {@link #TILE_SIZE} x {@link #TILE_SIZE} pixels) rendues à la
+ * demande. Les tuiles sont conservées dans un cache LRU dont la taille
+ * mémoire est bornée : les tuiles les moins récemment affichées sont
+ * libérées les premières. Lorsque le modèle change, seules les tuiles
+ * touchant la région modifiée sont supprimées. Le défilement et le
+ * redessin des zones inchangées se résument ainsi à des copies d'images.
+ * Lorsqu'un {@link ForkJoinPool} est fourni, les tuiles manquantes d'une
+ * même image sont rendues en parallèle, chacune dans son propre contexte
+ * graphique et à partir d'une liste figée des figures qui la touchent.
+ *
+ * @author davidroussel
+ */
+class TileCache
+{
+	/**
+	 * Taille (en pixels) des tuiles
+	 */
+	public static final int TILE_SIZE = 256;
+
+	/**
+	 * Taille mémoire maximum par défaut des tuiles (en octets)
+	 */
+	public static final long DEFAULT_BUDGET = 64L * 1024L * 1024L;
+
+	/**
+	 * Nombre d'octets par pixel des tuiles
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * Le modèle de dessin dont on mémorise le rendu
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Les tuiles rendues indexées par leur position dans la grille (cf.
+	 * {@link #key(int, int)}), de la moins récemment à la plus récemment
+	 * utilisée
+	 */
+	private LinkedHashMap<Long, BufferedImage> tiles;
+
+	/**
+	 * Taille mémoire maximum des tuiles (en octets)
+	 */
+	private long budget;
+
+	/**
+	 * Taille mémoire courante des tuiles (en octets)
+	 */
+	private long usage;
+
+	/**
+	 * Facteur d'échelle entre les coordonnées du dessin et les pixels des
+	 * tuiles
+	 */
+	private double scale;
+
+	/**
+	 * Couleur de fond des tuiles
+	 */
+	private Color background;
+
+	/**
+	 * Nombre de tuiles rendues depuis la création du cache
+	 */
+	private long renderedTiles;
+
+	/**
+	 * Le pool de threads dans lequel rendre les tuiles en parallèle (ou null
+	 * pour rendre les tuiles dans le thread appelant)
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructeur d'un cache de tuiles vide dont les tuiles sont rendues
+	 * dans le thread appelant
+	 * @param drawing le modèle de dessin dont on mémorise le rendu
+	 * @param budget la taille mémoire maximum des tuiles (en octets)
+	 */
+	public TileCache(Drawing drawing, long budget)
+	{
+		this(drawing, budget, null);
+	}
+
+	/**
+	 * Constructeur d'un cache de tuiles vide
+	 * @param drawing le modèle de dessin dont on mémorise le rendu
+	 * @param budget la taille mémoire maximum des tuiles (en octets)
+	 * @param pool le pool de threads dans lequel rendre les tuiles en
+	 * parallèle ou null pour les rendre dans le thread appelant
+	 */
+	public TileCache(Drawing drawing, long budget, ForkJoinPool pool)
+	{
+		this.pool = pool;
+		this.drawing = drawing;
+		tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true);
+		this.budget = budget;
+		usage = 0;
+		scale = 1.0;
+		background = null;
+		renderedTiles = 0;
+	}
+
+	/**
+	 * Accesseur de la taille mémoire maximum des tuiles
+	 * @return la taille mémoire maximum des tuiles (en octets)
+	 */
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Changement de la taille mémoire maximum des tuiles. Les tuiles les
+	 * moins récemment utilisées sont libérées si nécessaire.
+	 * @param budget la nouvelle taille mémoire maximum (en octets)
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = Math.max(0, budget);
+		evict();
+	}
+
+	/**
+	 * Accesseur de la taille mémoire occupée par les tuiles
+	 * @return la taille mémoire courante des tuiles (en octets)
+	 */
+	public long getUsage()
+	{
+		return usage;
+	}
+
+	/**
+	 * Nombre de tuiles actuellement mémorisées
+	 * @return le nombre de tuiles dans le cache
+	 */
+	public int getTileCount()
+	{
+		return tiles.size();
+	}
+
+	/**
+	 * Nombre de tuiles rendues depuis la création du cache
+	 * @return le nombre de tuiles rendues (chaque défaut de cache entraîne
+	 * le rendu d'une tuile)
+	 */
+	public long getRenderedTiles()
+	{
+		return renderedTiles;
+	}
+
+	/**
+	 * Suppression des tuiles touchant une région
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour supprimer toutes les tuiles
+	 * @param margin la marge (en pixels) à ajouter autour de la région
+	 */
+	public void invalidate(Rectangle2D region, int margin)
+	{
+		if (region == null)
+		{
+			tiles.clear();
+			usage = 0;
+			return;
+		}
+
+		// La marge couvre au moins autant de pixels de tuile lorsque le dessin
+		// est réduit (zoom inférieur à 1)
+		int grow = (int) Math.ceil(margin * Math.max(1.0, scale));
+		Rectangle r = pixels(region);
+		r.grow(grow, grow);
+		int c0 = Math.floorDiv(r.x, TILE_SIZE);
+		int c1 = Math.floorDiv(r.x + r.width, TILE_SIZE);
+		int r0 = Math.floorDiv(r.y, TILE_SIZE);
+		int r1 = Math.floorDiv(r.y + r.height, TILE_SIZE);
+
+		if (((long) (c1 - c0 + 1) * (r1 - r0 + 1)) > tiles.size())
+		{
+			// Région étendue : parcours des tuiles présentes
+			for (Iterator<Map.Entry<Long, BufferedImage>> it =
+				tiles.entrySet().iterator(); it.hasNext();)
+			{
+				long k = it.next().getKey();
+				int c = (int) (k >> 32);
+				int row = (int) k;
+				if ((c >= c0) && (c <= c1) && (row >= r0) && (row <= r1))
+				{
+					usage -= bytes();
+					it.remove();
+				}
+			}
+		}
+		else
+		{
+			for (int row = r0; row <= r1; row++)
+			{
+				for (int c = c0; c <= c1; c++)
+				{
+					if (tiles.remove(key(c, row)) != null)
+						usage -= bytes();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dessin d'une région du panel par copie des tuiles (rendues si
+	 * nécessaire)
+	 * @param g2D le contexte graphique du panel
+	 * @param clip la région à dessiner (en coordonnées du dessin)
+	 * @param color la couleur de fond du panel
+	 * @return true si le dessin a pu être effectué à partir des tuiles,
+	 * false si le contexte graphique ne s'y prête pas (rotation par
+	 * exemple) auquel cas il faut dessiner les figures directement
+	 */
+	public boolean paint(Graphics2D g2D, Rectangle2D clip, Color color)
+	{
+		AffineTransform t = g2D.getTransform();
+		if ((t.getShearX() != 0.0) || (t.getShearY() != 0.0) ||
+		    (t.getScaleX() <= 0.0) || (t.getScaleX() != t.getScaleY()))
+			return false;
+
+		if ((t.getScaleX() != scale) || !color.equals(background))
+		{
+			invalidate(null, 0);
+			scale = t.getScaleX();
+			background = color;
+		}
+
+		Rectangle r = pixels(clip);
+		int c0 = Math.floorDiv(r.x, TILE_SIZE);
+		int c1 = Math.floorDiv(r.x + r.width - 1, TILE_SIZE);
+		int r0 = Math.floorDiv(r.y, TILE_SIZE);
+		int r1 = Math.floorDiv(r.y + r.height - 1, TILE_SIZE);
+
+		renderMissing(c0, c1, r0, r1);
+
+		// Copie des tuiles en coordonnées écran afin que chaque pixel de
+		// tuile corresponde exactement à un pixel écran
+		g2D.setTransform(AffineTransform.getTranslateInstance(
+			t.getTranslateX(), t.getTranslateY()));
+		for (int row = r0; row <= r1; row++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				g2D.drawImage(tiles.get(key(c, row)), c * TILE_SIZE,
+				              row * TILE_SIZE, null);
+			}
+		}
+		g2D.setTransform(t);
+
+		evict();
+
+		return true;
+	}
+
+	/**
+	 * Rendu des tuiles d'une portion de la grille absentes du cache.
+	 * Les figures touchant chaque tuile manquante sont d'abord relevées
+	 * (dans le thread appelant) dans des listes non modifiables, puis les
+	 * tuiles sont rendues à partir de ces listes, en parallèle si un
+	 * {@link #pool} est disponible.
+	 * @param c0 la première colonne
+	 * @param c1 la dernière colonne
+	 * @param r0 la première ligne
+	 * @param r1 la dernière ligne
+	 */
+	private void renderMissing(int c0, int c1, int r0, int r1)
+	{
+		List<Long> missing = new ArrayList<Long>();
+		List<List<Figure>> snapshots = new ArrayList<List<Figure>>();
+		for (int row = r0; row <= r1; row++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				Long k = key(c, row);
+				if (tiles.get(k) == null)
+				{
+					missing.add(k);
+					snapshots.add(Collections.unmodifiableList(
+						drawing.stream(drawing.getFiguresIn(area(c, row)))
+							.collect(Collectors.toList())));
+				}
+			}
+		}
+
+		BufferedImage[] rendered = new BufferedImage[missing.size()];
+		if ((pool != null) && (missing.size() > 1))
+		{
+			List<ForkJoinTask<BufferedImage>> tasks =
+				new ArrayList<ForkJoinTask<BufferedImage>>(missing.size());
+			for (int i = 0; i < missing.size(); i++)
+			{
+				final long k = missing.get(i);
+				final List<Figure> figures = snapshots.get(i);
+				tasks.add(pool.submit(() -> render((int) (k >> 32), (int) k,
+				                                   figures)));
+			}
+			for (int i = 0; i < tasks.size(); i++)
+				rendered[i] = tasks.get(i).join();
+		}
+		else
+		{
+			for (int i = 0; i < missing.size(); i++)
+			{
+				long k = missing.get(i);
+				rendered[i] = render((int) (k >> 32), (int) k,
+				                     snapshots.get(i));
+			}
+		}
+
+		for (int i = 0; i < rendered.length; i++)
+		{
+			tiles.put(missing.get(i), rendered[i]);
+			usage += bytes();
+		}
+		renderedTiles += rendered.length;
+	}
+
+	/**
+	 * Région du dessin couverte par une tuile
+	 * @param c la colonne de la tuile
+	 * @param row la ligne de la tuile
+	 * @return la région couverte par la tuile en coordonnées du dessin
+	 */
+	private Rectangle2D area(int c, int row)
+	{
+		return new Rectangle2D.Double((c * TILE_SIZE) / scale,
+		                              (row * TILE_SIZE) / scale,
+		                              TILE_SIZE / scale, TILE_SIZE / scale);
+	}
+
+	/**
+	 * Rendu d'une tuile. Cette méthode ne modifie pas le cache et peut donc
+	 * être exécutée dans n'importe quel thread.
+	 * @param c la colonne de la tuile
+	 * @param row la ligne de la tuile
+	 * @param figures les figures (filtrées) touchant la tuile, dans l'ordre
+	 * d'empilement
+	 * @return l'image de la tuile contenant le fond et les figures
+	 */
+	private BufferedImage render(int c, int row, List<Figure> figures)
+	{
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+		                                       BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.setColor(background);
+		g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                   RenderingHints.VALUE_ANTIALIAS_ON);
+		g.translate(-c * TILE_SIZE, -row * TILE_SIZE);
+		g.scale(scale, scale);
+		for (Figure f : figures)
+			f.draw(g);
+		g.dispose();
+
+		return tile;
+	}
+
+	/**
+	 * Libération des tuiles les moins récemment utilisées jusqu'à ce que la
+	 * taille mémoire des tuiles respecte le {@link #budget}
+	 */
+	private void evict()
+	{
+		Iterator<BufferedImage> it = tiles.values().iterator();
+		while ((usage > budget) && it.hasNext())
+		{
+			it.next();
+			it.remove();
+			usage -= bytes();
+		}
+	}
+
+	/**
+	 * Conversion d'une région du dessin en pixels
+	 * @param region la région en coordonnées du dessin
+	 * @return le rectangle de pixels couvrant la région
+	 */
+	private Rectangle pixels(Rectangle2D region)
+	{
+		return new Rectangle2D.Double(region.getX() * scale,
+		                              region.getY() * scale,
+		                              region.getWidth() * scale,
+		                              region.getHeight() * scale).getBounds();
+	}
+
+	/**
+	 * Taille mémoire d'une tuile
+	 * @return le nombre d'octets occupés par une tuile
+	 */
+	private static long bytes()
+	{
+		return (long) TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Clé d'une tuile dans le cache
+	 * @param c la colonne de la tuile
+	 * @param row la ligne de la tuile
+	 * @return la clé associée à la tuile
+	 */
+	private static Long key(int c, int row)
+	{
+		return Long.valueOf(((long) c << 32) | (row & 0xFFFFFFFFL));
+	}
+}
@@ -0,0 +1,530 @@
+package widgets;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import figures.Drawing;
+import figures.Figure;
+import figures.LevelOfDetail;
+
+/**
+ * Pyramide de tuiles multi-résolution d'un dessin. Chaque niveau de la
+ * pyramide est une grille de tuiles de {@link TileCache#TILE_SIZE} pixels
+ * rendues à une échelle deux fois plus petite que celle du niveau précédent
+ * (le niveau 0 correspond à un pixel par unité du dessin, les niveaux
+ * négatifs aux agrandissements). L'affichage à un facteur d'échelle
+ * quelconque utilise le niveau immédiatement plus fin, ses tuiles étant
+ * réduites lors de leur copie à l'écran.
+ * Les tuiles sont construites à la demande : une tuile dont au moins une
+ * des quatre tuiles filles (niveau plus fin) est présente est obtenue par
+ * réduction de ses filles (construites si nécessaire de la même manière),
+ * les autres sont rendues directement à partir des figures en appliquant un
+ * {@link LevelOfDetail} aux niveaux réduits. Une vue d'ensemble d'un très
+ * grand dessin se résume ainsi, une fois les niveaux grossiers construits, à
+ * la copie de quelques tuiles. Lorsque le modèle change, seule la partie de
+ * chaque tuile (de tous les niveaux) touchée par la région modifiée est
+ * redessinée à partir des figures lors de sa prochaine utilisation, les
+ * tuiles entièrement couvertes étant supprimées. Les tuiles de tous les
+ * niveaux partagent un même cache LRU borné en mémoire.
+ * Contrairement au {@link TileCache}, le résultat n'est identique au dessin
+ * direct des figures qu'aux facteurs d'échelle égaux à une puissance de 2
+ * et pour des tuiles rendues à partir des figures sans réduction.
+ *
+ * @author davidroussel
+ */
+class TilePyramid
+{
+	/**
+	 * Niveau le plus fin de la pyramide (agrandissement 16)
+	 */
+	public static final int MIN_LEVEL = -4;
+
+	/**
+	 * Niveau le plus grossier de la pyramide (réduction 65536)
+	 */
+	public static final int MAX_LEVEL = 16;
+
+	/**
+	 * Taille (en pixels) des tuiles
+	 */
+	private static final int TILE_SIZE = TileCache.TILE_SIZE;
+
+	/**
+	 * Nombre d'octets par pixel des tuiles
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * Le modèle de dessin dont on mémorise le rendu
+	 */
+	private final Drawing drawing;
+
+	/**
+	 * Les tuiles de tous les niveaux, de la moins récemment à la plus
+	 * récemment utilisée
+	 */
+	private LinkedHashMap<Key, BufferedImage> tiles;
+
+	/**
+	 * Les parties (en pixels de la tuile) des tuiles présentes à redessiner
+	 */
+	private Map<Key, Rectangle> dirty;
+
+	/**
+	 * Taille mémoire maximum des tuiles (en octets)
+	 */
+	private long budget;
+
+	/**
+	 * Taille mémoire courante des tuiles (en octets)
+	 */
+	private long usage;
+
+	/**
+	 * Couleur de fond des tuiles
+	 */
+	private Color background;
+
+	/**
+	 * Le niveau de détail appliqué aux figures rendues dans les niveaux
+	 * réduits
+	 */
+	private LevelOfDetail levelOfDetail;
+
+	/**
+	 * Nombre de tuiles rendues à partir des figures depuis la création
+	 */
+	private long renderedTiles;
+
+	/**
+	 * Nombre de tuiles obtenues par réduction de leurs filles depuis la
+	 * création
+	 */
+	private long reducedTiles;
+
+	/**
+	 * Constructeur d'une pyramide de tuiles vide
+	 * @param drawing le modèle de dessin dont on mémorise le rendu
+	 * @param budget la taille mémoire maximum des tuiles (en octets)
+	 */
+	public TilePyramid(Drawing drawing, long budget)
+	{
+		this.drawing = drawing;
+		tiles = new LinkedHashMap<Key, BufferedImage>(64, 0.75f, true);
+		dirty = new HashMap<Key, Rectangle>();
+		this.budget = budget;
+		usage = 0;
+		background = null;
+		levelOfDetail = new LevelOfDetail();
+		renderedTiles = 0;
+		reducedTiles = 0;
+	}
+
+	/**
+	 * Changement de la taille mémoire maximum des tuiles. Les tuiles les
+	 * moins récemment utilisées sont libérées si nécessaire.
+	 * @param budget la nouvelle taille mémoire maximum (en octets)
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = Math.max(0, budget);
+		evict();
+	}
+
+	/**
+	 * Nombre de tuiles présentes (tous niveaux confondus)
+	 * @return le nombre de tuiles mémorisées
+	 */
+	public int getTileCount()
+	{
+		return tiles.size();
+	}
+
+	/**
+	 * Nombre de tuiles rendues à partir des figures
+	 * @return le nombre de tuiles rendues depuis la création
+	 */
+	public long getRenderedTiles()
+	{
+		return renderedTiles;
+	}
+
+	/**
+	 * Nombre de tuiles obtenues par réduction de leurs tuiles filles
+	 * @return le nombre de tuiles réduites depuis la création
+	 */
+	public long getReducedTiles()
+	{
+		return reducedTiles;
+	}
+
+	/**
+	 * Invalidation des tuiles de tous les niveaux touchant une région : les
+	 * tuiles entièrement couvertes sont supprimées, la partie touchée des
+	 * autres sera redessinée
+	 * @param region la région modifiée (en coordonnées du dessin) ou null
+	 * pour supprimer toutes les tuiles
+	 * @param margin la marge (en pixels de chaque niveau) à ajouter autour
+	 * de la région
+	 */
+	public void invalidate(Rectangle2D region, int margin)
+	{
+		if (region == null)
+		{
+			tiles.clear();
+			dirty.clear();
+			usage = 0;
+			return;
+		}
+
+		Rectangle whole = new Rectangle(0, 0, TILE_SIZE, TILE_SIZE);
+		for (Iterator<Key> it = tiles.keySet().iterator(); it.hasNext();)
+		{
+			Key k = it.next();
+			double scale = levelScale(k.level);
+			int x0 = (int) Math.floor(region.getMinX() * scale) - margin -
+				(k.c * TILE_SIZE);
+			int y0 = (int) Math.floor(region.getMinY() * scale) - margin -
+				(k.row * TILE_SIZE);
+			int x1 = (int) Math.ceil(region.getMaxX() * scale) + margin -
+				(k.c * TILE_SIZE);
+			int y1 = (int) Math.ceil(region.getMaxY() * scale) + margin -
+				(k.row * TILE_SIZE);
+			Rectangle part =
+				whole.intersection(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+			if (part.isEmpty())
+				continue;
+
+			Rectangle previous = dirty.get(k);
+			if (previous != null)
+				part = part.union(previous);
+			if (part.equals(whole))
+			{
+				usage -= bytes();
+				dirty.remove(k);
+				it.remove();
+			}
+			else
+			{
+				dirty.put(k, part);
+			}
+		}
+	}
+
+	/**
+	 * Dessin d'une région du dessin à partir des tuiles du niveau adapté au
+	 * facteur d'échelle du contexte graphique (construites si nécessaire)
+	 * @param g2D le contexte graphique (en coordonnées du dessin)
+	 * @param clip la région du dessin à dessiner
+	 * @param color la couleur de fond
+	 * @return true si le dessin a pu être effectué à partir des tuiles,
+	 * false si le contexte graphique ne s'y prête pas (rotation par
+	 * exemple) auquel cas il faut dessiner les figures directement
+	 */
+	public boolean paint(Graphics2D g2D, Rectangle2D clip, Color color)
+	{
+		AffineTransform t = g2D.getTransform();
+		if ((t.getShearX() != 0.0) || (t.getShearY() != 0.0) ||
+		    (t.getScaleX() <= 0.0) || (t.getScaleX() != t.getScaleY()))
+			return false;
+
+		if (!color.equals(background))
+		{
+			invalidate(null, 0);
+			background = color;
+		}
+
+		int level = level(t.getScaleX());
+		double ratio = t.getScaleX() / levelScale(level);
+		double size = TILE_SIZE / levelScale(level);
+		int c0 = (int) Math.floor(clip.getMinX() / size);
+		int c1 = (int) Math.ceil(clip.getMaxX() / size) - 1;
+		int r0 = (int) Math.floor(clip.getMinY() / size);
+		int r1 = (int) Math.ceil(clip.getMaxY() / size) - 1;
+
+		// Copie des tuiles en pixels du niveau : au niveau exact chaque
+		// pixel de tuile correspond à un pixel écran, sinon les tuiles sont
+		// réduites
+		AffineTransform tiling = AffineTransform.getTranslateInstance(
+			t.getTranslateX(), t.getTranslateY());
+		Object interpolation =
+			g2D.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		if (ratio != 1.0)
+		{
+			tiling.scale(ratio, ratio);
+			g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			                     RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		}
+		g2D.setTransform(tiling);
+		for (int row = r0; row <= r1; row++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				g2D.drawImage(tile(new Key(level, c, row)), c * TILE_SIZE,
+				              row * TILE_SIZE, null);
+			}
+		}
+		g2D.setTransform(t);
+		if (interpolation != null)
+			g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			                     interpolation);
+
+		evict();
+
+		return true;
+	}
+
+	/**
+	 * Obtention d'une tuile, construite si elle est absente ou réparée si
+	 * une partie en a été invalidée
+	 * @param k la position de la tuile dans la pyramide
+	 * @return la tuile
+	 */
+	private BufferedImage tile(Key k)
+	{
+		BufferedImage tile = tiles.get(k);
+		if (tile == null)
+		{
+			tile = (hasChild(k) ? reduce(k) : render(k));
+			tiles.put(k, tile);
+			usage += bytes();
+		}
+		else
+		{
+			Rectangle part = dirty.remove(k);
+			if (part != null)
+				render(k, tile, part);
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Teste si l'une des tuiles filles d'une tuile est présente
+	 * @param k la position de la tuile
+	 * @return true si au moins l'une des quatre tuiles filles est présente
+	 */
+	private boolean hasChild(Key k)
+	{
+		if (k.level <= MIN_LEVEL)
+			return false;
+
+		for (int j = 0; j < 2; j++)
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				if (tiles.containsKey(new Key(k.level - 1, (2 * k.c) + i,
+				                              (2 * k.row) + j)))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Construction d'une tuile par réduction (moyenne de 2 x 2 pixels) de
+	 * ses quatre tuiles filles, construites si nécessaire
+	 * @param k la position de la tuile
+	 * @return la tuile construite
+	 */
+	private BufferedImage reduce(Key k)
+	{
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+		                                       BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+		                   RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.scale(0.5, 0.5);
+		for (int j = 0; j < 2; j++)
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				g.drawImage(tile(new Key(k.level - 1, (2 * k.c) + i,
+				                         (2 * k.row) + j)),
+				            i * TILE_SIZE, j * TILE_SIZE, null);
+			}
+		}
+		g.dispose();
+		reducedTiles++;
+
+		return tile;
+	}
+
+	/**
+	 * Rendu d'une tuile à partir des figures qui la touchent
+	 * @param k la position de la tuile
+	 * @return la tuile rendue
+	 */
+	private BufferedImage render(Key k)
+	{
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+		                                       BufferedImage.TYPE_INT_RGB);
+		render(k, tile, new Rectangle(0, 0, TILE_SIZE, TILE_SIZE));
+		renderedTiles++;
+
+		return tile;
+	}
+
+	/**
+	 * Rendu d'une partie d'une tuile à partir des figures qui la touchent
+	 * @param k la position de la tuile
+	 * @param tile l'image de la tuile
+	 * @param part la partie (en pixels de la tuile) à redessiner
+	 */
+	private void render(Key k, BufferedImage tile, Rectangle part)
+	{
+		double scale = levelScale(k.level);
+		Graphics2D g = tile.createGraphics();
+		g.clip(part);
+		g.setColor(background);
+		g.fill(part);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+		                   RenderingHints.VALUE_ANTIALIAS_ON);
+		g.translate(-k.c * TILE_SIZE, -k.row * TILE_SIZE);
+		g.scale(scale, scale);
+		Rectangle2D area = new Rectangle2D.Double(
+			((k.c * TILE_SIZE) + part.x) / scale,
+			((k.row * TILE_SIZE) + part.y) / scale,
+			part.width / scale, part.height / scale);
+		if (scale < 1.0)
+			drawing.stream(drawing.getFiguresIn(area))
+				.forEach(f -> levelOfDetail.draw(g, f));
+		else
+			drawing.stream(drawing.getFiguresIn(area))
+				.forEach((Figure f) -> f.draw(g));
+		g.dispose();
+	}
+
+	/**
+	 * Libération des tuiles les moins récemment utilisées jusqu'à ce que la
+	 * taille mémoire des tuiles respecte le budget
+	 */
+	private void evict()
+	{
+		Iterator<Key> it = tiles.keySet().iterator();
+		while ((usage > budget) && it.hasNext())
+		{
+			dirty.remove(it.next());
+			it.remove();
+			usage -= bytes();
+		}
+	}
+
+	/**
+	 * Niveau de la pyramide à utiliser pour un facteur d'échelle : le
+	 * niveau le plus grossier dont l'échelle n'est pas inférieure à ce
+	 * facteur
+	 * @param scale le facteur d'échelle entre le dessin et l'écran
+	 * @return le niveau à utiliser
+	 */
+	private static int level(double scale)
+	{
+		int level = (int) Math.floor(-Math.log(scale) / Math.log(2.0));
+		if (levelScale(level) < scale)
+			level--;
+		else if (levelScale(level + 1) >= scale)
+			level++;
+
+		return Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level));
+	}
+
+	/**
+	 * Facteur d'échelle d'un niveau de la pyramide
+	 * @param level le niveau
+	 * @return le facteur d'échelle entre le dessin et les pixels des tuiles
+	 * de ce niveau
+	 */
+	private static double levelScale(int level)
+	{
+		return Math.scalb(1.0, -level);
+	}
+
+	/**
+	 * Région du dessin couverte par une tuile
+	 * @param k la position de la tuile
+	 * @return la région (en coordonnées du dessin) couverte par la tuile
+	 */
+	private static Rectangle2D area(Key k)
+	{
+		double size = TILE_SIZE / levelScale(k.level);
+		return new Rectangle2D.Double(k.c * size, k.row * size, size, size);
+	}
+
+	/**
+	 * Taille mémoire d'une tuile
+	 * @return la taille mémoire d'une tuile (en octets)
+	 */
+	private static long bytes()
+	{
+		return (long) TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Position d'une tuile dans la pyramide
+	 */
+	private static class Key
+	{
+		/**
+		 * Le niveau de la tuile
+		 */
+		final int level;
+
+		/**
+		 * La colonne de la tuile dans la grille du niveau
+		 */
+		final int c;
+
+		/**
+		 * La ligne de la tuile dans la grille du niveau
+		 */
+		final int row;
+
+		/**
+		 * Constructeur d'une position de tuile
+		 * @param level le niveau de la tuile
+		 * @param c la colonne de la tuile
+		 * @param row la ligne de la tuile
+		 */
+		Key(int level, int c, int row)
+		{
+			this.level = level;
+			this.c = c;
+			this.row = row;
+		}
+
+		/**
+		 * Égalité de deux positions
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+			return (level == other.level) && (c == other.c) &&
+				(row == other.row);
+		}
+
+		/**
+		 * Code de hachage compatible avec {@link #equals(Object)}
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode()
+		{
+			return (((level * 31) + c) * 31) + row;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package widgets;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Transformation de vue (non modifiable) entre les coordonnées du dessin et
+ * les coordonnées du panel : un facteur de zoom suivi d'une translation.
+ * La translation est exprimée en pixels entiers du dessin zoomé (origine du
+ * panel) afin que le défilement décale les pixels de rendu d'un nombre
+ * entier de pixels.
+ *
+ * @author davidroussel
+ */
+final class Viewport
+{
+	/**
+	 * Facteur de zoom minimum
+	 */
+	public static final double MIN_ZOOM = 1.0 / 16.0;
+
+	/**
+	 * Facteur de zoom maximum
+	 */
+	public static final double MAX_ZOOM = 16.0;
+
+	/**
+	 * La vue identité : les coordonnées du dessin sont celles du panel
+	 */
+	public static final Viewport IDENTITY = new Viewport(1.0, 0, 0);
+
+	/**
+	 * Le facteur de zoom
+	 */
+	private final double zoom;
+
+	/**
+	 * Abscisse (dans le dessin zoomé) du coin supérieur gauche du panel
+	 */
+	private final int x;
+
+	/**
+	 * Ordonnée (dans le dessin zoomé) du coin supérieur gauche du panel
+	 */
+	private final int y;
+
+	/**
+	 * Constructeur d'une vue
+	 * @param zoom le facteur de zoom
+	 * @param x l'abscisse (dans le dessin zoomé) du coin supérieur gauche du
+	 * panel
+	 * @param y l'ordonnée (dans le dessin zoomé) du coin supérieur gauche du
+	 * panel
+	 */
+	private Viewport(double zoom, int x, int y)
+	{
+		this.zoom = zoom;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Accesseur du facteur de zoom
+	 * @return le facteur de zoom
+	 */
+	public double getZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * Abscisse de l'origine du panel
+	 * @return l'abscisse (dans le dessin zoomé) du coin supérieur gauche du
+	 * panel
+	 */
+	public int getX()
+	{
+		return x;
+	}
+
+	/**
+	 * Ordonnée de l'origine du panel
+	 * @return l'ordonnée (dans le dessin zoomé) du coin supérieur gauche du
+	 * panel
+	 */
+	public int getY()
+	{
+		return y;
+	}
+
+	/**
+	 * Teste si la vue est l'identité
+	 * @return true si les coordonnées du dessin sont celles du panel
+	 */
+	public boolean isIdentity()
+	{
+		return (zoom == 1.0) && (x == 0) && (y == 0);
+	}
+
+	/**
+	 * Vue zoomée autour d'un point du panel qui reste fixe
+	 * @param newZoom le nouveau facteur de zoom (borné entre
+	 * {@link #MIN_ZOOM} et {@link #MAX_ZOOM})
+	 * @param anchor le point du panel dont la position dans le dessin ne
+	 * change pas
+	 * @return la nouvelle vue
+	 */
+	public Viewport zoomed(double newZoom, Point2D anchor)
+	{
+		newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+		Point2D p = toDrawing(anchor);
+		return new Viewport(newZoom,
+		                    (int) Math.round((p.getX() * newZoom) - anchor.getX()),
+		                    (int) Math.round((p.getY() * newZoom) - anchor.getY()));
+	}
+
+	/**
+	 * Vue translatée
+	 * @param dx le déplacement horizontal du contenu (en pixels du panel)
+	 * @param dy le déplacement vertical du contenu (en pixels du panel)
+	 * @return la nouvelle vue
+	 */
+	public Viewport panned(int dx, int dy)
+	{
+		return new Viewport(zoom, x - dx, y - dy);
+	}
+
+	/**
+	 * Transformation des coordonnées du dessin vers celles du panel
+	 * @return une nouvelle transformation
+	 */
+	public AffineTransform getTransform()
+	{
+		AffineTransform t = AffineTransform.getTranslateInstance(-x, -y);
+		t.scale(zoom, zoom);
+		return t;
+	}
+
+	/**
+	 * Application de la vue à un contexte graphique dont les coordonnées
+	 * sont celles du panel : les figures peuvent ensuite y être dessinées
+	 * dans les coordonnées du dessin
+	 * @param g2D le contexte graphique
+	 */
+	public void apply(Graphics2D g2D)
+	{
+		g2D.translate(-x, -y);
+		g2D.scale(zoom, zoom);
+	}
+
+	/**
+	 * Conversion d'un point du panel en un point du dessin
+	 * @param p le point du panel
+	 * @return le point correspondant dans le dessin
+	 */
+	public Point2D toDrawing(Point2D p)
+	{
+		return new Point2D.Double((p.getX() + x) / zoom, (p.getY() + y) / zoom);
+	}
+
+	/**
+	 * Conversion d'un point du dessin en un point du panel
+	 * @param p le point du dessin
+	 * @return le point correspondant dans le panel
+	 */
+	public Point2D toPanel(Point2D p)
+	{
+		return new Point2D.Double((p.getX() * zoom) - x, (p.getY() * zoom) - y);
+	}
+
+	/**
+	 * Conversion d'une région du panel en région du dessin
+	 * @param r la région du panel
+	 * @return la région correspondante du dessin
+	 */
+	public Rectangle2D toDrawing(Rectangle2D r)
+	{
+		return new Rectangle2D.Double((r.getX() + x) / zoom,
+		                              (r.getY() + y) / zoom,
+		                              r.getWidth() / zoom,
+		                              r.getHeight() / zoom);
+	}
+
+	/**
+	 * Conversion d'une région du dessin en région du panel
+	 * @param r la région du dessin (ou null)
+	 * @return la région correspondante du panel (ou null si r est null)
+	 */
+	public Rectangle2D toPanel(Rectangle2D r)
+	{
+		if (r == null)
+			return null;
+
+		return new Rectangle2D.Double((r.getX() * zoom) - x,
+		                              (r.getY() * zoom) - y,
+		                              r.getWidth() * zoom,
+		                              r.getHeight() * zoom);
+	}
+
+	/**
+	 * Égalité de deux vues
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof Viewport))
+			return false;
+
+		Viewport other = (Viewport) obj;
+		return (zoom == other.zoom) && (x == other.x) && (y == other.y);
+	}
+
+	/**
+	 * Code de hachage compatible avec {@link #equals(Object)}
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return (Double.hashCode(zoom) * 31 + x) * 31 + y;
+	}
+}